@@ -0,0 +1,73 @@
+package entralinked.model.pkmn;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks decoding the dreamer Pokémon that is uploaded with every {@code savedata.upload} request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PkmnInfoReaderBenchmark {
+    
+    private byte[] pokeInfo;
+    
+    @Setup
+    public void setup() {
+        // Personality value with a block shuffle shift of 0, so that the blocks don't have to be shuffled
+        int personality = 0x00C01234;
+        int checksum = 0xBEEF;
+        ByteBuffer buffer = ByteBuffer.allocate(PkmnInfoReader.POKE_INFO_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, personality);
+        buffer.putShort(6, (short)checksum);
+        buffer.putShort(8, (short)571); // Zoroark
+        buffer.putShort(12, (short)12345);
+        buffer.putShort(14, (short)54321);
+        buffer.put(21, (byte)149); // Illusion
+        buffer.put(65, (byte)3); // Adamant
+        putString(buffer, 72, "Zoroark");
+        putString(buffer, 104, "Hilda");
+        buffer.put(140, (byte)50);
+        encryptData(buffer, 8, 128, checksum);
+        encryptData(buffer, 136, 100, personality);
+        pokeInfo = buffer.array();
+    }
+    
+    @Benchmark
+    public PkmnInfo readPokeInfo() throws IOException {
+        return PkmnInfoReader.readPokeInfo(new ByteArrayInputStream(pokeInfo));
+    }
+    
+    private static void putString(ByteBuffer buffer, int offset, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_16LE);
+        buffer.put(offset, bytes);
+        buffer.putShort(offset + bytes.length, (short)0xFFFF);
+    }
+    
+    private static void encryptData(ByteBuffer buffer, int offset, int length, int seed) {
+        for(int i = 0; i < length / 2; i++) {
+            int index = offset + i * 2;
+            seed = 0x41C64E6D * seed + 0x6073;
+            buffer.putShort(index, (short)(buffer.getShort(index) ^ (seed >> 16)));
+        }
+    }
+}
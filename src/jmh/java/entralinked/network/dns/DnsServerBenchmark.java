@@ -0,0 +1,111 @@
+package entralinked.network.dns;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entralinked.Configuration;
+
+/**
+ * Measures how many DNS queries per second the DNS server answers depending on the number of sockets it binds.
+ * Each benchmark thread acts as a console with its own client socket, so that the kernel can spread them across server sockets.
+ * More than one server socket requires epoll; otherwise, the results are the same for every socket count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class DnsServerBenchmark {
+    
+    private static final int PORT = 15353;
+    
+    @Param({"1", "2", "4"})
+    private int sockets;
+    private DnsServer server;
+    
+    @Setup
+    public void setup() throws IOException {
+        server = new DnsServer(InetAddress.getLoopbackAddress(), PORT, new Configuration.Transport(sockets, 0, 0, true, sockets), Configuration.Dns.DEFAULT);
+        
+        if(!server.start()) {
+            throw new IOException("Could not start DNS server");
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+    
+    @State(Scope.Thread)
+    public static class Client {
+        
+        private DatagramSocket socket;
+        private DatagramPacket query;
+        private DatagramPacket response;
+        
+        @Setup
+        public void setup() throws IOException {
+            socket = new DatagramSocket();
+            socket.setSoTimeout(1000);
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), PORT));
+            byte[] bytes = createQuery("conntest.nintendowifi.net");
+            query = new DatagramPacket(bytes, bytes.length);
+            response = new DatagramPacket(new byte[512], 512);
+        }
+        
+        @TearDown
+        public void tearDown() {
+            socket.close();
+        }
+    }
+    
+    @Benchmark
+    public int query(Client client) throws IOException {
+        client.socket.send(client.query);
+        
+        try {
+            client.socket.receive(client.response);
+        } catch(SocketTimeoutException e) {
+            return -1; // Dropped datagram
+        }
+        
+        return client.response.getLength();
+    }
+    
+    private static byte[] createQuery(String name) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.writeBytes(new byte[] {0x12, 0x34, 0x01, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00}); // ID, RD, 1 question
+        
+        for(String label : name.split("\\.")) {
+            outputStream.write(label.length());
+            outputStream.writeBytes(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        outputStream.writeBytes(new byte[] {0x00, 0x00, 0x01, 0x00, 0x01}); // Root, type A, class IN
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package entralinked.network.gamespy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entralinked.network.gamespy.message.GameSpyLoginResponse;
+import entralinked.network.gamespy.message.GameSpyProfileResponse;
+import entralinked.network.gamespy.request.GameSpyKeepAliveRequest;
+import entralinked.network.gamespy.request.GameSpyLoginRequest;
+import entralinked.network.gamespy.request.GameSpyProfileUpdateRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Benchmarks decoding and encoding messages as they are exchanged during a GameSpy login.
+ * Requests are passed to the decoder the way the frame decoder would, without the {@code \final\} delimiter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameSpyCodecBenchmark {
+    
+    private static final String LOGIN_REQUEST = "\\login\\\\challenge\\Rw4bp3Ar\\authtoken\\NDSvoxCc3JbKhPwz1EAGTtaE07bIEcyqu6PLUnqjA8avrRUXVPxTi8Fjbg3gPBkyrBvcrUfrp4PA0AXCNvv4hgUtYNKO"
+            + "\\partnerid\\0\\response\\8d4b0a25e7a37c1ebc6da3a4e0c2d6ef\\firewall\\1\\port\\0\\productid\\11059\\gamename\\pokemondpds"
+            + "\\namespaceid\\16\\sdkrevision\\3\\quiet\\0\\id\\1";
+    private static final String PROFILE_UPDATE_REQUEST = "\\updatepro\\\\sesskey\\123456789\\partnerid\\0\\firstname\\Hilda\\lastname\\\\zipcode\\00000";
+    private static final String KEEP_ALIVE_REQUEST = "\\ka\\";
+    private GameSpyRequestDecoder decoder;
+    private GameSpyMessageEncoder encoder;
+    private ByteBuf loginRequest;
+    private ByteBuf profileUpdateRequest;
+    private ByteBuf keepAliveRequest;
+    private ByteBuf output;
+    private GameSpyLoginResponse loginResponse;
+    private GameSpyProfileResponse profileResponse;
+    
+    @Setup
+    public void setup() {
+        decoder = new GameSpyRequestDecoder(List.of(
+                new GameSpyRequestBinder("login", GameSpyLoginRequest.class),
+                new GameSpyRequestBinder("updatepro", GameSpyProfileUpdateRequest.class),
+                new GameSpyRequestBinder("ka", GameSpyKeepAliveRequest.class)));
+        encoder = new GameSpyMessageEncoder();
+        loginRequest = Unpooled.copiedBuffer(LOGIN_REQUEST, StandardCharsets.UTF_8);
+        profileUpdateRequest = Unpooled.copiedBuffer(PROFILE_UPDATE_REQUEST, StandardCharsets.UTF_8);
+        keepAliveRequest = Unpooled.copiedBuffer(KEEP_ALIVE_REQUEST, StandardCharsets.UTF_8);
+        output = Unpooled.buffer(512);
+        loginResponse = new GameSpyLoginResponse("1234567890123", 123456789, "8d4b0a25e7a37c1ebc6da3a4e0c2d6ef", 987654321, 1);
+        profileResponse = new GameSpyProfileResponse(123456789, "Hilda", null, null, "00000", "signature", 2);
+    }
+    
+    @TearDown
+    public void tearDown() {
+        loginRequest.release();
+        profileUpdateRequest.release();
+        keepAliveRequest.release();
+        output.release();
+    }
+    
+    @Benchmark
+    public List<Object> decodeLoginRequest() throws Exception {
+        return decode(loginRequest);
+    }
+    
+    @Benchmark
+    public List<Object> decodeProfileUpdateRequest() throws Exception {
+        return decode(profileUpdateRequest);
+    }
+    
+    @Benchmark
+    public List<Object> decodeKeepAliveRequest() throws Exception {
+        return decode(keepAliveRequest);
+    }
+    
+    @Benchmark
+    public int encodeLoginResponse() throws Exception {
+        output.clear();
+        encoder.encode(null, loginResponse, output);
+        return output.readableBytes();
+    }
+    
+    @Benchmark
+    public int encodeProfileResponse() throws Exception {
+        output.clear();
+        encoder.encode(null, profileResponse, output);
+        return output.readableBytes();
+    }
+    
+    private List<Object> decode(ByteBuf request) throws Exception {
+        List<Object> out = new ArrayList<>(1);
+        decoder.decode(null, request.resetReaderIndex(), out);
+        return out;
+    }
+}
@@ -0,0 +1,89 @@
+package entralinked.network.http.pgl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entralinked.GameVersion;
+import entralinked.model.avenue.AvenueShopType;
+import entralinked.model.avenue.AvenueVisitor;
+import entralinked.model.avenue.AvenueVisitorType;
+import entralinked.model.pkmn.PkmnGender;
+import entralinked.model.player.DreamAnimation;
+import entralinked.model.player.DreamDecor;
+import entralinked.model.player.DreamEncounter;
+import entralinked.model.player.DreamItem;
+import entralinked.model.player.Player;
+import entralinked.model.player.PlayerStatus;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Benchmarks building the {@code savedata.download} response body for a player that has every slot filled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaveDataWriterBenchmark {
+    
+    private final ByteBuf buffer = Unpooled.buffer(1024);
+    private final SaveDataCache saveDataCache = new SaveDataCache(1, () -> 0, (type, name) -> 1);
+    private Player player;
+    
+    @Setup
+    public void setup() {
+        List<DreamEncounter> encounters = new ArrayList<>();
+        List<DreamItem> items = new ArrayList<>();
+        List<AvenueVisitor> avenueVisitors = new ArrayList<>();
+        
+        for(int i = 0; i < 10; i++) {
+            encounters.add(new DreamEncounter(495 + i, 33, 0, PkmnGender.GENDERLESS, DreamAnimation.WALK_AROUND));
+        }
+        
+        for(int i = 0; i < 20; i++) {
+            items.add(new DreamItem(1 + i, 1));
+        }
+        
+        for(int i = 0; i < 12; i++) {
+            avenueVisitors.add(new AvenueVisitor("Visitor" + i, AvenueVisitorType.YOUNGSTER, AvenueShopType.values()[i % AvenueShopType.values().length],
+                    GameVersion.BLACK_2_ENGLISH, 49, 0, i % 4, 25));
+        }
+        
+        player = new Player("AAAAAAAAAA");
+        player.resetDreamInfo();
+        player.setStatus(PlayerStatus.SLEEPING);
+        player.setGameVersion(GameVersion.BLACK_2_ENGLISH);
+        player.setEncounters(encounters);
+        player.setItems(items);
+        player.setAvenueVisitors(avenueVisitors);
+        player.setDecor(DreamDecor.DEFAULT_DECOR);
+    }
+    
+    @Benchmark
+    public int writeDreamData() {
+        buffer.clear();
+        SaveDataWriter.writeDreamData(buffer, player, 1, 2, 3);
+        return buffer.readableBytes();
+    }
+    
+    @Benchmark
+    public int writeCachedDreamData() {
+        buffer.clear();
+        saveDataCache.writeDreamData(buffer, player);
+        return buffer.readableBytes();
+    }
+}
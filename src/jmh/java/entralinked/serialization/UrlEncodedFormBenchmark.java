@@ -0,0 +1,62 @@
+package entralinked.serialization;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import entralinked.network.http.nas.NasLoginResponse;
+import entralinked.network.http.nas.NasRequest;
+
+/**
+ * Benchmarks parsing and generating URL encoded forms the way the NAS handler does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlEncodedFormBenchmark {
+    
+    private final ObjectMapper mapper = new ObjectMapper(new UrlEncodedFormFactory()).registerModule(new JavaTimeModule());
+    private NasRequest request;
+    private NasLoginResponse response;
+    private String requestBody;
+    
+    @Setup
+    public void setup() throws IOException {
+        request = new NasRequest("1234567890123", "123", "0009bf123456", "IRBO", "01", "0", "2000", "02",
+                "0009bf654321", "01:0000000-00", "Hilda", "0701", LocalDateTime.of(2012, 10, 7, 12, 30), "login", "FFFFFFFFFFFFFFFF", null);
+        response = new NasLoginResponse("gamespy.com", "NDSvoxCc3JbKhPwz1EAGTtaE07bIEcyqu6PLUnqjA8avrRUXVPxTi8Fjbg3gPBkyrBvcrUfrp4PA0AXCNvv4hgUtYNKO", "Rw4bp3Ar");
+        requestBody = mapper.writeValueAsString(request);
+    }
+    
+    @Benchmark
+    public NasRequest parseRequest() throws IOException {
+        return mapper.readValue(requestBody, NasRequest.class);
+    }
+    
+    @Benchmark
+    public String generateResponse() throws IOException {
+        return mapper.writeValueAsString(response);
+    }
+    
+    @Benchmark
+    public NasRequest roundTrip() throws IOException {
+        return mapper.readValue(mapper.writeValueAsString(request), NasRequest.class);
+    }
+}
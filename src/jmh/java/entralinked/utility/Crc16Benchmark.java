@@ -0,0 +1,89 @@
+package entralinked.utility;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the table-driven CRC-16 implementation with the bitwise implementation it replaced.
+ * The default sizes are a Game Sync ID, a C-Gear skin and a Pokédex skin.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Crc16Benchmark {
+    
+    @Param({"4", "9728", "25088"})
+    private int size;
+    private byte[] bytes;
+    private ByteBuffer directBuffer;
+    private int value;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        bytes = new byte[size];
+        random.nextBytes(bytes);
+        directBuffer = ByteBuffer.allocateDirect(size);
+        directBuffer.put(bytes).flip();
+        value = random.nextInt();
+    }
+    
+    @Benchmark
+    public int bitwise() {
+        return calcBitwise(bytes, 0, bytes.length);
+    }
+    
+    @Benchmark
+    public int table() {
+        return Crc16.calc(bytes);
+    }
+    
+    @Benchmark
+    public int tableDirectBuffer() {
+        return Crc16.calc(directBuffer);
+    }
+    
+    @Benchmark
+    public int bitwiseInt() {
+        return calcBitwise(new byte[] {(byte)value, (byte)(value >> 8), (byte)(value >> 16), (byte)(value >> 24)}, 0, 4);
+    }
+    
+    @Benchmark
+    public int tableInt() {
+        return Crc16.calc(value);
+    }
+    
+    private static int calcBitwise(byte[] input, int offset, int length) {
+        int crc = 0xFFFF;
+        
+        for(int i = offset; i < offset + length; i++) {
+            crc ^= (input[i] << 8);
+            
+            for(int j = 0; j < 8; j++) {
+                if((crc & 0x8000) != 0) {
+                    crc = crc << 1 ^ 0x1021;
+                } else {
+                    crc <<= 1;
+                }
+            }
+        }
+        
+        return crc & 0xFFFF;
+    }
+}
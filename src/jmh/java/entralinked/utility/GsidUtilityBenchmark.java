@@ -0,0 +1,35 @@
+package entralinked.utility;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GsidUtilityBenchmark {
+    
+    private int gameSyncId = 0x1234ABCD;
+    private String gameSyncIdString = GsidUtility.stringifyGameSyncId(gameSyncId);
+    
+    @Benchmark
+    public String stringifyGameSyncId() {
+        return GsidUtility.stringifyGameSyncId(gameSyncId);
+    }
+    
+    @Benchmark
+    public boolean isValidGameSyncId() {
+        return GsidUtility.isValidGameSyncId(gameSyncIdString);
+    }
+}
@@ -0,0 +1,76 @@
+package entralinked.utility;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks reading and writing the default skins that are shipped with the server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TiledImageUtilityBenchmark {
+    
+    private byte[] cgearSkin;
+    private byte[] dexSkin;
+    private BufferedImage cgearSkinImage;
+    private BufferedImage dexSkinImage;
+    private int[] dexBackgroundColors;
+    
+    @Setup
+    public void setup() throws IOException {
+        cgearSkin = readResource("/dlc/IRAO/CGEAR/01 - Default.bin");
+        dexSkin = readResource("/dlc/IRAO/ZUKAN/01 - Default (Pink).bin");
+        cgearSkinImage = TiledImageUtility.readCGearSkin(new ByteArrayInputStream(cgearSkin), true);
+        dexSkinImage = TiledImageUtility.readDexSkin(new ByteArrayInputStream(dexSkin), true);
+        dexBackgroundColors = TiledImageUtility.generateBackgroundColors(dexSkinImage);
+    }
+    
+    @Benchmark
+    public BufferedImage readCGearSkin() throws IOException {
+        return TiledImageUtility.readCGearSkin(new ByteArrayInputStream(cgearSkin), true);
+    }
+    
+    @Benchmark
+    public BufferedImage readDexSkin() throws IOException {
+        return TiledImageUtility.readDexSkin(new ByteArrayInputStream(dexSkin), true);
+    }
+    
+    @Benchmark
+    public byte[] writeCGearSkin() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(cgearSkin.length);
+        TiledImageUtility.writeCGearSkin(outputStream, cgearSkinImage, true);
+        return outputStream.toByteArray();
+    }
+    
+    @Benchmark
+    public byte[] writeDexSkin() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(dexSkin.length);
+        TiledImageUtility.writeDexSkin(outputStream, dexSkinImage, dexBackgroundColors);
+        return outputStream.toByteArray();
+    }
+    
+    private static byte[] readResource(String path) throws IOException {
+        try(InputStream inputStream = TiledImageUtilityBenchmark.class.getResourceAsStream(path)) {
+            return inputStream.readAllBytes();
+        }
+    }
+}
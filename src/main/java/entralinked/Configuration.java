@@ -1,12 +1,291 @@
 package entralinked;
 
+import java.util.List;
+import java.util.Map;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
+import entralinked.model.pkmn.SpeciesRule;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record Configuration(
         String hostName,
         boolean clearPlayerDreamInfoOnWake,
-        boolean allowWfcRegistrationThroughLogin) {
+        boolean allowWfcRegistrationThroughLogin,
+        Persistence persistence,
+        Http http,
+        GameSpy gameSpy,
+        Transport transport,
+        Dns dns,
+        int statisticsInterval,
+        List<SpeciesRule> speciesRules) {
+    
+    public static final Configuration DEFAULT = new Configuration("local", true, true, Persistence.DEFAULT, Http.DEFAULT, GameSpy.DEFAULT, Transport.DEFAULT, Dns.DEFAULT, 300, List.of());
+    
+    public Configuration {
+        // Fall back to defaults for sections that are missing from older configuration files
+        if(persistence == null) {
+            persistence = Persistence.DEFAULT;
+        }
+        
+        if(http == null) {
+            http = Http.DEFAULT;
+        }
+        
+        if(gameSpy == null) {
+            gameSpy = GameSpy.DEFAULT;
+        }
+        
+        if(transport == null) {
+            transport = Transport.DEFAULT;
+        }
+        
+        if(dns == null) {
+            dns = Dns.DEFAULT;
+        }
+        
+        // The amount of seconds between statistics log messages
+        if(statisticsInterval <= 0) {
+            statisticsInterval = 300;
+        }
+        
+        if(speciesRules == null) {
+            speciesRules = List.of();
+        }
+    }
+    
+    /**
+     * Settings for how player and user data is written to disk.
+     * 
+     * @param playerSaveDelay The amount of milliseconds a player save is held back for
+     * so that repeated saves of the same player can be merged into a single write.
+     * @param journalSyncInterval The amount of milliseconds between journal syncs.
+     * @param journalCompactionInterval The amount of seconds between journal compactions.
+     * @param lazyPlayerLoading If {@code true}, player data is only loaded when it is first needed instead of on startup.
+     * @param playerCacheSize The maximum number of players to keep loaded if lazy loading is enabled.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Persistence(
+            int playerSaveDelay,
+            int journalSyncInterval,
+            int journalCompactionInterval,
+            boolean lazyPlayerLoading,
+            int playerCacheSize) {
+        
+        public static final Persistence DEFAULT = new Persistence(1000, 200, 300, false, 1000);
+        
+        public Persistence {
+            if(playerSaveDelay <= 0) {
+                playerSaveDelay = 1000;
+            }
+            
+            if(journalSyncInterval <= 0) {
+                journalSyncInterval = 200;
+            }
+            
+            if(journalCompactionInterval <= 0) {
+                journalCompactionInterval = 300;
+            }
+            
+            if(playerCacheSize <= 0) {
+                playerCacheSize = 1000;
+            }
+        }
+    }
+    
+    /**
+     * Settings for the HTTP server.
+     * 
+     * @param memoryLinkCacheSize The maximum number of Memory Link responses to keep in memory.
+     * @param dlcContentCacheSize The maximum amount of DLC content to keep in memory, in megabytes.
+     * @param saveDataCacheSize The maximum number of serialized save data responses to keep in memory.
+     * @param threadMode The kind of threads that requests are handled on.
+     * @param minThreads The minimum number of threads in the thread pool.
+     * @param maxThreads The maximum number of threads in the thread pool.
+     * @param queueSize The maximum number of tasks that can wait for a thread before new tasks are rejected.
+     * @param acceptors The number of acceptor threads per connector, or {@code 0} to let Jetty decide.
+     * @param selectors The number of selector threads per connector, or {@code 0} to let Jetty decide.
+     * @param idleTimeout The amount of milliseconds a connection may be idle, for example during a stalled upload, before it is closed.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Http(
+            int memoryLinkCacheSize,
+            int dlcContentCacheSize,
+            int saveDataCacheSize,
+            ThreadMode threadMode,
+            int minThreads,
+            int maxThreads,
+            int queueSize,
+            int acceptors,
+            int selectors,
+            int idleTimeout) {
+        
+        public static final Http DEFAULT = new Http(16, 32, 1024, ThreadMode.PLATFORM, 8, 200, 1024, 0, 0, 30000);
+        
+        public Http {
+            if(memoryLinkCacheSize <= 0) {
+                memoryLinkCacheSize = 16;
+            }
+            
+            if(dlcContentCacheSize <= 0) {
+                dlcContentCacheSize = 32;
+            }
+            
+            if(saveDataCacheSize <= 0) {
+                saveDataCacheSize = 1024;
+            }
+            
+            if(threadMode == null) {
+                threadMode = ThreadMode.PLATFORM;
+            }
+            
+            if(minThreads <= 0) {
+                minThreads = 8;
+            }
+            
+            if(maxThreads <= 0) {
+                maxThreads = 200;
+            }
+            
+            if(queueSize <= 0) {
+                queueSize = 1024;
+            }
+            
+            if(idleTimeout <= 0) {
+                idleTimeout = 30000;
+            }
+            
+            maxThreads = Math.max(minThreads, maxThreads);
+            acceptors = Math.max(0, acceptors);
+            selectors = Math.max(0, selectors);
+        }
+        
+        public enum ThreadMode {
+            
+            /**
+             * Requests are handled by the threads of the thread pool.
+             */
+            PLATFORM,
+            
+            /**
+             * Requests are handled on virtual threads, so that blocking handlers don't hold pool threads.
+             * Falls back to {@link #PLATFORM} if the runtime doesn't support virtual threads.
+             */
+            VIRTUAL
+        }
+    }
+    
+    /**
+     * Settings for the GameSpy server.
+     * 
+     * @param handlerMode Where GameSpy requests are handled.
+     * @param handlerThreads The number of threads that handle requests or, if requests are handled on the event loop,
+     * the number of threads that run blocking tasks such as profile writes. Defaults to a single thread, like before this
+     * setting existed, because user objects are shared with the HTTP handlers and are not fully thread-safe yet.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record GameSpy(
+            HandlerMode handlerMode,
+            int handlerThreads) {
+        
+        public static final GameSpy DEFAULT = new GameSpy(HandlerMode.EXECUTOR_GROUP, 1);
+        
+        public GameSpy {
+            if(handlerMode == null) {
+                handlerMode = HandlerMode.EXECUTOR_GROUP;
+            }
+            
+            if(handlerThreads <= 0) {
+                handlerThreads = 1;
+            }
+        }
+        
+        public enum HandlerMode {
+            
+            /**
+             * Requests are handled by a group of executors. Each connection is assigned to one of them,
+             * so requests of the same connection are still handled in order.
+             */
+            EXECUTOR_GROUP,
+            
+            /**
+             * Requests are handled on the event loop of their connection and blocking tasks are run by a separate thread pool.
+             * Requests that arrive while a connection waits for a blocking task are deferred until it has completed.
+             */
+            EVENT_LOOP,
+            
+            /**
+             * Requests of each connection are handled by its own virtual thread, so blocking tasks only hold up that connection.
+             * The number of handler threads is not used. Falls back to {@link #EXECUTOR_GROUP} if the runtime doesn't support
+             * virtual threads.
+             */
+            VIRTUAL_THREAD
+        }
+    }
+    
+    /**
+     * Settings for the network transport of the GameSpy and DNS servers.
+     * 
+     * @param eventLoopThreads The number of event loop threads per server, or {@code 0} to use the Netty default.
+     * @param receiveBufferSize The socket receive buffer size in bytes, or {@code 0} to use the system default.
+     * @param sendBufferSize The socket send buffer size in bytes, or {@code 0} to use the system default.
+     * @param directBuffers If {@code true}, network buffers are allocated from a pooled direct allocator instead of a pooled heap allocator.
+     * @param dnsSockets The number of sockets the DNS server binds with {@code SO_REUSEPORT} so that the kernel spreads queries across them.
+     * Only applies if epoll is available.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Transport(
+            int eventLoopThreads,
+            int receiveBufferSize,
+            int sendBufferSize,
+            boolean directBuffers,
+            int dnsSockets) {
+        
+        public static final Transport DEFAULT = new Transport(0, 0, 0, true, 1);
+        
+        public Transport {
+            eventLoopThreads = Math.max(0, eventLoopThreads);
+            receiveBufferSize = Math.max(0, receiveBufferSize);
+            sendBufferSize = Math.max(0, sendBufferSize);
+            
+            if(dnsSockets <= 0) {
+                dnsSockets = 1;
+            }
+        }
+    }
     
-    public static final Configuration DEFAULT = new Configuration("local", true, true);
+    /**
+     * Settings for the DNS server.
+     * 
+     * @param zones The address that each host name resolves to. Names can start with {@code *.} to match all subdomains,
+     * or be {@code *} to match every name. An empty address stands for the host address.
+     * If no zones are configured, every name resolves to the host address.
+     * @param upstreamResolver The address ({@code host} or {@code host:port}) of the resolver that queries for other names are
+     * forwarded to, or {@code null} to refuse them.
+     * @param upstreamTimeout The amount of milliseconds to wait for an answer from the upstream resolver.
+     * @param cacheSize The maximum number of upstream answers to keep in memory.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Dns(
+            Map<String, String> zones,
+            String upstreamResolver,
+            int upstreamTimeout,
+            int cacheSize) {
+        
+        public static final Dns DEFAULT = new Dns(Map.of(), null, 2000, 1024);
+        
+        public Dns {
+            if(zones == null) {
+                zones = Map.of();
+            }
+            
+            if(upstreamTimeout <= 0) {
+                upstreamTimeout = 2000;
+            }
+            
+            if(cacheSize <= 0) {
+                cacheSize = 1024;
+            }
+        }
+    }
 }
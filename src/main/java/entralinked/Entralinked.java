@@ -5,6 +5,11 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.SwingUtilities;
 
@@ -13,11 +18,19 @@ import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import entralinked.gui.view.MainView;
+import entralinked.model.dlc.DlcContentCache;
 import entralinked.model.dlc.DlcList;
+import entralinked.model.player.PlayerCache;
 import entralinked.model.player.PlayerManager;
+import entralinked.model.player.PlayerSaveQueue;
+import entralinked.model.player.SaveStore;
+import entralinked.model.user.SessionStore;
 import entralinked.model.user.UserManager;
+import entralinked.network.dns.DnsFastPathHandler;
+import entralinked.network.dns.DnsForwarder;
 import entralinked.network.dns.DnsServer;
 import entralinked.network.gamespy.GameSpyServer;
 import entralinked.network.http.HttpServer;
@@ -26,6 +39,7 @@ import entralinked.network.http.dls.DlsHandler;
 import entralinked.network.http.nas.NasHandler;
 import entralinked.network.http.pgl.PglHandler;
 import entralinked.utility.NetworkUtility;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 public class Entralinked {
     
@@ -34,14 +48,17 @@ public class Entralinked {
     }
     
     private static final Logger logger = LogManager.getLogger();
-    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .enable(SerializationFeature.INDENT_OUTPUT).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
     private final Configuration configuration;
     private final DlcList dlcList;
+    private final DlcContentCache dlcContentCache;
     private final UserManager userManager;
     private final PlayerManager playerManager;
     private final DnsServer dnsServer;
     private final GameSpyServer gameSpyServer;
     private final HttpServer httpServer;
+    private final ScheduledExecutorService statisticsExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("Statistics", true));
     private MainView mainView;
     private boolean initialized;
     
@@ -90,13 +107,38 @@ public class Entralinked {
             System.exit(1);
         }
         
-        // Load persistent data
-        dlcList = new DlcList();
-        userManager = new UserManager();
-        playerManager = new PlayerManager();
+        // Load persistent data.
+        // The managers don't depend on each other, so they are loaded concurrently.
+        // The loader threads are daemons and are shut down even if loading fails, so they can't keep the process alive.
+        long loadBeginTime = System.currentTimeMillis();
+        ExecutorService loadExecutor = Executors.newFixedThreadPool(3, new DefaultThreadFactory("DataLoader", true));
+        
+        try {
+            CompletableFuture<DlcList> dlcListFuture = CompletableFuture.supplyAsync(DlcList::new, loadExecutor);
+            CompletableFuture<UserManager> userManagerFuture = CompletableFuture.supplyAsync(() -> new UserManager(configuration), loadExecutor);
+            CompletableFuture<PlayerManager> playerManagerFuture = CompletableFuture.supplyAsync(() -> new PlayerManager(configuration), loadExecutor);
+            dlcList = dlcListFuture.join();
+            userManager = userManagerFuture.join();
+            playerManager = playerManagerFuture.join();
+        } finally {
+            loadExecutor.shutdown();
+        }
+        
+        logger.info("Loaded persistent data in {} milliseconds", System.currentTimeMillis() - loadBeginTime);
+        dlcContentCache = new DlcContentCache(configuration.http().dlcContentCacheSize() * 1024L * 1024L);
+        
+        // Pick up DLC that is added or changed while the server is running
+        dlcList.addChangeListener(dlcContentCache::invalidate);
+        dlcList.startWatching();
+        
+        // Make sure queued and journaled data is written if the process is terminated
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            playerManager.shutdown();
+            userManager.shutdown();
+        }, "PersistenceShutdown"));
         
         // Create DNS server
-        dnsServer = new DnsServer(hostAddress);
+        dnsServer = new DnsServer(hostAddress, configuration);
         
         // Create GameSpy server
         gameSpyServer = new GameSpyServer(this);
@@ -117,6 +159,10 @@ public class Entralinked {
             logger.info("Startup complete! Took a total of {} milliseconds", System.currentTimeMillis() - beginTime);
             logger.info("Configure your DS to use the following DNS server: {}", hostIpAddress);
             
+            // Log the counters periodically so that they can be watched while the servers are under load
+            int statisticsInterval = configuration.statisticsInterval();
+            statisticsExecutor.scheduleAtFixedRate(this::logStatistics, statisticsInterval, statisticsInterval, TimeUnit.SECONDS);
+            
             if(mainView != null) {
                 SwingUtilities.invokeLater(() -> {
                     mainView.setStatusLabelText("Configure your DS to use the following DNS server: %s".formatted(hostIpAddress));
@@ -141,6 +187,8 @@ public class Entralinked {
     
     public void stopServers() {
         logger.info("Stopping servers ...");
+        statisticsExecutor.shutdown();
+        logStatistics();
         
         if(httpServer != null) {
             httpServer.stop();
@@ -153,6 +201,71 @@ public class Entralinked {
         if(dnsServer != null) {
             dnsServer.stop();
         }
+        
+        // Write any player data that is still queued now that nothing can modify it anymore
+        if(playerManager != null) {
+            playerManager.flush();
+        }
+        
+        if(userManager != null) {
+            userManager.flush();
+        }
+    }
+    
+    /**
+     * Logs the counters of the servers, caches and persistence queues.
+     * Called periodically while the servers are running, and once more when they are stopped.
+     */
+    private void logStatistics() {
+        if(httpServer != null) {
+            logger.info("HTTP thread pool: {} threads, {} busy, {} queued, {} rejected",
+                    httpServer.getThreads(), httpServer.getBusyThreads(), httpServer.getQueueSize(), httpServer.getRejectedTaskCount());
+        }
+        
+        if(gameSpyServer != null) {
+            logger.info("GameSpy handler queues: {} pending handler tasks, {} pending blocking tasks",
+                    gameSpyServer.getPendingHandlerTasks(), gameSpyServer.getPendingBlockingTasks());
+        }
+        
+        if(dnsServer != null) {
+            DnsFastPathHandler fastPathHandler = dnsServer.getFastPathHandler();
+            logger.info("DNS queries: {} fast path, {} slow path", fastPathHandler.getFastPathCount(), fastPathHandler.getSlowPathCount());
+            DnsForwarder forwarder = dnsServer.getForwarder();
+            
+            if(forwarder != null) {
+                logger.info("DNS forwarding: {} forwarded, {} cache hits, {} coalesced, {} failed",
+                        forwarder.getForwardCount(), forwarder.getCacheHitCount(), forwarder.getCoalescedCount(), forwarder.getFailureCount());
+            }
+        }
+        
+        if(playerManager != null) {
+            PlayerSaveQueue saveQueue = playerManager.getSaveQueue();
+            logger.info("Player data writes: {} queued, {} written, {} merged, {} failed, {} us average, {} us max",
+                    saveQueue.getQueueSize(), saveQueue.getWriteCount(), saveQueue.getMergeCount(), saveQueue.getFailedWriteCount(),
+                    saveQueue.getAverageWriteTime(), saveQueue.getMaxWriteTime());
+            logger.info("Player journal: {} appended, {} syncs",
+                    playerManager.getJournal().getAppendCount(), playerManager.getJournal().getSyncCount());
+            SaveStore saveStore = playerManager.getSaveStore();
+            logger.info("Save store: {} saves stored, {} chunks written, {} chunks reused",
+                    saveStore.getStoreCount(), saveStore.getChunkWriteCount(), saveStore.getChunkReuseCount());
+            PlayerCache playerCache = playerManager.getPlayerCache();
+            
+            if(playerCache != null) {
+                logger.info("Player cache: {} loaded, {} hits, {} misses, {} evictions",
+                        playerCache.getSize(), playerCache.getHitCount(), playerCache.getMissCount(), playerCache.getEvictionCount());
+            }
+        }
+        
+        if(dlcContentCache != null) {
+            logger.info("DLC content cache: {} bytes cached, {} hits, {} misses",
+                    dlcContentCache.getSize(), dlcContentCache.getHitCount(), dlcContentCache.getMissCount());
+        }
+        
+        if(userManager != null) {
+            SessionStore sessions = userManager.getServiceSessions();
+            logger.info("Service sessions: {} active, {} created, {} expired, {} evicted",
+                    sessions.getSize(), sessions.getCreatedCount(), sessions.getExpiredCount(), sessions.getEvictedCount());
+        }
     }
     
     private Configuration loadConfigFile() {
@@ -186,6 +299,10 @@ public class Entralinked {
         return dlcList;
     }
     
+    public DlcContentCache getDlcContentCache() {
+        return dlcContentCache;
+    }
+    
     public UserManager getUserManager() {
         return userManager;
     }
@@ -33,7 +33,6 @@ import entralinked.gui.FileChooser;
 import entralinked.gui.ModelListCellRenderer;
 import entralinked.model.player.Player;
 import entralinked.utility.Crc16;
-import entralinked.utility.LEOutputStream;
 import entralinked.utility.SwingUtility;
 import entralinked.utility.TiledImageUtility;
 import net.miginfocom.swing.MigLayout;
@@ -293,14 +292,15 @@ public class CustomizationPanel extends JPanel {
             }
             
             // Write to destination & append checksum if necessary
-            try(LEOutputStream outputStream = new LEOutputStream(new FileOutputStream(dst))) {
+            try(FileOutputStream outputStream = new FileOutputStream(dst)) {
                 outputStream.write(bytes);
                 
                 if(writeChecksum) {
-                    outputStream.writeShort(Crc16.calc(bytes));
+                    Crc16.writeChecksum(outputStream, Crc16.calc(bytes));
                 }
             }
             
+            entralinked.getDlcContentCache().invalidate(dst);
             return true;
         } catch(Exception e) {
             SwingUtility.showExceptionInfo(getRootPane(), "Failed to import skin.", e);
@@ -324,11 +324,12 @@ public class CustomizationPanel extends JPanel {
             writer.writeSkin(byteStream, image);
             byte[] bytes = byteStream.toByteArray();
             
-            try(LEOutputStream outputStream = new LEOutputStream(new FileOutputStream(dst))) {
+            try(FileOutputStream outputStream = new FileOutputStream(dst)) {
                 outputStream.write(bytes);
-                outputStream.writeShort(Crc16.calc(bytes));
+                Crc16.writeChecksum(outputStream, Crc16.calc(bytes));
             }
             
+            entralinked.getDlcContentCache().invalidate(dst);
             return true;
         } catch(IllegalArgumentException e) {
             JOptionPane.showMessageDialog(getRootPane(), e.getMessage(), "Attention", JOptionPane.WARNING_MESSAGE);
@@ -366,11 +367,12 @@ public class CustomizationPanel extends JPanel {
             }
             
             // Write to destination
-            try(LEOutputStream outputStream = new LEOutputStream(new FileOutputStream(dst))) {
+            try(FileOutputStream outputStream = new FileOutputStream(dst)) {
                 outputStream.write(bytes, offset, length);
-                outputStream.writeShort(Crc16.calc(bytes, offset, length));
+                Crc16.writeChecksum(outputStream, Crc16.calc(bytes, offset, length));
             }
             
+            entralinked.getDlcContentCache().invalidate(dst);
             return true;
         } catch(Exception e) {
             SwingUtility.showExceptionInfo(getRootPane(), "Failed to import NARC file.", e);
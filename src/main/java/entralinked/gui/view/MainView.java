@@ -12,8 +12,6 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
@@ -49,10 +47,11 @@ import entralinked.gui.FileChooser;
 import entralinked.gui.panels.DashboardPanel;
 import entralinked.model.player.Player;
 import entralinked.model.player.PlayerManager;
+import entralinked.utility.ByteBufUtility;
 import entralinked.utility.ConsumerAppender;
 import entralinked.utility.GsidUtility;
-import entralinked.utility.LEInputStream;
 import entralinked.utility.SwingUtility;
+import io.netty.buffer.ByteBuf;
 
 /**
  * Simple Swing user interface.
@@ -193,16 +192,17 @@ public class MainView {
         Player player = null;
         GameVersion version = null;
         
-        try(LEInputStream inputStream = new LEInputStream(new FileInputStream(file))) {
-            inputStream.skipNBytes(0x19400); // Skip to trainer info
-            inputStream.skipNBytes(0x4);
-            String name = inputStream.readUTF16(7);
-            inputStream.skipNBytes(0x2);
-            int trainerId = inputStream.readInt();
-            int profileId = inputStream.readInt();
-            inputStream.skipNBytes(0x2);
-            int language = inputStream.read();
-            int romCode = inputStream.read();
+        try(FileInputStream inputStream = new FileInputStream(file)) {
+            ByteBuf buffer = ByteBufUtility.readAll(inputStream);
+            buffer.skipBytes(0x19400); // Skip to trainer info
+            buffer.skipBytes(0x4);
+            String name = ByteBufUtility.readUTF16(buffer, 7);
+            buffer.skipBytes(0x2);
+            int trainerId = buffer.readIntLE();
+            int profileId = buffer.readIntLE();
+            buffer.skipBytes(0x2);
+            int language = buffer.readUnsignedByte();
+            int romCode = buffer.readUnsignedByte();
             version = GameVersion.lookup(romCode, language);
             
             // Check game version
@@ -241,9 +241,12 @@ public class MainView {
             }
         }
         
-        // Copy save file
-        try {
-            Files.copy(file.toPath(), player.getSaveFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // Store save file
+        try(FileInputStream inputStream = new FileInputStream(file)) {
+            if(!playerManager.storePlayerGameSaveFile(player, inputStream)) {
+                JOptionPane.showMessageDialog(frame, "Failed to import save data.", "Attention", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
         } catch(Exception e) {
             SwingUtility.showExceptionInfo(frame, "Failed to import save data.", e);
             return;
@@ -0,0 +1,139 @@
+package entralinked.model.dlc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of DLC content as it is sent to the client.
+ * 
+ * Each entry holds the contents of a DLC file followed by its checksum if the checksum isn't embedded in the file,
+ * and is kept in a direct buffer so that it can be written to the connector in a single call.
+ * The least recently used entries are evicted when the total size of the cached content exceeds the capacity.
+ * Entries are keyed by file path, so the custom DLC of a player must be invalidated when the file is replaced.
+ */
+public class DlcContentCache {
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final Map<String, ByteBuffer> contents = new LinkedHashMap<>(16, 0.75F, true);
+    private final long capacity;
+    private long size;
+    private long invalidationCount;
+    
+    /**
+     * @param capacity The maximum number of bytes to keep cached.
+     */
+    public DlcContentCache(long capacity) {
+        this.capacity = capacity;
+    }
+    
+    /**
+     * @return A read-only buffer containing the content of the specified DLC, including its checksum.
+     * The content is read and cached if it isn't cached already.
+     */
+    public ByteBuffer getContent(Dlc dlc) throws IOException {
+        String path = new File(dlc.path()).getAbsolutePath();
+        
+        synchronized(contents) {
+            ByteBuffer content = contents.get(path);
+            
+            if(content != null) {
+                hitCount.incrementAndGet();
+                return content.duplicate();
+            }
+        }
+        
+        missCount.incrementAndGet();
+        long invalidationCount = getInvalidationCount();
+        byte[] bytes = null;
+        
+        try(FileInputStream inputStream = new FileInputStream(path)) {
+            bytes = inputStream.readAllBytes();
+        }
+        
+        // If checksum is not part of the file, append it
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + (dlc.checksumEmbedded() ? 0 : 2)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(bytes);
+        
+        if(!dlc.checksumEmbedded()) {
+            buffer.putShort((short)dlc.checksum());
+        }
+        
+        buffer.flip();
+        buffer = buffer.asReadOnlyBuffer();
+        
+        // Don't cache content that would push everything else out
+        if(buffer.capacity() > capacity) {
+            return buffer;
+        }
+        
+        synchronized(contents) {
+            // Don't cache content that may have been replaced while it was being read
+            if(invalidationCount != this.invalidationCount) {
+                return buffer;
+            }
+            
+            ByteBuffer previous = contents.put(path, buffer);
+            size += buffer.capacity() - (previous == null ? 0 : previous.capacity());
+            Iterator<ByteBuffer> iterator = contents.values().iterator();
+            
+            // Evict least recently used content
+            while(size > capacity && iterator.hasNext()) {
+                size -= iterator.next().capacity();
+                iterator.remove();
+            }
+        }
+        
+        return buffer.duplicate();
+    }
+    
+    /**
+     * Removes the cached content of the specified file, if there is any.
+     */
+    public void invalidate(File file) {
+        synchronized(contents) {
+            ByteBuffer previous = contents.remove(file.getAbsolutePath());
+            invalidationCount++;
+            
+            if(previous != null) {
+                size -= previous.capacity();
+            }
+        }
+    }
+    
+    private long getInvalidationCount() {
+        synchronized(contents) {
+            return invalidationCount;
+        }
+    }
+    
+    /**
+     * @return The total number of bytes that are currently cached.
+     */
+    public long getSize() {
+        synchronized(contents) {
+            return size;
+        }
+    }
+    
+    /**
+     * @return The number of requests for content that was cached.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    /**
+     * @return The number of requests for content that was not cached.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
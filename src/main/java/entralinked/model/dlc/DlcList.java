@@ -2,14 +2,27 @@ package entralinked.model.dlc;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -17,15 +30,64 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import entralinked.utility.Crc16;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 public class DlcList {
     
     private static final Logger logger = LogManager.getLogger();
-    private final List<Dlc> dlcList = new ArrayList<>();
+    private static final byte[] EMPTY_LIST_BYTES = {};
+    private static final long RELOAD_DELAY = 1000;
     private final File dataDirectory = new File("dlc");
+    private final List<Consumer<File>> changeListeners = new CopyOnWriteArrayList<>();
+    private Map<String, LoadedDlc> loadedDlc = new HashMap<>();
+    private WatchService watchService;
+    private volatile Index index = new Index(List.of());
+    private volatile long revision;
+    
+    /**
+     * Immutable lookup tables for the loaded DLC.
+     * Lists and list responses are built once when the DLC is loaded so that lookups don't have to filter or format anything.
+     */
+    private static class Index {
+        
+        private final List<Dlc> dlcList;
+        private final Map<String, List<Dlc>> dlcByGameCode = new HashMap<>();
+        private final Map<TypeKey, List<Dlc>> dlcByType = new HashMap<>();
+        private final Map<NameKey, Dlc> dlcByName = new HashMap<>();
+        private final Map<IndexKey, List<Dlc>> dlcByIndex = new HashMap<>();
+        private final Map<IndexKey, byte[]> listBytes = new HashMap<>();
+        
+        public Index(List<Dlc> dlcList) {
+            this.dlcList = List.copyOf(dlcList);
+            Map<String, List<Dlc>> dlcByGameCode = new HashMap<>();
+            Map<TypeKey, List<Dlc>> dlcByType = new HashMap<>();
+            Map<IndexKey, List<Dlc>> dlcByIndex = new HashMap<>();
+            
+            for(Dlc dlc : dlcList) {
+                dlcByGameCode.computeIfAbsent(dlc.gameCode(), key -> new ArrayList<>()).add(dlc);
+                dlcByType.computeIfAbsent(new TypeKey(dlc.gameCode(), dlc.type()), key -> new ArrayList<>()).add(dlc);
+                dlcByName.putIfAbsent(new NameKey(dlc.gameCode(), dlc.type(), dlc.name()), dlc);
+                dlcByIndex.computeIfAbsent(new IndexKey(dlc.gameCode(), dlc.type(), dlc.index()), key -> new ArrayList<>()).add(dlc);
+            }
+            
+            dlcByGameCode.forEach((key, value) -> this.dlcByGameCode.put(key, List.copyOf(value)));
+            dlcByType.forEach((key, value) -> this.dlcByType.put(key, List.copyOf(value)));
+            dlcByIndex.forEach((key, value) -> {
+                this.dlcByIndex.put(key, List.copyOf(value));
+                listBytes.put(key, createDlcListString(value).getBytes(StandardCharsets.UTF_8));
+            });
+        }
+    }
+    
+    private record TypeKey(String gameCode, String type) {}
+    private record NameKey(String gameCode, String type, String name) {}
+    private record IndexKey(String gameCode, String type, int index) {}
+    private record LoadedDlc(long length, long lastModified, int projectedSize, int checksum, boolean checksumEmbedded) {}
     
     public DlcList() {
         logger.info("Loading DLC ...");
+        long beginTime = System.currentTimeMillis();
+        List<Dlc> dlcList = new ArrayList<>();
         
         // Extract defaults if external DLC directory is not present
         if(!dataDirectory.exists()) {
@@ -54,13 +116,140 @@ public class DlcList {
             }
         }
         
-        // Just to be sure...
+        index = new Index(scan());
+        logger.info("Loaded {} DLC file(s) in {} milliseconds", index.dlcList.size(), System.currentTimeMillis() - beginTime);
+    }
+    
+    /**
+     * Starts watching the DLC directory for changes.
+     * DLC is reloaded shortly after files are added, changed or removed.
+     */
+    public void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerDirectories();
+        } catch(IOException e) {
+            logger.error("Could not watch DLC directory for changes", e);
+            return;
+        }
+        
+        new DefaultThreadFactory("DlcWatcher", true).newThread(this::watch).start();
+    }
+    
+    private void watch() {
+        try {
+            while(true) {
+                WatchKey key = watchService.take();
+                
+                // Wait for changes to settle so that files that are still being copied aren't loaded halfway
+                do {
+                    key.pollEvents();
+                    key.reset();
+                } while((key = watchService.poll(RELOAD_DELAY, TimeUnit.MILLISECONDS)) != null);
+                
+                reload();
+            }
+        } catch(InterruptedException | ClosedWatchServiceException e) {
+            // Stop watching
+        }
+    }
+    
+    /**
+     * Rescans the DLC directory and atomically replaces the loaded DLC.
+     * Checksums are only recalculated for files that were added or changed since the last scan.
+     * Listeners are notified of changed files before the new DLC is published, so that nothing that is looked up
+     * in the new DLC can be served from content that was cached for the old one.
+     */
+    public synchronized void reload() {
+        long beginTime = System.currentTimeMillis();
+        Map<String, LoadedDlc> previousDlc = loadedDlc;
+        Index newIndex = new Index(scan());
+        
+        // Notify listeners of files that were changed or removed
+        previousDlc.forEach((path, dlc) -> {
+            if(!dlc.equals(loadedDlc.get(path))) {
+                changeListeners.forEach(listener -> listener.accept(new File(path)));
+            }
+        });
+        
+        index = newIndex;
+        revision++;
+        
+        // Register directories that were added
+        if(watchService != null) {
+            try {
+                registerDirectories();
+            } catch(IOException e) {
+                logger.error("Could not watch DLC directory for changes", e);
+            }
+        }
+        
+        logger.info("Reloaded {} DLC file(s) in {} milliseconds", index.dlcList.size(), System.currentTimeMillis() - beginTime);
+    }
+    
+    /**
+     * @return A number that changes whenever the DLC is reloaded.
+     */
+    public long getRevision() {
+        return revision;
+    }
+    
+    /**
+     * Adds a listener that is called with the file of each DLC that was changed or removed during a reload.
+     */
+    public void addChangeListener(Consumer<File> listener) {
+        changeListeners.add(listener);
+    }
+    
+    private void registerDirectories() throws IOException {
         if(!dataDirectory.isDirectory()) {
             return;
         }
         
+        // Registering a directory that is already registered has no effect
+        register(dataDirectory);
+        
+        for(File file : dataDirectory.listFiles(File::isDirectory)) {
+            register(file);
+            
+            for(File subFile : file.listFiles(File::isDirectory)) {
+                register(subFile);
+            }
+        }
+    }
+    
+    private void register(File directory) throws IOException {
+        directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+    
+    /**
+     * @return The files in the specified directory, sorted by name so that DLC indices don't depend on the file system.
+     * Returns an empty array if the directory was removed in the meantime.
+     */
+    private static File[] listFiles(File directory) {
+        File[] files = directory.listFiles();
+        
+        if(files == null) {
+            return new File[0];
+        }
+        
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+    
+    private List<Dlc> scan() {
+        List<Dlc> dlcList = new ArrayList<>();
+        Map<String, LoadedDlc> loadedDlc = new HashMap<>();
+        
+        // Just to be sure...
+        if(!dataDirectory.isDirectory()) {
+            this.loadedDlc = loadedDlc;
+            return dlcList;
+        }
+        
         // Game Serial level
-        for(File file : dataDirectory.listFiles()) {
+        for(File file : listFiles(dataDirectory)) {
             // Make sure that file is a directory, log warning and skip otherwise
             if(!file.isDirectory()) {
                 logger.warn("Non-directory '{}' in DLC root folder", file.getName());
@@ -68,7 +257,7 @@ public class DlcList {
             }
             
             // DLC Type level
-            for(File subFile : file.listFiles()) {
+            for(File subFile : listFiles(file)) {
                 // Check if file is directory
                 if(!subFile.isDirectory()) {
                     logger.warn("Non-directory '{}' in DLC subfolder '{}'", file.getName(), subFile.getName());
@@ -78,7 +267,7 @@ public class DlcList {
                 int index = 1;
                 
                 // DLC Content level
-                for(File dlcFile : subFile.listFiles()) {
+                for(File dlcFile : listFiles(subFile)) {
                     String name = dlcFile.getName();
                     
                     // Check if DLC name is reserved as an internal identifier
@@ -89,7 +278,7 @@ public class DlcList {
                     }
                     
                     // Load DLC data
-                    Dlc dlc = loadDlcFile(file.getName(), subFile.getName(), index, dlcFile);
+                    Dlc dlc = loadDlcFile(file.getName(), subFile.getName(), index, dlcFile, loadedDlc);
                     
                     if(dlc != null) {
                         dlcList.add(dlc);
@@ -99,10 +288,11 @@ public class DlcList {
             }
         }
         
-        logger.info("Loaded {} DLC file(s)", dlcList.size());
+        this.loadedDlc = loadedDlc;
+        return dlcList;
     }
     
-    private Dlc loadDlcFile(String gameCode, String type, int index, File dlcFile) {
+    private Dlc loadDlcFile(String gameCode, String type, int index, File dlcFile, Map<String, LoadedDlc> loadedDlc) {
         String name = dlcFile.getName();
         
         if(dlcFile.isDirectory()) {
@@ -110,32 +300,58 @@ public class DlcList {
             return null;
         }
         
+        // Reuse checksum data if the file hasn't changed since it was last loaded
+        String path = dlcFile.getAbsolutePath();
+        long length = dlcFile.length();
+        long lastModified = dlcFile.lastModified();
+        LoadedDlc loaded = this.loadedDlc.get(path);
+        
+        if(loaded == null || loaded.length() != length || loaded.lastModified() != lastModified) {
+            loaded = loadChecksum(dlcFile, length, lastModified);
+            
+            if(loaded == null) {
+                return null;
+            }
+        }
+        
+        loadedDlc.put(path, loaded);
+        return new Dlc(path, name, gameCode, type, index, loaded.projectedSize(), loaded.checksum(), loaded.checksumEmbedded());
+    }
+    
+    private LoadedDlc loadChecksum(File dlcFile, long length, long lastModified) {
         // Check if there is a valid CRC-16 checksum appended at the end of the file.
         // If not, it will be marked in the DLC record object and the server will automatically append the checksum
         // when the DLC content is requested.
         // Makes it easier to just throw stuff into the DLC folder.
-        int projectedSize = 0;
-        int checksum = 0;
-        boolean checksumEmbedded = true;
+        try(FileInputStream inputStream = new FileInputStream(dlcFile)) {
+            byte[] buffer = new byte[8192];
+            int checksum = Crc16.INITIAL_VALUE;
+            int projectedSize = 0;
+            int heldBytes = 0;
+            int bytesRead = 0;
         
-        try {
-            byte[] bytes = Files.readAllBytes(dlcFile.toPath());
-            projectedSize = bytes.length;
-            checksum = Crc16.calc(bytes, 0, bytes.length - 2);
-            int checksumInFile = (bytes[bytes.length - 2] & 0xFF) | ((bytes[bytes.length - 1] & 0xFF) << 8);
+            // Calculate the checksum of everything but the last two bytes, which are held at the start of the buffer
+            while((bytesRead = inputStream.read(buffer, heldBytes, buffer.length - heldBytes)) != -1) {
+                int available = heldBytes + bytesRead;
+                int processed = Math.max(0, available - 2);
+                checksum = Crc16.update(checksum, buffer, 0, processed);
+                heldBytes = available - processed;
+                System.arraycopy(buffer, processed, buffer, 0, heldBytes);
+                projectedSize += bytesRead;
+            }
+            
+            int checksumInFile = heldBytes < 2 ? -1 : (buffer[0] & 0xFF) | ((buffer[1] & 0xFF) << 8);
             
-            if(checksum != checksumInFile) {
-                logger.warn("Checksum mismatch in DLC '{}'", name);
-                projectedSize += 2;
-                checksum = Crc16.calc(bytes, 0, bytes.length);
-                checksumEmbedded = false;
+            if(checksum == checksumInFile) {
+                return new LoadedDlc(length, lastModified, projectedSize, checksum, true);
             }
+            
+            logger.warn("Checksum mismatch in DLC '{}'", dlcFile.getName());
+            return new LoadedDlc(length, lastModified, projectedSize + 2, Crc16.update(checksum, buffer, 0, heldBytes), false);
         } catch(IOException e) {
             logger.error("Could not read checksum data for {}", dlcFile.getAbsolutePath(), e);
             return null;
         }
-        
-        return new Dlc(dlcFile.getAbsolutePath(), name, gameCode, type, index, projectedSize, checksum, checksumEmbedded);
     }
     
     public List<Dlc> getDlcList(Predicate<Dlc> filter) {
@@ -143,25 +359,30 @@ public class DlcList {
     }
     
     public List<Dlc> getDlcList(String gameCode, String type, int index) {
-        return getDlcList(dlc -> 
-            dlc.gameCode().equals(gameCode) &&
-            dlc.type().equals(type) &&
-            dlc.index() == index
-        );
+        return this.index.dlcByIndex.getOrDefault(new IndexKey(gameCode, type, index), List.of());
     }
     
     public List<Dlc> getDlcList(String gameCode, String type) {
-        return getDlcList(dlc ->
-            dlc.gameCode().equals(gameCode) &&
-            dlc.type().equals(type)
-        );
+        return index.dlcByType.getOrDefault(new TypeKey(gameCode, type), List.of());
     }
     
     public List<Dlc> getDlcList(String gameCode) {
-        return getDlcList(dlc -> dlc.gameCode().equals(gameCode));
+        return index.dlcByGameCode.getOrDefault(gameCode, List.of());
+    }
+    
+    /**
+     * @return The precomputed list response for the DLC with the specified attributes.
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] getDlcListBytes(String gameCode, String type, int index) {
+        return this.index.listBytes.getOrDefault(new IndexKey(gameCode, type, index), EMPTY_LIST_BYTES);
     }
     
     public String getDlcListString(Collection<Dlc> dlcList) {
+        return createDlcListString(dlcList);
+    }
+    
+    private static String createDlcListString(Collection<Dlc> dlcList) {
         StringBuilder builder = new StringBuilder();
         dlcList.forEach(dlc -> {
             builder.append("%s\t\t%s\t%s\t\t%s\r\n".formatted(dlc.name(), dlc.type(), dlc.index(), dlc.projectedSize()));
@@ -171,9 +392,7 @@ public class DlcList {
     }
     
     public Dlc getDlc(String gameCode, String type, String name) {
-        List<Dlc> dlcList = getDlcList(gameCode, type).stream()
-                .filter(dlc -> dlc.name().equals(name)).collect(Collectors.toList());
-        return dlcList.isEmpty() ? null : dlcList.get(0);
+        return index.dlcByName.get(new NameKey(gameCode, type, name));
     }
     
     public int getDlcIndex(String gameCode, String type, String name) {
@@ -182,6 +401,6 @@ public class DlcList {
     }
     
     public Collection<Dlc> getDlc() {
-        return Collections.unmodifiableCollection(dlcList);
+        return index.dlcList;
     }
 }
@@ -15,6 +15,10 @@ import io.netty.buffer.PooledByteBufAllocator;
  */
 public class PkmnInfoReader {
     
+    /**
+     * The size of an encrypted Pokémon data structure, in bytes.
+     */
+    public static final int POKE_INFO_SIZE = 236;
     private static final Logger logger = LogManager.getLogger();
     private static final ByteBufAllocator bufferAllocator = PooledByteBufAllocator.DEFAULT;
     private static final byte[] blockShuffleTable = {
@@ -27,8 +31,8 @@ public class PkmnInfoReader {
     };
     
     public static PkmnInfo readPokeInfo(InputStream inputStream) throws IOException {
-        ByteBuf buffer = bufferAllocator.buffer(236); // Allocate buffer
-        buffer.writeBytes(inputStream, 236); // Read data from input stream into buffer
+        ByteBuf buffer = bufferAllocator.buffer(POKE_INFO_SIZE); // Allocate buffer
+        buffer.writeBytes(inputStream, POKE_INFO_SIZE); // Read data from input stream into buffer
         
         // Read header info
         int personality = buffer.readIntLE();
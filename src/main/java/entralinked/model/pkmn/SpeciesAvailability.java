@@ -0,0 +1,133 @@
+package entralinked.model.pkmn;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import entralinked.GameVersion;
+
+/**
+ * Determines which species can be encountered in the Entree Forest.
+ * 
+ * Every species is available by default. The configured rules are applied in order on top of that,
+ * and may be limited to certain game versions or time windows.
+ * The bitlists that are sent to the game are computed once and are only recomputed when a rule starts or stops applying.
+ */
+public class SpeciesAvailability {
+    
+    public static final int MAX_SPECIES = 649;
+    public static final int BITLIST_SIZE = 128;
+    private final List<SpeciesRule> rules;
+    private volatile Snapshot snapshot;
+    
+    /**
+     * @param bitlists The bitlist of each game version.
+     * @param defaultBitlist The bitlist for unknown game versions.
+     * @param validFrom The last time at which a rule started or stopped applying.
+     * @param validUntil The next time at which a rule starts or stops applying.
+     */
+    private record Snapshot(Map<GameVersion, byte[]> bitlists, byte[] defaultBitlist, Instant validFrom, Instant validUntil) {}
+    
+    public SpeciesAvailability(List<SpeciesRule> rules) {
+        this.rules = List.copyOf(rules);
+    }
+    
+    /**
+     * @return The bitlist of species that are currently available in the specified game version.
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] getBitlist(GameVersion version) {
+        return getBitlist(version, Instant.now());
+    }
+    
+    /**
+     * @return The bitlist of species that are available in the specified game version at the specified time.
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] getBitlist(GameVersion version, Instant time) {
+        Snapshot snapshot = getSnapshot(time);
+        return version == null ? snapshot.defaultBitlist() : snapshot.bitlists().get(version);
+    }
+    
+    private Snapshot getSnapshot(Instant time) {
+        Snapshot snapshot = this.snapshot;
+        
+        if(snapshot != null && isValid(snapshot, time)) {
+            return snapshot;
+        }
+        
+        synchronized(this) {
+            snapshot = this.snapshot;
+            
+            // Check if another thread has already computed it
+            if(snapshot == null || !isValid(snapshot, time)) {
+                snapshot = createSnapshot(time);
+                this.snapshot = snapshot;
+            }
+            
+            return snapshot;
+        }
+    }
+    
+    private boolean isValid(Snapshot snapshot, Instant time) {
+        return !time.isBefore(snapshot.validFrom()) && time.isBefore(snapshot.validUntil());
+    }
+    
+    private Snapshot createSnapshot(Instant time) {
+        Map<GameVersion, byte[]> bitlists = new EnumMap<>(GameVersion.class);
+        Map<BitSet, byte[]> distinctBitlists = new HashMap<>();
+        Instant validFrom = Instant.MIN;
+        Instant validUntil = Instant.MAX;
+        
+        // Find the time window in which the same rules apply
+        for(SpeciesRule rule : rules) {
+            for(Instant boundary : new Instant[] { rule.start(), rule.end() }) {
+                if(boundary == null) {
+                    continue;
+                }
+                
+                if(boundary.isAfter(time)) {
+                    validUntil = boundary.isBefore(validUntil) ? boundary : validUntil;
+                } else {
+                    validFrom = boundary.isAfter(validFrom) ? boundary : validFrom;
+                }
+            }
+        }
+        
+        // Game versions that end up with the same species share the same bitlist
+        for(GameVersion version : GameVersion.values()) {
+            bitlists.put(version, distinctBitlists.computeIfAbsent(getSpeciesSet(version, time), SpeciesAvailability::toBitlist));
+        }
+        
+        byte[] defaultBitlist = distinctBitlists.computeIfAbsent(getSpeciesSet(null, time), SpeciesAvailability::toBitlist);
+        return new Snapshot(bitlists, defaultBitlist, validFrom, validUntil);
+    }
+    
+    private BitSet getSpeciesSet(GameVersion version, Instant time) {
+        BitSet set = new BitSet(MAX_SPECIES + 1);
+        set.set(1, MAX_SPECIES + 1);
+        
+        for(SpeciesRule rule : rules) {
+            if(!rule.appliesTo(version, time)) {
+                continue;
+            }
+            
+            if(rule.available()) {
+                set.or(rule.getSpeciesSet());
+            } else {
+                set.andNot(rule.getSpeciesSet());
+            }
+        }
+        
+        return set;
+    }
+    
+    private static byte[] toBitlist(BitSet set) {
+        // 8 Pokémon (bits) in 1 byte, starting at the least significant bit
+        return Arrays.copyOf(set.toByteArray(), BITLIST_SIZE);
+    }
+}
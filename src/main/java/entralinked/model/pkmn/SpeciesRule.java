@@ -0,0 +1,90 @@
+package entralinked.model.pkmn;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import entralinked.GameVersion;
+
+/**
+ * Configurable rule that makes a set of species available or unavailable for the Entree Forest.
+ * 
+ * @param species Comma-separated list of National Pokédex numbers and ranges, e.g. {@code 1-493,571}.
+ * @param available Whether the species become available or unavailable. Defaults to {@code true}.
+ * @param games Serial prefixes of the game versions this rule applies to, e.g. {@code IRBO} for Black Version (English)
+ * or {@code IRE} for Black Version 2 in every language. The rule applies to every game version if this is empty.
+ * @param start The time from which this rule applies, or {@code null} if it always applied.
+ * @param end The time from which this rule no longer applies, or {@code null} if it never expires.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SpeciesRule(
+        String species,
+        Boolean available,
+        List<String> games,
+        Instant start,
+        Instant end) {
+    
+    public SpeciesRule {
+        if(available == null) {
+            available = true;
+        }
+        
+        if(games == null) {
+            games = List.of();
+        }
+        
+        parseSpecies(species); // Fail early if the species list is invalid
+    }
+    
+    /**
+     * @return {@code true} if this rule applies to the specified game version at the specified time.
+     * A {@code null} game version only matches rules that apply to every game version.
+     */
+    public boolean appliesTo(GameVersion version, Instant time) {
+        if((start != null && time.isBefore(start)) || (end != null && !time.isBefore(end))) {
+            return false;
+        }
+        
+        if(games.isEmpty()) {
+            return true;
+        }
+        
+        return version != null && games.stream().anyMatch(version.getSerial()::startsWith);
+    }
+    
+    /**
+     * @return A bit set in which the bit of each species this rule covers is set.
+     */
+    public BitSet getSpeciesSet() {
+        return parseSpecies(species);
+    }
+    
+    private static BitSet parseSpecies(String species) {
+        if(species == null) {
+            throw new IllegalArgumentException("Species list is missing");
+        }
+        
+        BitSet set = new BitSet(SpeciesAvailability.MAX_SPECIES + 1);
+        
+        for(String part : species.split(",")) {
+            String[] range = part.trim().split("-", 2);
+            
+            try {
+                int from = Integer.parseInt(range[0].trim());
+                int to = range.length == 1 ? from : Integer.parseInt(range[1].trim());
+                
+                if(from < 1 || to > SpeciesAvailability.MAX_SPECIES || from > to) {
+                    throw new IllegalArgumentException("Invalid species range '%s'".formatted(part));
+                }
+                
+                set.set(from, to + 1);
+            } catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid species '%s'".formatted(part));
+            }
+        }
+        
+        return set;
+    }
+}
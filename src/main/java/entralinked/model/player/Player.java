@@ -3,15 +3,20 @@ package entralinked.model.player;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import entralinked.GameVersion;
 import entralinked.model.avenue.AvenueVisitor;
 import entralinked.model.pkmn.PkmnInfo;
 
+/**
+ * The game data of a player is guarded by the player's monitor, so that a consistent snapshot can be taken while
+ * request handlers modify it. List getters return immutable copies.
+ */
 public class Player {
     
+    private static final AtomicLong dreamDataRevisions = new AtomicLong();
     private final String gameSyncId;
     private final List<DreamEncounter> encounters = new ArrayList<>();
     private final List<DreamItem> items = new ArrayList<>();
@@ -28,12 +33,25 @@ public class Player {
     private String customDexSkin;
     private String customMusical;
     private File dataDirectory;
+    private volatile long dreamDataRevision = dreamDataRevisions.incrementAndGet();
     
     public Player(String gameSyncId) {
         this.gameSyncId = gameSyncId;
     }
     
-    public void resetDreamInfo() {
+    /**
+     * @return A number that changes whenever the dream data that is sent to the game, including the DLC selection, changes.
+     * Revisions are unique across all player objects, so reloading a player never brings back an old revision.
+     */
+    public long getDreamDataRevision() {
+        return dreamDataRevision;
+    }
+    
+    private void updateDreamDataRevision() {
+        dreamDataRevision = dreamDataRevisions.incrementAndGet();
+    }
+    
+    public synchronized void resetDreamInfo() {
         status = PlayerStatus.AWAKE;
         dreamerInfo = null;
         encounters.clear();
@@ -45,133 +63,143 @@ public class Player {
         cgearSkin = null;
         dexSkin = null;
         musical = null;
+        updateDreamDataRevision();
     }
     
     public String getGameSyncId() {
         return gameSyncId;
     }
     
-    public void setEncounters(Collection<DreamEncounter> encounters) {
+    public synchronized void setEncounters(Collection<DreamEncounter> encounters) {
         if(encounters.size() <= 10) {
             this.encounters.clear();
             this.encounters.addAll(encounters);
+            updateDreamDataRevision();
         }
     }
     
-    public List<DreamEncounter> getEncounters() {
-        return Collections.unmodifiableList(encounters);
+    public synchronized List<DreamEncounter> getEncounters() {
+        return List.copyOf(encounters);
     }
     
-    public void setItems(Collection<DreamItem> items) {
+    public synchronized void setItems(Collection<DreamItem> items) {
         if(encounters.size() <= 20) {
             this.items.clear();
             this.items.addAll(items);
+            updateDreamDataRevision();
         }
     }
     
-    public List<DreamItem> getItems() {
-        return Collections.unmodifiableList(items);
+    public synchronized List<DreamItem> getItems() {
+        return List.copyOf(items);
     }
     
-    public void setAvenueVisitors(Collection<AvenueVisitor> avenueVisitors) {
+    public synchronized void setAvenueVisitors(Collection<AvenueVisitor> avenueVisitors) {
         if(avenueVisitors.size() <= 12) {
             this.avenueVisitors.clear();
             this.avenueVisitors.addAll(avenueVisitors);
+            updateDreamDataRevision();
         }
     }
     
-    public List<AvenueVisitor> getAvenueVisitors() {
-        return Collections.unmodifiableList(avenueVisitors);
+    public synchronized List<AvenueVisitor> getAvenueVisitors() {
+        return List.copyOf(avenueVisitors);
     }
     
-    public void setDecor(Collection<DreamDecor> decor) {
+    public synchronized void setDecor(Collection<DreamDecor> decor) {
         if(decor.size() <= 5) {
             this.decor.clear();
             this.decor.addAll(decor);
+            updateDreamDataRevision();
         }
     }
     
-    public List<DreamDecor> getDecor() {
-        return Collections.unmodifiableList(decor);
+    public synchronized List<DreamDecor> getDecor() {
+        return List.copyOf(decor);
     }
     
-    public void setStatus(PlayerStatus status) {
+    public synchronized void setStatus(PlayerStatus status) {
         this.status = status;
     }
     
-    public PlayerStatus getStatus() {
+    public synchronized PlayerStatus getStatus() {
         return status;
     }
     
-    public void setGameVersion(GameVersion gameVersion) {
+    public synchronized void setGameVersion(GameVersion gameVersion) {
         this.gameVersion = gameVersion;
+        updateDreamDataRevision();
     }
     
-    public GameVersion getGameVersion() {
+    public synchronized GameVersion getGameVersion() {
         return gameVersion;
     }
     
-    public void setDreamerInfo(PkmnInfo dreamerInfo) {
+    public synchronized void setDreamerInfo(PkmnInfo dreamerInfo) {
         this.dreamerInfo = dreamerInfo;
     }
     
-    public PkmnInfo getDreamerInfo() {
+    public synchronized PkmnInfo getDreamerInfo() {
         return dreamerInfo;
     }
     
-    public void setLevelsGained(int levelsGained) {
+    public synchronized void setLevelsGained(int levelsGained) {
         this.levelsGained = levelsGained;
+        updateDreamDataRevision();
     }
     
-    public int getLevelsGained() {
+    public synchronized int getLevelsGained() {
         return levelsGained;
     }
     
-    public void setCGearSkin(String cgearSkin) {
+    public synchronized void setCGearSkin(String cgearSkin) {
         this.cgearSkin = cgearSkin;
+        updateDreamDataRevision();
     }
     
-    public String getCGearSkin() {
+    public synchronized String getCGearSkin() {
         return cgearSkin;
     }
     
-    public void setDexSkin(String dexSkin) {
+    public synchronized void setDexSkin(String dexSkin) {
         this.dexSkin = dexSkin;
+        updateDreamDataRevision();
     }
     
-    public String getDexSkin() {
+    public synchronized String getDexSkin() {
         return dexSkin;
     }
     
-    public void setMusical(String musical) {
+    public synchronized void setMusical(String musical) {
         this.musical = musical;
+        updateDreamDataRevision();
     }
     
-    public String getMusical() {
+    public synchronized String getMusical() {
         return musical;
     }
     
-    public void setCustomCGearSkin(String customCGearSkin) {
+    public synchronized void setCustomCGearSkin(String customCGearSkin) {
         this.customCGearSkin = customCGearSkin;
     }
     
-    public String getCustomCGearSkin() {
+    public synchronized String getCustomCGearSkin() {
         return customCGearSkin;
     }
     
-    public void setCustomDexSkin(String customDexSkin) {
+    public synchronized void setCustomDexSkin(String customDexSkin) {
         this.customDexSkin = customDexSkin;
     }
     
-    public String getCustomDexSkin() {
+    public synchronized String getCustomDexSkin() {
         return customDexSkin;
     }
     
-    public void setCustomMusical(String customMusical) {
+    public synchronized void setCustomMusical(String customMusical) {
         this.customMusical = customMusical;
     }
     
-    public String getCustomMusical() {
+    public synchronized String getCustomMusical() {
         return customMusical;
     }
     
@@ -193,6 +221,10 @@ public class Player {
         return new File(dataDirectory, "save.bin");
     }
     
+    public File getSaveIndexFile() {
+        return new File(dataDirectory, "save.idx");
+    }
+    
     public File getCGearSkinFile() {
         return new File(dataDirectory, "cgear.bin");
     }
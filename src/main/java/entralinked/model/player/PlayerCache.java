@@ -0,0 +1,207 @@
+package entralinked.model.player;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of loaded players that evicts the least recently used player when it is full.
+ * 
+ * Evicted players that are still referenced elsewhere (e.g. by a request that is being processed) are tracked
+ * through weak references, so that loading the same player again always returns the same instance for as long as it is in use.
+ * Evicting a player never loses data, because saves are snapshotted when they are queued.
+ * 
+ * Players are loaded outside of the cache's monitor, so a slow load doesn't hold up lookups of other players.
+ * Concurrent lookups of the same uncached player wait for a single load.
+ */
+public class PlayerCache {
+    
+    private final ReferenceQueue<Player> referenceQueue = new ReferenceQueue<>();
+    private final Map<String, PlayerReference> references = new HashMap<>();
+    private final Map<String, CompletableFuture<Player>> pendingLoads = new ConcurrentHashMap<>();
+    private final Map<String, Player> players;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    
+    private static class PlayerReference extends WeakReference<Player> {
+        
+        private final String gameSyncId;
+        
+        public PlayerReference(Player player, ReferenceQueue<Player> queue) {
+            super(player, queue);
+            this.gameSyncId = player.getGameSyncId();
+        }
+    }
+    
+    /**
+     * @param capacity The maximum number of players to keep loaded.
+     */
+    public PlayerCache(int capacity) {
+        this.players = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Player> eldest) {
+                if(size() > capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * @return The cached player with the specified Game Sync ID, or the result of the loader if it isn't cached.
+     * Returns {@code null} if the player isn't cached and the loader returns {@code null}.
+     */
+    public Player get(String gameSyncId, Function<String, Player> loader) {
+        synchronized(this) {
+            Player player = players.get(gameSyncId);
+        
+            if(player != null) {
+                hitCount++;
+                return player;
+            }
+        
+            missCount++;
+            player = getEvicted(gameSyncId);
+        
+            if(player != null) {
+                return player;
+            }
+        }
+        
+        // Wait for the load that is already in progress, if there is one
+        CompletableFuture<Player> future = new CompletableFuture<>();
+        CompletableFuture<Player> pendingLoad = pendingLoads.putIfAbsent(gameSyncId, future);
+        
+        if(pendingLoad != null) {
+            return pendingLoad.join();
+        }
+        
+        try {
+            Player player = load(gameSyncId, loader);
+            future.complete(player);
+            return player;
+        } catch(RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLoads.remove(gameSyncId, future);
+        }
+    }
+    
+    /**
+     * Loads a player without holding the cache's monitor and adds it to the cache.
+     * If the player was added in the meantime, the cached instance is returned instead.
+     */
+    private Player load(String gameSyncId, Function<String, Player> loader) {
+        // Another load may have finished between the lookup and the registration of this one
+        synchronized(this) {
+            Player player = players.get(gameSyncId);
+            
+            if(player == null) {
+                player = getEvicted(gameSyncId);
+            }
+            
+            if(player != null) {
+                return player;
+            }
+        }
+        
+        Player player = loader.apply(gameSyncId);
+        
+        if(player == null) {
+            return null;
+        }
+        
+        synchronized(this) {
+            Player cachedPlayer = players.get(gameSyncId);
+            
+            if(cachedPlayer != null) {
+                return cachedPlayer;
+            }
+            
+            put(player);
+            return player;
+        }
+    }
+    
+    /**
+     * Puts a player that was evicted but is still in use back into the cache.
+     * 
+     * @return The player, or {@code null} if it isn't in use anymore.
+     */
+    private Player getEvicted(String gameSyncId) {
+        expungeStaleReferences();
+        PlayerReference reference = references.get(gameSyncId);
+        Player player = reference == null ? null : reference.get();
+        
+        if(player != null) {
+            put(player);
+        }
+        
+        return player;
+    }
+    
+    /**
+     * Adds a player to the cache.
+     */
+    public synchronized void put(Player player) {
+        String gameSyncId = player.getGameSyncId();
+        players.put(gameSyncId, player);
+        references.put(gameSyncId, new PlayerReference(player, referenceQueue));
+    }
+    
+    /**
+     * @return A snapshot of the players that are currently cached.
+     */
+    public synchronized Collection<Player> getPlayers() {
+        return List.copyOf(players.values());
+    }
+    
+    private void expungeStaleReferences() {
+        PlayerReference reference = null;
+        
+        while((reference = (PlayerReference)referenceQueue.poll()) != null) {
+            references.remove(reference.gameSyncId, reference);
+        }
+    }
+    
+    /**
+     * @return The number of players that are currently cached.
+     */
+    public synchronized int getSize() {
+        return players.size();
+    }
+    
+    /**
+     * @return The number of lookups of a player that was cached.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    /**
+     * @return The number of lookups of a player that was not cached.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    /**
+     * @return The number of players that were evicted from the cache.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
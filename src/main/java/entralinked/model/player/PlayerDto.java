@@ -2,6 +2,7 @@ package entralinked.model.player;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
@@ -30,11 +31,24 @@ public record PlayerDto(
         @JsonDeserialize(contentAs = AvenueVisitor.class)  Collection<AvenueVisitor> avenueVisitors,
         @JsonDeserialize(contentAs = DreamDecor.class)     Collection<DreamDecor> decor) {
     
+    /**
+     * Constructs a snapshot of the specified player. Collections are copied, so the DTO is safe to use
+     * from another thread while the player object is being modified.
+     */
     public PlayerDto(Player player) {
         this(player.getGameSyncId(), player.getGameVersion(), player.getStatus(), player.getDreamerInfo(),
                 player.getCGearSkin(), player.getDexSkin(), player.getMusical(), player.getCustomCGearSkin(),
-                player.getCustomDexSkin(), player.getCustomMusical(), player.getLevelsGained(), player.getEncounters(),
-                player.getItems(), player.getAvenueVisitors(), player.getDecor());
+                player.getCustomDexSkin(), player.getCustomMusical(), player.getLevelsGained(), List.copyOf(player.getEncounters()),
+                List.copyOf(player.getItems()), List.copyOf(player.getAvenueVisitors()), List.copyOf(player.getDecor()));
+    }
+    
+    /**
+     * Takes a snapshot of the specified player while holding its monitor, so that it can't be modified halfway through.
+     */
+    public static PlayerDto snapshot(Player player) {
+        synchronized(player) {
+            return new PlayerDto(player);
+        }
     }
     
     /**
@@ -1,14 +1,23 @@
 package entralinked.model.player;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
@@ -17,8 +26,11 @@ import org.apache.logging.log4j.Logger;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
+import entralinked.Configuration;
 import entralinked.GameVersion;
+import entralinked.model.player.PlayerMutation.SavePlayer;
 import entralinked.utility.GsidUtility;
+import entralinked.utility.Journal;
 
 /**
  * Manager class for managing {@link Player} information (Global Link users)
@@ -28,10 +40,27 @@ public class PlayerManager {
     private static final Logger logger = LogManager.getLogger();
     private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
     private final Map<String, Player> playerMap = new ConcurrentHashMap<>();
+    private final Set<String> knownGameSyncIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, PlayerDto> uncompactedPlayers = new ConcurrentHashMap<>();
+    private final Map<String, Long> saveRevisions = new ConcurrentHashMap<>();
     private final File dataDirectory = new File("players");
+    private final SaveStore saveStore = new SaveStore(new File("saves"), dataDirectory);
+    private final Journal<PlayerMutation> journal;
+    private final PlayerSaveQueue saveQueue;
+    private final PlayerCache playerCache;
     
-    public PlayerManager() {
+    public PlayerManager(Configuration configuration) {
+        Configuration.Persistence persistence = configuration.persistence();
+        journal = new Journal<>(new File("players.journal"), PlayerMutation.class, PlayerMutation::gameSyncId,
+                this::writeSnapshots, persistence.journalSyncInterval(), persistence.journalCompactionInterval());
+        saveQueue = new PlayerSaveQueue(this::journalPlayerData, persistence.playerSaveDelay());
+        playerCache = persistence.lazyPlayerLoading() ? new PlayerCache(persistence.playerCacheSize()) : null;
         logger.info("Loading player data ...");
+        long beginTime = System.currentTimeMillis();
+        
+        // Write changes that were not compacted before the last shutdown to the data files
+        journal.replay(mutation -> mutation.apply(uncompactedPlayers));
+        journal.compact();
         
         // Check if player directory exists
         if(!dataDirectory.exists()) {
@@ -41,14 +70,33 @@ public class PlayerManager {
         // Migrate player data if necessary
         migrateLegacyData();
         
-        // Load player data
-        for(File file : dataDirectory.listFiles()) {
-            if(file.isDirectory()) {
-                loadPlayer(new File(file, "data.json"));
+        // Only index the Game Sync IDs if lazy loading is enabled -- player data is loaded when it is first needed
+        if(playerCache != null) {
+            for(File directory : dataDirectory.listFiles(File::isDirectory)) {
+                if(GsidUtility.isValidGameSyncId(directory.getName())) {
+                    knownGameSyncIds.add(directory.getName());
+                }
+            }
+            
+            logger.info("Indexed {} player(s) in {} milliseconds", knownGameSyncIds.size(), System.currentTimeMillis() - beginTime);
+            return;
+        }
+        
+        // Load player data in parallel, then index it in a fixed order so that duplicates are always resolved the same way
+        File[] directories = dataDirectory.listFiles(File::isDirectory);
+        Arrays.sort(directories);
+        List<Player> players = Arrays.stream(directories)
+                .parallel()
+                .map(directory -> loadPlayer(new File(directory, "data.json")))
+                .toList();
+        
+        for(Player player : players) {
+            if(player != null) {
+                indexPlayer(player);
             }
         }
         
-        logger.info("Loaded {} player(s)", playerMap.size());
+        logger.info("Loaded {} player(s) in {} milliseconds", playerMap.size(), System.currentTimeMillis() - beginTime);
     }
     
     /**
@@ -110,9 +158,11 @@ public class PlayerManager {
     
     /**
      * Loads a {@link Player} from the specified input file.
-     * The loaded player instance is automatically mapped, unless it has an already-mapped Game Sync ID.
+     * Safe to call from multiple threads at once.
+     * 
+     * @return The loaded player, or {@code null} if it could not be loaded.
      */
-    private void loadPlayer(File inputFile) {
+    private Player loadPlayer(File inputFile) {
         try {
             // Deserialize player data
             Player player = mapper.readValue(inputFile, PlayerDto.class).toPlayer();
@@ -123,30 +173,137 @@ public class PlayerManager {
                 throw new IOException("Invalid Game Sync ID: %s".formatted(gameSyncId));
             }
             
-            // Check for duplicate Game Sync ID
-            if(doesPlayerExist(gameSyncId)) {
-                throw new IOException("Duplicate Game Sync ID: %s".formatted(gameSyncId));
-            }
-            
             player.setDataDirectory(inputFile.getParentFile());
-            playerMap.put(gameSyncId, player);
+            return player;
         } catch(IOException e) {
             logger.error("Could not load player data at {}", inputFile.getAbsolutePath(), e);
+            return null;
         }
     }
     
     /**
-     * Saves all player data.
+     * Loads the {@link Player} with the specified indexed Game Sync ID for the player cache.
+     * 
+     * @return The loaded player, or {@code null} if it could not be loaded.
+     */
+    private Player loadIndexedPlayer(String gameSyncId) {
+        File playerDataDirectory = new File(dataDirectory, gameSyncId);
+        
+        // Use the most recent data, which may not have been written to the data file yet
+        PlayerDto data = saveQueue.getPendingSave(gameSyncId);
+        
+        if(data == null) {
+            data = uncompactedPlayers.get(gameSyncId);
+        }
+        
+        if(data != null) {
+            Player player = data.toPlayer();
+            player.setDataDirectory(playerDataDirectory);
+            return player;
+        }
+        
+        Player player = loadPlayer(new File(playerDataDirectory, "data.json"));
+        
+        // Check if the data belongs to the directory it is in
+        if(player != null && !player.getGameSyncId().equals(gameSyncId)) {
+            logger.error("Could not load player data for {} because it belongs to {}", gameSyncId, player.getGameSyncId());
+            return null;
+        }
+        
+        return player;
+    }
+    
+    /**
+     * Maps a loaded {@link Player}, unless it has an already-mapped Game Sync ID.
+     */
+    private void indexPlayer(Player player) {
+        String gameSyncId = player.getGameSyncId();
+        
+        // Check for duplicate Game Sync ID
+        if(doesPlayerExist(gameSyncId)) {
+            logger.error("Could not load player data at {}: Duplicate Game Sync ID: {}",
+                    player.getDataFile().getAbsolutePath(), gameSyncId);
+            return;
+        }
+        
+        knownGameSyncIds.add(gameSyncId);
+        playerMap.put(gameSyncId, player);
+    }
+    
+    /**
+     * Saves the data of all loaded players.
      */
     public void savePlayers() {
-        playerMap.values().forEach(this::savePlayer);
+        getPlayers().forEach(this::savePlayer);
     }
     
     /**
-     * Saves the data of the specified player to disk, and returns {@code true} if it succeeds.
+     * Queues the data of the specified player to be saved to disk.
+     * The data is appended to the player journal on a separate thread shortly after, and saves of the same player that happen
+     * in the meantime are merged into a single write. Use {@link #flush()} to write all queued data immediately.
+     * If the queue has been shut down or its last write failed, the data is written on the calling thread instead.
+     * 
+     * @return {@code false} if the data was written on the calling thread and that failed, otherwise {@code true}.
      */
     public boolean savePlayer(Player player) {
-        return savePlayer(player, player.getDataFile());
+        return saveQueue.enqueue(player);
+    }
+    
+    /**
+     * Writes all queued player data to the journal and blocks until it is synced to disk.
+     */
+    public void flush() {
+        saveQueue.flush();
+        journal.sync();
+    }
+    
+    /**
+     * Writes all queued player data to the journal and closes it.
+     */
+    public void shutdown() {
+        saveQueue.shutdown();
+        journal.close();
+    }
+    
+    /**
+     * Appends the specified player data to the journal.
+     * The data file of the player is updated during the next journal compaction.
+     * 
+     * @return {@code true} if the data was appended successfully, {@code false} otherwise.
+     */
+    private boolean journalPlayerData(PlayerDto player) {
+        // Store the data before appending so it is available to a compaction that runs in between
+        uncompactedPlayers.put(player.gameSyncId(), player);
+        return journal.append(new SavePlayer(player));
+    }
+    
+    /**
+     * Writes the latest journaled data of the specified players to their data files.
+     * 
+     * @return {@code true} if all data was written successfully, {@code false} otherwise.
+     */
+    private boolean writeSnapshots(Set<String> gameSyncIds) {
+        boolean success = true;
+        
+        for(String gameSyncId : gameSyncIds) {
+            PlayerDto player = uncompactedPlayers.get(gameSyncId);
+            
+            if(player == null) {
+                continue;
+            }
+            
+            File outputFile = new File(new File(dataDirectory, gameSyncId), "data.json");
+            
+            if(!writePlayerData(player, outputFile)) {
+                success = false;
+                continue;
+            }
+            
+            // Keep the data if it was replaced in the meantime; it will be written by the next compaction
+            uncompactedPlayers.remove(gameSyncId, player);
+        }
+        
+        return success;
     }
     
     /**
@@ -155,27 +312,72 @@ public class PlayerManager {
      * @return {@code true} if the data was saved successfully, {@code false} otherwise.
      */
     private boolean savePlayer(Player player, File outputFile) {
+        return writePlayerData(PlayerDto.snapshot(player), outputFile);
+    }
+    
+    /**
+     * Writes the specified player data to the specified output file.
+     * 
+     * @return {@code true} if the data was written successfully, {@code false} otherwise.
+     */
+    private boolean writePlayerData(PlayerDto player, File outputFile) {
         try {
             // Create parent directories
-            File parentFile = outputFile.getParentFile();
-            
-            if(parentFile != null) {
-                parentFile.mkdirs();
-            }
+            File parentFile = outputFile.getAbsoluteFile().getParentFile();
+            parentFile.mkdirs();
             
             // Serialize the entire player object first to minimize risk of corrupted files
-            byte[] bytes = mapper.writeValueAsBytes(new PlayerDto(player));
+            byte[] bytes = mapper.writeValueAsBytes(player);
+            
+            // Write serialized data to a temporary file and force it to disk, then move it over the output file.
+            // The journal deletes its records once this returns, so the data file has to be complete and durable by then.
+            Path temporaryFile = Files.createTempFile(parentFile.toPath(), outputFile.getName(), ".tmp");
+            
+            try {
+                try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                    
+                    while(buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    
+                    channel.force(false);
+                }
+                
+                move(temporaryFile, outputFile.toPath());
+            } finally {
+                Files.deleteIfExists(temporaryFile);
+            }
             
-            // Write serialized data to output file
-            Files.write(outputFile.toPath(), bytes);
+            syncDirectory(parentFile);
         } catch(IOException e) {
-            logger.error("Could not save player data for {}", player.getGameSyncId(), e);
+            logger.error("Could not save player data for {}", player.gameSyncId(), e);
             return false;
         }
         
         return true;
     }
     
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Forces the entries of the specified directory to disk so that a rename in it survives a crash.
+     * Not every platform can open a directory, in which case this does nothing.
+     */
+    private static void syncDirectory(File directory) {
+        try(FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch(IOException e) {
+            // Not supported on this platform
+        }
+    }
+    
     /**
      * Attempts to register a new {@link Player} with the given data.
      * 
@@ -185,7 +387,7 @@ public class PlayerManager {
      */
     public Player registerPlayer(String gameSyncId, GameVersion version) {
         // Check for duplicate Game Sync ID
-        if(playerMap.containsKey(gameSyncId)) {
+        if(doesPlayerExist(gameSyncId)) {
             logger.warn("Attempted to register duplicate Game Sync ID: {}", gameSyncId);
             return null;
         }
@@ -210,49 +412,132 @@ public class PlayerManager {
         player.setGameVersion(version);
         player.setDataDirectory(playerDataDirectory);
         
-        // Try to save player data
-        if(!savePlayer(player)) {
+        // Try to save player data.
+        // This is done immediately so that the data directory exists by the time the game save data is stored.
+        if(!savePlayer(player, player.getDataFile())) {
             return null;
         }
         
         // Map player object & return it
-        playerMap.put(gameSyncId, player);
+        knownGameSyncIds.add(gameSyncId);
+        
+        if(playerCache != null) {
+            playerCache.put(player);
+        } else {
+            playerMap.put(gameSyncId, player);
+        }
+        
         return player;
     }
     
     /**
-     * Stores a game save file read from the specified input stream to a file.
+     * Stores a game save file read from the specified input stream in the {@link SaveStore}.
      * 
      * @return {@code true} if the game save file was written successfully, otherwise {@code false}.
      */
     public boolean storePlayerGameSaveFile(Player player, InputStream inputStream) {
-        try(FileOutputStream outputStream = new FileOutputStream(player.getSaveFile())) {
-            inputStream.transferTo(outputStream);
-            return true;
+        try {
+            saveStore.store(inputStream, player.getSaveIndexFile());
         } catch(IOException e) {
-            logger.error("Could not write game save data for player {}", player.getGameSyncId());
+            logger.error("Could not write game save data for player {}", player.getGameSyncId(), e);
             return false;
         }
+        
+        // Delete game save file from before the save store existed
+        player.getSaveFile().delete();
+        saveRevisions.merge(player.getGameSyncId(), 1L, Long::sum);
+        return true;
+    }
+    
+    /**
+     * Opens the game save file of the specified player.
+     * Save files that were stored before the {@link SaveStore} existed are read directly.
+     * 
+     * @throws FileNotFoundException If the player has no game save file.
+     */
+    public InputStream openPlayerGameSaveFile(Player player) throws IOException {
+        File indexFile = player.getSaveIndexFile();
+        return indexFile.exists() ? saveStore.open(indexFile) : new FileInputStream(player.getSaveFile());
+    }
+    
+    /**
+     * @return A number that is incremented whenever the game save file of the specified player is stored.
+     * Only meaningful during the lifetime of this instance.
+     */
+    public long getPlayerGameSaveRevision(Player player) {
+        return saveRevisions.getOrDefault(player.getGameSyncId(), 0L);
+    }
+    
+    /**
+     * @return {@code true} if the specified player has a game save file, otherwise {@code false}.
+     */
+    public boolean hasPlayerGameSaveFile(Player player) {
+        return player.getSaveIndexFile().exists() || player.getSaveFile().exists();
     }
     
     /**
      * @return {@code true} if a player with the specified Game Sync ID exists, {@code false} otherwise.
      */
     public boolean doesPlayerExist(String gameSyncId) {
-        return playerMap.containsKey(gameSyncId);
+        return knownGameSyncIds.contains(gameSyncId);
     }
     
     /**
      * @return The {@link Player} object to which this Game Sync ID belongs, or {@code null} if no such player exists.
+     * If lazy loading is enabled, the player data is loaded if it isn't in the player cache.
      */
     public Player getPlayer(String gameSyncId) {
+        if(playerCache != null) {
+            return doesPlayerExist(gameSyncId) ? playerCache.get(gameSyncId, this::loadIndexedPlayer) : null;
+        }
+        
         return playerMap.get(gameSyncId);
     }
     
     /**
      * @return An immutable {@link Collection} containing all players.
+     * If lazy loading is enabled, only the players that are currently in the player cache are included.
      */
     public Collection<Player> getPlayers() {
+        if(playerCache != null) {
+            return playerCache.getPlayers();
+        }
+        
         return Collections.unmodifiableCollection(playerMap.values());
     }
+    
+    /**
+     * @return The number of registered players, including the ones that aren't loaded.
+     */
+    public int getPlayerCount() {
+        return knownGameSyncIds.size();
+    }
+    
+    /**
+     * @return The {@link PlayerCache} if lazy loading is enabled, otherwise {@code null}.
+     */
+    public PlayerCache getPlayerCache() {
+        return playerCache;
+    }
+    
+    /**
+     * @return The {@link SaveStore} that game save files are stored in.
+     */
+    public SaveStore getSaveStore() {
+        return saveStore;
+    }
+    
+    /**
+     * @return The {@link Journal} that player saves are appended to.
+     */
+    public Journal<PlayerMutation> getJournal() {
+        return journal;
+    }
+    
+    /**
+     * @return The {@link PlayerSaveQueue} that queued player saves are written through.
+     */
+    public PlayerSaveQueue getSaveQueue() {
+        return saveQueue;
+    }
 }
@@ -0,0 +1,49 @@
+package entralinked.model.player;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
+
+/**
+ * Journal record describing a change to a {@link Player}.
+ * 
+ * Unlike user profiles, players are only ever journaled as a whole. Saves go through the {@link PlayerSaveQueue}, which merges
+ * bursts of saves by replacing the pending snapshot; that only works if every save is a complete state. A typed change
+ * that is written before an older snapshot of the same player could also be undone by it. Player data is small, and the
+ * hot paths (waking up, tucking in, dashboard edits) change several parts of it at once anyway.
+ */
+@JsonTypeInfo(use = Id.NAME, property = "type")
+@JsonSubTypes({
+    @Type(name = "player", value = PlayerMutation.SavePlayer.class)
+})
+public interface PlayerMutation {
+    
+    /**
+     * @return The Game Sync ID of the player that this mutation applies to.
+     */
+    public String gameSyncId();
+    
+    /**
+     * Applies this mutation to the specified map of player data that has yet to be written to disk.
+     */
+    public void apply(Map<String, PlayerDto> players);
+    
+    /**
+     * Sets the entire state of a player.
+     */
+    public record SavePlayer(PlayerDto player) implements PlayerMutation {
+        
+        @Override
+        public String gameSyncId() {
+            return player.gameSyncId();
+        }
+        
+        @Override
+        public void apply(Map<String, PlayerDto> players) {
+            players.put(player.gameSyncId(), player);
+        }
+    }
+}
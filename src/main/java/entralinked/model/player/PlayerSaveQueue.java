@@ -0,0 +1,241 @@
+package entralinked.model.player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Write-behind queue for player data.
+ * Saves are snapshotted on the calling thread and passed to the writer on a dedicated thread after a short delay.
+ * If the same player is saved again before its pending save is written, the pending save is simply replaced,
+ * so a burst of saves results in a single write.
+ * 
+ * Failed writes are retried later. While the writer is failing, or after the queue has been shut down, the caller waits
+ * for its save to be written so that it finds out whether its data was written.
+ * Writes never overlap, so an older save of a player can't be written after a newer one.
+ */
+public class PlayerSaveQueue {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private final Map<String, PlayerDto> pendingSaves = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("PlayerSaveQueue", true));
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong mergeCount = new AtomicLong();
+    private final AtomicLong failedWriteCount = new AtomicLong();
+    private final AtomicLong totalWriteTime = new AtomicLong();
+    private final AtomicLong maxWriteTime = new AtomicLong();
+    private final Predicate<PlayerDto> writer;
+    private final long saveDelay;
+    private volatile boolean failing;
+    
+    /**
+     * @param writer Function that writes the data and returns {@code true} if it succeeded.
+     * @param saveDelay The amount of milliseconds to wait before a queued save is written.
+     */
+    public PlayerSaveQueue(Predicate<PlayerDto> writer, long saveDelay) {
+        this.writer = writer;
+        this.saveDelay = saveDelay;
+    }
+    
+    /**
+     * Takes a snapshot of the player data and queues it to be written.
+     * If the queue has been shut down or the last write failed, this waits until the data has been written instead.
+     * 
+     * @return {@code false} if this waited for the write and it failed, otherwise {@code true}.
+     */
+    public boolean enqueue(Player player) {
+        String gameSyncId = player.getGameSyncId();
+        PlayerDto previous = pendingSaves.put(gameSyncId, PlayerDto.snapshot(player));
+        
+        if(failing || executor.isShutdown()) {
+            return writeNow(gameSyncId);
+        }
+        
+        // Only schedule a write if there wasn't one scheduled already
+        if(previous != null) {
+            mergeCount.incrementAndGet();
+            return true;
+        }
+        
+        try {
+            executor.schedule(() -> write(gameSyncId), saveDelay, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException e) {
+            return writeNow(gameSyncId); // Shut down in the meantime
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Writes the pending save of the specified player on the writer thread and waits for it,
+     * or writes it on the calling thread if the writer thread is gone.
+     * 
+     * @return {@code false} if the write failed, otherwise {@code true}.
+     */
+    private boolean writeNow(String gameSyncId) {
+        Future<Boolean> future = null;
+        
+        try {
+            future = executor.submit(() -> write(gameSyncId));
+        } catch(RejectedExecutionException e) {
+            return write(gameSyncId);
+        }
+        
+        try {
+            return future.get();
+        } catch(InterruptedException | ExecutionException e) {
+            logger.error("Could not write player data for {}", gameSyncId, e);
+            return false;
+        }
+    }
+    
+    /**
+     * Writes all pending saves and blocks until they have been written.
+     */
+    public void flush() {
+        if(pendingSaves.isEmpty()) {
+            return;
+        }
+        
+        logger.info("Writing {} pending player save(s) ...", pendingSaves.size());
+        
+        // Write on the calling thread if the writer thread is already gone
+        if(executor.isShutdown()) {
+            writePending();
+            return;
+        }
+        
+        try {
+            executor.submit(this::writePending).get();
+        } catch(InterruptedException | ExecutionException e) {
+            logger.error("Could not write pending player saves", e);
+        }
+    }
+    
+    /**
+     * Writes all pending saves and stops the writer thread.
+     */
+    public void shutdown() {
+        flush();
+        executor.shutdown();
+    }
+    
+    private void writePending() {
+        List.copyOf(pendingSaves.keySet()).forEach(this::write);
+    }
+    
+    /**
+     * Writes the pending save of the specified player.
+     * Synchronized because saves are written on the calling thread once the writer thread is gone.
+     * 
+     * @return {@code false} if the write failed, otherwise {@code true}.
+     */
+    private synchronized boolean write(String gameSyncId) {
+        PlayerDto save = pendingSaves.get(gameSyncId);
+        
+        // Will be null if it was already written by a flush
+        if(save == null) {
+            return true;
+        }
+        
+        long beginTime = System.nanoTime();
+        
+        // The save stays queued until it has been written, so that it can still be found by getPendingSave
+        if(!writer.test(save)) {
+            failing = true;
+            failedWriteCount.incrementAndGet();
+            logger.warn("Could not write player data for {} -- it will be retried later", gameSyncId);
+            schedule(gameSyncId);
+            return false;
+        }
+        
+        failing = false;
+        
+        // Schedule another write if a newer save was merged into this one while it was being written
+        if(!pendingSaves.remove(gameSyncId, save)) {
+            schedule(gameSyncId);
+        }
+        
+        long writeTime = System.nanoTime() - beginTime;
+        writeCount.incrementAndGet();
+        totalWriteTime.addAndGet(writeTime);
+        maxWriteTime.accumulateAndGet(writeTime, Math::max);
+        logger.debug("Wrote player data for {} in {} microseconds", gameSyncId, writeTime / 1000);
+        return true;
+    }
+    
+    /**
+     * Schedules a write of the pending save of the specified player, unless the writer thread is gone.
+     * Saves that are left over after a shutdown are written by the next call to {@link #flush()} or {@link #enqueue(Player)}.
+     */
+    private void schedule(String gameSyncId) {
+        try {
+            executor.schedule(() -> write(gameSyncId), saveDelay, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+    
+    /**
+     * @return The data of the save of the specified player that has yet to be written, or {@code null} if there is none.
+     */
+    public PlayerDto getPendingSave(String gameSyncId) {
+        return pendingSaves.get(gameSyncId);
+    }
+    
+    /**
+     * @return The number of players with a save that has not been written yet.
+     */
+    public int getQueueSize() {
+        return pendingSaves.size();
+    }
+    
+    /**
+     * @return The number of saves that have been written.
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+    
+    /**
+     * @return The number of saves that were merged into an already pending save.
+     */
+    public long getMergeCount() {
+        return mergeCount.get();
+    }
+    
+    /**
+     * @return The number of writes that failed.
+     */
+    public long getFailedWriteCount() {
+        return failedWriteCount.get();
+    }
+    
+    /**
+     * @return The average time it took to write a save, in microseconds.
+     */
+    public long getAverageWriteTime() {
+        long count = writeCount.get();
+        return count == 0 ? 0 : totalWriteTime.get() / count / 1000;
+    }
+    
+    /**
+     * @return The longest time it took to write a save, in microseconds.
+     */
+    public long getMaxWriteTime() {
+        return maxWriteTime.get() / 1000;
+    }
+}
@@ -0,0 +1,365 @@
+package entralinked.model.player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Content-addressed storage for game save files.
+ * 
+ * Game save files are split into fixed-size chunks that are compressed and stored under their SHA-256 hash,
+ * so identical chunks are only stored once no matter how many saves contain them.
+ * Each player has a small index file that lists the chunks of their save file in order.
+ * Chunks that are no longer referenced by any index are periodically removed by {@link #collectGarbage()}.
+ * Stores hold the read side of a lock and garbage collection holds the write side, so a collection never runs while a save
+ * file is being stored and can't delete a chunk that a store has just decided to reuse.
+ * Chunks and indices are forced to the storage device before they are moved into place, so an index never refers to a chunk
+ * that was lost in a crash.
+ */
+public class SaveStore {
+    
+    public static final int CHUNK_SIZE = 8192;
+    private static final int INDEX_MAGIC = 0x45534156; // ESAV
+    private static final int HASH_LENGTH = 32;
+    private static final long GARBAGE_COLLECTION_INTERVAL = TimeUnit.HOURS.toMillis(24);
+    private static final long GARBAGE_GRACE_PERIOD = TimeUnit.HOURS.toMillis(1);
+    private static final HexFormat hexFormat = HexFormat.of();
+    private static final Logger logger = LogManager.getLogger();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong chunkWriteCount = new AtomicLong();
+    private final AtomicLong chunkReuseCount = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("SaveStoreGC", true));
+    private final File chunkDirectory;
+    private final File playerDataDirectory;
+    
+    /**
+     * @param chunkDirectory The directory in which chunks are stored.
+     * @param playerDataDirectory The directory containing the player data directories, which are scanned for index files.
+     */
+    public SaveStore(File chunkDirectory, File playerDataDirectory) {
+        this.chunkDirectory = chunkDirectory;
+        this.playerDataDirectory = playerDataDirectory;
+        executor.scheduleWithFixedDelay(this::collectGarbage, GARBAGE_GRACE_PERIOD, GARBAGE_COLLECTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Splits the data read from the input stream into chunks, stores the chunks that aren't stored yet,
+     * and then atomically replaces the specified index file.
+     */
+    public void store(InputStream inputStream, File indexFile) throws IOException {
+        lock.readLock().lock();
+        
+        try {
+            storeLocked(inputStream, indexFile);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void storeLocked(InputStream inputStream, File indexFile) throws IOException {
+        MessageDigest digest = createDigest();
+        List<byte[]> hashes = new ArrayList<>();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long length = 0;
+        int chunkLength = 0;
+        
+        while((chunkLength = inputStream.readNBytes(chunk, 0, CHUNK_SIZE)) > 0) {
+            digest.update(chunk, 0, chunkLength);
+            byte[] hash = digest.digest();
+            storeChunk(hash, chunk, chunkLength);
+            hashes.add(hash);
+            length += chunkLength;
+        }
+        
+        // Write index to a temporary file first so that the old index stays intact if something goes wrong
+        File parentFile = indexFile.getAbsoluteFile().getParentFile();
+        parentFile.mkdirs();
+        Path temporaryFile = Files.createTempFile(parentFile.toPath(), indexFile.getName(), ".tmp");
+        
+        try {
+            try(FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile.toFile());
+                    DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+                outputStream.writeInt(INDEX_MAGIC);
+                outputStream.writeLong(length);
+                outputStream.writeInt(hashes.size());
+                
+                for(byte[] hash : hashes) {
+                    outputStream.write(hash);
+                }
+                
+                outputStream.flush();
+                fileOutputStream.getChannel().force(false);
+            }
+            
+            move(temporaryFile, indexFile.toPath());
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+        
+        storeCount.incrementAndGet();
+    }
+    
+    private void storeChunk(byte[] hash, byte[] chunk, int length) throws IOException {
+        File chunkFile = getChunkFile(hash);
+        
+        // Mark existing chunk as recently used so that a concurrent garbage collection won't delete it
+        if(chunkFile.exists()) {
+            chunkFile.setLastModified(System.currentTimeMillis());
+            chunkReuseCount.incrementAndGet();
+            return;
+        }
+        
+        chunkFile.getParentFile().mkdirs();
+        Path temporaryFile = Files.createTempFile(chunkFile.getParentFile().toPath(), chunkFile.getName(), ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        
+        try {
+            try(FileOutputStream fileOutputStream = new FileOutputStream(temporaryFile.toFile());
+                    DeflaterOutputStream outputStream = new DeflaterOutputStream(fileOutputStream, deflater)) {
+                outputStream.write(chunk, 0, length);
+                outputStream.finish();
+                fileOutputStream.getChannel().force(false);
+            }
+            
+            move(temporaryFile, chunkFile.toPath());
+            chunkWriteCount.incrementAndGet();
+        } finally {
+            deflater.end();
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+    
+    /**
+     * Opens a stream that reassembles the save file described by the specified index file.
+     * Chunks are read and decompressed one at a time as the stream is read.
+     */
+    public InputStream open(File indexFile) throws IOException {
+        return new ChunkInputStream(readIndex(indexFile));
+    }
+    
+    /**
+     * @return The length of the save file described by the specified index file.
+     */
+    public long getLength(File indexFile) throws IOException {
+        try(DataInputStream inputStream = openIndex(indexFile)) {
+            return inputStream.readLong();
+        }
+    }
+    
+    private List<byte[]> readIndex(File indexFile) throws IOException {
+        try(DataInputStream inputStream = openIndex(indexFile)) {
+            inputStream.readLong(); // Length
+            int count = inputStream.readInt();
+            List<byte[]> hashes = new ArrayList<>(count);
+            
+            for(int i = 0; i < count; i++) {
+                byte[] hash = new byte[HASH_LENGTH];
+                inputStream.readFully(hash);
+                hashes.add(hash);
+            }
+            
+            return hashes;
+        }
+    }
+    
+    private DataInputStream openIndex(File indexFile) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        
+        if(inputStream.readInt() != INDEX_MAGIC) {
+            inputStream.close();
+            throw new IOException("Invalid save index file %s".formatted(indexFile.getAbsolutePath()));
+        }
+        
+        return inputStream;
+    }
+    
+    /**
+     * Deletes all chunks that aren't referenced by any of the index files in the player data directory.
+     * Save files can't be stored during the collection. Chunks that were written or reused shortly before it are kept anyway,
+     * in case an index file was replaced outside of this store.
+     * 
+     * @return The number of chunks that were deleted.
+     */
+    public int collectGarbage() {
+        lock.writeLock().lock();
+        
+        try {
+            return collectGarbageLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private int collectGarbageLocked() {
+        long beginTime = System.currentTimeMillis();
+        long cutoffTime = beginTime - GARBAGE_GRACE_PERIOD;
+        Set<String> referencedChunks = new HashSet<>();
+        File[] directories = playerDataDirectory.listFiles(File::isDirectory);
+        File[] chunkDirectories = chunkDirectory.listFiles(File::isDirectory);
+        
+        if(directories == null || chunkDirectories == null) {
+            return 0;
+        }
+        
+        // Mark
+        for(File directory : directories) {
+            File indexFile = new File(directory, "save.idx");
+            
+            if(!indexFile.exists()) {
+                continue;
+            }
+            
+            try {
+                readIndex(indexFile).forEach(hash -> referencedChunks.add(hexFormat.formatHex(hash)));
+            } catch(IOException e) {
+                // Don't delete anything if the references can't be determined reliably
+                logger.error("Aborting save chunk garbage collection because {} could not be read", indexFile.getAbsolutePath(), e);
+                return 0;
+            }
+        }
+        
+        // Sweep
+        int deleteCount = 0;
+        
+        for(File directory : chunkDirectories) {
+            for(File chunkFile : directory.listFiles()) {
+                if(!referencedChunks.contains(chunkFile.getName()) && chunkFile.lastModified() < cutoffTime && chunkFile.delete()) {
+                    deleteCount++;
+                }
+            }
+        }
+        
+        logger.info("Deleted {} unused save chunk(s) in {} milliseconds", deleteCount, System.currentTimeMillis() - beginTime);
+        return deleteCount;
+    }
+    
+    private File getChunkFile(byte[] hash) {
+        String name = hexFormat.formatHex(hash);
+        return new File(new File(chunkDirectory, name.substring(0, 2)), name);
+    }
+    
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform is required to support SHA-256
+        }
+    }
+    
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * @return The number of save files that have been stored.
+     */
+    public long getStoreCount() {
+        return storeCount.get();
+    }
+    
+    /**
+     * @return The number of chunks that have been written to disk.
+     */
+    public long getChunkWriteCount() {
+        return chunkWriteCount.get();
+    }
+    
+    /**
+     * @return The number of chunks that did not have to be written because they were already stored.
+     */
+    public long getChunkReuseCount() {
+        return chunkReuseCount.get();
+    }
+    
+    /**
+     * Input stream that reads and decompresses chunks one at a time.
+     */
+    private class ChunkInputStream extends InputStream {
+        
+        private final List<byte[]> hashes;
+        private InputStream currentChunk;
+        private int nextChunk;
+        
+        public ChunkInputStream(List<byte[]> hashes) {
+            this.hashes = hashes;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if(length == 0) {
+                return 0;
+            }
+            
+            while(true) {
+                if(currentChunk == null) {
+                    if(nextChunk >= hashes.size()) {
+                        return -1;
+                    }
+                    
+                    currentChunk = new InflaterInputStream(new FileInputStream(getChunkFile(hashes.get(nextChunk++))));
+                }
+                
+                int bytesRead = currentChunk.read(buffer, offset, length);
+                
+                if(bytesRead > 0) {
+                    return bytesRead;
+                }
+                
+                currentChunk.close();
+                currentChunk = null;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if(currentChunk != null) {
+                currentChunk.close();
+                currentChunk = null;
+            }
+            
+            nextChunk = hashes.size();
+        }
+    }
+}
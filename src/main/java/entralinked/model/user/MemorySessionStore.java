@@ -0,0 +1,246 @@
+package entralinked.model.user;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * In-memory {@link SessionStore} that removes sessions when they expire.
+ * 
+ * Sessions are placed in a hashed timer wheel based on their expiry time, and the slots of the wheel are swept as time passes.
+ * Each sweep only visits the sessions that might expire during it, so abandoned sessions are removed without scanning the whole store.
+ * When the store is full, the oldest session is evicted to make room for a new one.
+ * All deadlines are based on a monotonic clock and are unaffected by changes to the system time.
+ */
+public class MemorySessionStore implements SessionStore {
+    
+    private static final long TICK_DURATION = TimeUnit.SECONDS.toNanos(1);
+    private static final int WHEEL_SIZE = 2048; // Must be a power of two -- a single rotation spans a little over 34 minutes
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final Entry[] wheel = new Entry[WHEEL_SIZE];
+    private final Entry order = new Entry(null, null, 0, 0); // Sentinel of the list of sessions in insertion order
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final ScheduledExecutorService executor;
+    private final LongSupplier clock;
+    private final long startTime;
+    private final int capacity;
+    private long currentTick; // The next tick to be swept
+    
+    /**
+     * A stored session, which is linked both into its wheel slot and into the insertion order list.
+     */
+    private static class Entry {
+        
+        private final String token;
+        private final ServiceSession session;
+        private final long deadline;
+        private final long tick;
+        private Entry slotPrevious;
+        private Entry slotNext;
+        private Entry orderPrevious;
+        private Entry orderNext;
+        
+        private Entry(String token, ServiceSession session, long deadline, long tick) {
+            this.token = token;
+            this.session = session;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+    }
+    
+    /**
+     * Creates a session store that is swept once every second by a background thread.
+     */
+    public MemorySessionStore(int capacity) {
+        this(capacity, System::nanoTime, Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("SessionStore", true)));
+        executor.scheduleAtFixedRate(this::expireSessions, TICK_DURATION, TICK_DURATION, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Creates a session store that is only swept when {@link #expireSessions()} is called.
+     * 
+     * @param clock The clock to read deadlines from, which must be compatible with {@link System#nanoTime()}.
+     */
+    MemorySessionStore(int capacity, LongSupplier clock) {
+        this(capacity, clock, null);
+    }
+    
+    private MemorySessionStore(int capacity, LongSupplier clock, ScheduledExecutorService executor) {
+        if(capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        
+        this.capacity = capacity;
+        this.clock = clock;
+        this.executor = executor;
+        this.startTime = clock.getAsLong();
+        order.orderPrevious = order;
+        order.orderNext = order;
+    }
+    
+    /**
+     * Stores a session under the specified token, evicting the oldest session if the store is full.
+     */
+    @Override
+    public synchronized boolean put(String token, ServiceSession session) {
+        if(!insert(token, session)) {
+            return false;
+        }
+        
+        createdCount.incrementAndGet();
+        return true;
+    }
+    
+    /**
+     * Stores a session that was created earlier, such as one that was loaded from disk.
+     * Works like {@link #put(String, ServiceSession)}, except that the session is not counted as created.
+     */
+    synchronized boolean restore(String token, ServiceSession session) {
+        return insert(token, session);
+    }
+    
+    private boolean insert(String token, ServiceSession session) {
+        if(sessions.containsKey(token)) {
+            return false;
+        }
+        
+        // Evict the oldest sessions until there is room
+        while(sessions.size() >= capacity) {
+            remove(order.orderNext);
+            evictedCount.incrementAndGet();
+        }
+        
+        // Sessions that are already due are swept during the next tick
+        long deadline = session.expiry();
+        Entry entry = new Entry(token, session, deadline, Math.max(getTick(deadline), currentTick));
+        int slot = (int)(entry.tick & (WHEEL_SIZE - 1));
+        entry.slotNext = wheel[slot];
+        
+        if(entry.slotNext != null) {
+            entry.slotNext.slotPrevious = entry;
+        }
+        
+        wheel[slot] = entry;
+        entry.orderPrevious = order.orderPrevious;
+        entry.orderNext = order;
+        order.orderPrevious.orderNext = entry;
+        order.orderPrevious = entry;
+        sessions.put(token, entry);
+        return true;
+    }
+    
+    @Override
+    public ServiceSession get(String token) {
+        Entry entry = sessions.get(token);
+        
+        if(entry == null) {
+            return null;
+        }
+        
+        // Remove it right away if it expired between sweeps
+        if(entry.session.hasExpired(clock.getAsLong())) {
+            synchronized(this) {
+                if(sessions.get(token) == entry) {
+                    remove(entry);
+                    expiredCount.incrementAndGet();
+                }
+            }
+            
+            return null;
+        }
+        
+        return entry.session;
+    }
+    
+    /**
+     * Sweeps every wheel slot whose tick has fully passed and removes the sessions in it that have expired.
+     * If more than a full rotation has passed since the last sweep, each slot is only swept once.
+     */
+    public synchronized void expireSessions() {
+        long now = clock.getAsLong();
+        long targetTick = getTick(now);
+        currentTick = Math.max(currentTick, targetTick - WHEEL_SIZE);
+        
+        for(; currentTick < targetTick; currentTick++) {
+            Entry entry = wheel[(int)(currentTick & (WHEEL_SIZE - 1))];
+            
+            while(entry != null) {
+                Entry next = entry.slotNext;
+                
+                // Sessions from later rotations stay in the slot
+                if(entry.tick <= currentTick || entry.session.hasExpired(now)) {
+                    remove(entry);
+                    expiredCount.incrementAndGet();
+                }
+                
+                entry = next;
+            }
+        }
+    }
+    
+    /**
+     * Passes all stored sessions to the specified consumer, from oldest to newest.
+     * Sessions that have expired but have not been swept yet are included.
+     */
+    public synchronized void forEach(BiConsumer<String, ServiceSession> consumer) {
+        for(Entry entry = order.orderNext; entry != order; entry = entry.orderNext) {
+            consumer.accept(entry.token, entry.session);
+        }
+    }
+    
+    private void remove(Entry entry) {
+        sessions.remove(entry.token);
+        
+        // Unlink from wheel slot
+        if(entry.slotPrevious == null) {
+            wheel[(int)(entry.tick & (WHEEL_SIZE - 1))] = entry.slotNext;
+        } else {
+            entry.slotPrevious.slotNext = entry.slotNext;
+        }
+        
+        if(entry.slotNext != null) {
+            entry.slotNext.slotPrevious = entry.slotPrevious;
+        }
+        
+        // Unlink from insertion order
+        entry.orderPrevious.orderNext = entry.orderNext;
+        entry.orderNext.orderPrevious = entry.orderPrevious;
+    }
+    
+    /**
+     * @return The tick during which the specified time occurs.
+     * Ticks are counted from the creation of this store, and times before that all fall into tick 0.
+     */
+    private long getTick(long time) {
+        return Math.max(0, time - startTime) / TICK_DURATION;
+    }
+    
+    @Override
+    public int getSize() {
+        return sessions.size();
+    }
+    
+    @Override
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+    
+    @Override
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+    
+    @Override
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+}
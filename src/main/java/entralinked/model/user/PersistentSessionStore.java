@@ -0,0 +1,300 @@
+package entralinked.model.user;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * {@link SessionStore} that keeps sessions in a {@link MemorySessionStore} and appends them to a log file,
+ * so that clients don't have to log in again after a restart.
+ * 
+ * Each session is appended to the log with a single write, which is not synced to disk.
+ * Writes are done by a single background thread, so storing a session never waits for the disk.
+ * Expiry times are logged as wall clock times because monotonic clock values are meaningless to another process.
+ * When the store is opened, the sessions in the log that haven't expired yet are loaded and the log is rewritten to only contain them.
+ * The log is also rewritten by the background thread whenever it contains far more records than there are stored sessions.
+ * 
+ * Session tokens are stored in plain text, and anyone who can read the log can use them until they expire.
+ * On platforms that support POSIX file permissions, the log is therefore only readable and writable by its owner.
+ */
+public class PersistentSessionStore implements SessionStore {
+    
+    private static final int LOG_MAGIC = 0x53534553; // SESS
+    private static final int MIN_COMPACTION_SIZE = 1024;
+    private static final Logger logger = LogManager.getLogger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("SessionLog", true));
+    private final MemorySessionStore sessions;
+    private final File file;
+    private final Function<String, User> userLookup;
+    private FileOutputStream outputStream;
+    private int recordCount;
+    
+    /**
+     * @param file The log file.
+     * @param capacity The maximum amount of sessions to keep.
+     * @param userLookup Function that returns the user with the specified ID, or {@code null} if it doesn't exist.
+     */
+    public PersistentSessionStore(File file, int capacity, Function<String, User> userLookup) throws IOException {
+        this.sessions = new MemorySessionStore(capacity);
+        this.file = file;
+        this.userLookup = userLookup;
+        long beginTime = System.currentTimeMillis();
+        int count = load();
+        compact();
+        
+        if(count > 0) {
+            logger.info("Loaded {} session(s) in {} milliseconds", count, System.currentTimeMillis() - beginTime);
+        }
+    }
+    
+    /**
+     * Loads the sessions in the log that haven't expired yet.
+     * A log that can't be read is discarded, because clients can always log in again.
+     * 
+     * @return The number of sessions that were loaded.
+     */
+    private int load() {
+        if(!file.exists()) {
+            return 0;
+        }
+        
+        try(DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(inputStream.readInt() != LOG_MAGIC) {
+                throw new IOException("Invalid session log file");
+            }
+            
+            while(true) {
+                String token;
+                String userId;
+                String service;
+                String branchCode;
+                String challengeHash;
+                long expiry;
+                
+                try {
+                    token = inputStream.readUTF();
+                    userId = inputStream.readUTF();
+                    service = inputStream.readUTF();
+                    branchCode = readNullableString(inputStream);
+                    challengeHash = readNullableString(inputStream);
+                    expiry = inputStream.readLong();
+                } catch(EOFException e) {
+                    break; // End of log, or the last record was cut off by a crash
+                }
+                
+                User user = userLookup.apply(userId);
+                long expiryNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(expiry - System.currentTimeMillis());
+                ServiceSession session = new ServiceSession(user, service, branchCode, challengeHash, expiryNanos);
+                
+                // Skip sessions of users that no longer exist
+                if(user != null && !session.hasExpired()) {
+                    sessions.restore(token, session);
+                }
+            }
+        } catch(IOException e) {
+            logger.error("Could not load sessions from {}", file.getAbsolutePath(), e);
+        }
+        
+        return sessions.getSize();
+    }
+    
+    @Override
+    public synchronized boolean put(String token, ServiceSession session) {
+        if(!sessions.put(token, session)) {
+            return false;
+        }
+        
+        if(executor.isShutdown()) {
+            return true; // Closed
+        }
+        
+        executor.execute(() -> writeRecord(token, session));
+        return true;
+    }
+    
+    /**
+     * Appends a session to the log, and compacts the log if it has grown too large.
+     * Only called from the background thread.
+     */
+    private void writeRecord(String token, ServiceSession session) {
+        // The session stays usable until the next restart if it can't be logged
+        try {
+            if(outputStream == null) {
+                outputStream = new FileOutputStream(file, true);
+            }
+            
+            outputStream.write(toRecord(token, session));
+            recordCount++;
+            
+            if(recordCount > Math.max(MIN_COMPACTION_SIZE, sessions.getSize() * 2)) {
+                compact();
+            }
+        } catch(IOException e) {
+            logger.error("Could not write session to {}", file.getAbsolutePath(), e);
+        }
+    }
+    
+    @Override
+    public ServiceSession get(String token) {
+        return sessions.get(token);
+    }
+    
+    /**
+     * Rewrites the log so that it only contains the sessions that haven't expired yet, and then reopens it.
+     * Only called from the constructor and from the background thread.
+     */
+    private void compact() throws IOException {
+        if(outputStream != null) {
+            outputStream.close();
+            outputStream = null;
+        }
+        
+        // Write log to a temporary file first so that the old log stays intact if something goes wrong
+        File parentFile = file.getAbsoluteFile().getParentFile();
+        parentFile.mkdirs();
+        Path temporaryFile = createTemporaryFile(parentFile);
+        List<Map.Entry<String, ServiceSession>> entries = new ArrayList<>();
+        sessions.forEach((token, session) -> entries.add(Map.entry(token, session)));
+        int count = 0;
+        
+        try {
+            try(BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(Files.newOutputStream(temporaryFile))) {
+                new DataOutputStream(bufferedOutputStream).writeInt(LOG_MAGIC);
+                
+                for(Map.Entry<String, ServiceSession> entry : entries) {
+                    if(!entry.getValue().hasExpired()) {
+                        bufferedOutputStream.write(toRecord(entry.getKey(), entry.getValue()));
+                        count++;
+                    }
+                }
+            }
+            
+            move(temporaryFile, file.toPath());
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+            outputStream = new FileOutputStream(file, true);
+        }
+        
+        recordCount = count;
+    }
+    
+    /**
+     * Creates a temporary file for the log that can only be accessed by its owner, if the platform supports it.
+     */
+    private Path createTemporaryFile(File parentFile) throws IOException {
+        if(!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return Files.createTempFile(parentFile.toPath(), file.getName(), ".tmp");
+        }
+        
+        return Files.createTempFile(parentFile.toPath(), file.getName(), ".tmp",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    }
+    
+    private static byte[] toRecord(String token, ServiceSession session) throws IOException {
+        ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream(192);
+        DataOutputStream outputStream = new DataOutputStream(byteOutputStream);
+        outputStream.writeUTF(token);
+        outputStream.writeUTF(session.user().getId());
+        outputStream.writeUTF(session.service());
+        writeNullableString(outputStream, session.branchCode());
+        writeNullableString(outputStream, session.challengeHash());
+        outputStream.writeLong(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(session.expiry() - System.nanoTime()));
+        return byteOutputStream.toByteArray();
+    }
+    
+    private static void writeNullableString(DataOutputStream outputStream, String string) throws IOException {
+        outputStream.writeBoolean(string != null);
+        
+        if(string != null) {
+            outputStream.writeUTF(string);
+        }
+    }
+    
+    private static String readNullableString(DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+    
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Writes the sessions that are still queued to the log and closes it.
+     */
+    @Override
+    public synchronized void close() {
+        if(executor.isShutdown()) {
+            return;
+        }
+        
+        executor.shutdown();
+        
+        try {
+            if(!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Timed out while writing queued sessions to {}", file.getName());
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if(outputStream == null) {
+            return;
+        }
+        
+        try {
+            outputStream.close();
+            outputStream = null;
+        } catch(IOException e) {
+            logger.error("Could not close session log", e);
+        }
+    }
+    
+    @Override
+    public int getSize() {
+        return sessions.getSize();
+    }
+    
+    @Override
+    public long getCreatedCount() {
+        return sessions.getCreatedCount();
+    }
+    
+    @Override
+    public long getExpiredCount() {
+        return sessions.getExpiredCount();
+    }
+    
+    @Override
+    public long getEvictedCount() {
+        return sessions.getEvictedCount();
+    }
+}
@@ -1,15 +1,25 @@
 package entralinked.model.user;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.time.temporal.TemporalUnit;
 
-public record ServiceSession(User user, String service, String branchCode, String challengeHash, LocalDateTime expiry) {
+/**
+ * @param expiry The {@link System#nanoTime()} value at which this session expires.
+ */
+public record ServiceSession(User user, String service, String branchCode, String challengeHash, long expiry) {
     
     public ServiceSession(User user, String service, String branchCode, String challengeHash, long expiry, TemporalUnit expiryUnit) {
-        this(user, service, branchCode, challengeHash, LocalDateTime.now().plus(expiry, expiryUnit));
+        this(user, service, branchCode, challengeHash, System.nanoTime() + Duration.of(expiry, expiryUnit).toNanos());
     }
     
     public boolean hasExpired() {
-        return LocalDateTime.now().isAfter(expiry);
+        return hasExpired(System.nanoTime());
+    }
+    
+    /**
+     * @param now The current {@link System#nanoTime()} value.
+     */
+    public boolean hasExpired(long now) {
+        return now - expiry >= 0; // Overflow-safe comparison
     }
 }
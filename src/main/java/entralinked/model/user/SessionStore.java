@@ -0,0 +1,45 @@
+package entralinked.model.user;
+
+/**
+ * Store for the {@link ServiceSession} objects of clients that have logged in, indexed by their auth token.
+ * Implementations remove sessions once they expire and hold a bounded number of sessions.
+ */
+public interface SessionStore {
+    
+    /**
+     * Stores a session under the specified token.
+     * 
+     * @return {@code true} if the session was stored, or {@code false} if a session with this token already exists.
+     */
+    public boolean put(String token, ServiceSession session);
+    
+    /**
+     * @return The session stored under the specified token, or {@code null} if there is none or if it has expired.
+     */
+    public ServiceSession get(String token);
+    
+    /**
+     * Releases any resources held by this store.
+     */
+    public default void close() {}
+    
+    /**
+     * @return The number of sessions that are currently stored.
+     */
+    public int getSize();
+    
+    /**
+     * @return The number of sessions that have been stored.
+     */
+    public long getCreatedCount();
+    
+    /**
+     * @return The number of sessions that have been removed because they expired.
+     */
+    public long getExpiredCount();
+    
+    /**
+     * @return The number of sessions that have been removed to make room for newer sessions.
+     */
+    public long getEvictedCount();
+}
@@ -1,12 +1,16 @@
 package entralinked.model.user;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import entralinked.model.dlc.Dlc;
 
+/**
+ * The profile map and the profiles in it are guarded by the user's monitor, so that the journal thread can take a
+ * consistent snapshot while handler threads modify them.
+ */
 public class User {
     
     private final String id;
@@ -39,24 +43,27 @@ public class User {
         return password;
     }
     
-    protected void addProfile(String branchCode, GameProfile profile) {
+    protected synchronized void addProfile(String branchCode, GameProfile profile) {
         profiles.put(branchCode, profile);
     }
     
-    protected void removeProfile(String branchCode) {
+    protected synchronized void removeProfile(String branchCode) {
         profiles.remove(branchCode);
     }
     
-    public GameProfile getProfile(String branchCode) {
+    public synchronized GameProfile getProfile(String branchCode) {
         return profiles.get(branchCode);
     }
     
-    public Collection<GameProfile> getProfiles() {
-        return Collections.unmodifiableCollection(profiles.values());
+    public synchronized Collection<GameProfile> getProfiles() {
+        return List.copyOf(profiles.values());
     }
     
-    protected Map<String, GameProfile> getProfileMap() {
-        return Collections.unmodifiableMap(profiles);
+    /**
+     * @return A copy of the profile map. Callers that read the profiles themselves should hold the user's monitor.
+     */
+    protected synchronized Map<String, GameProfile> getProfileMap() {
+        return new HashMap<>(profiles);
     }
     
     public void setDlcOverride(String type, Dlc target) {
@@ -13,10 +13,18 @@ public record UserDto(
         @JsonDeserialize(contentAs = GameProfileDto.class) Map<String, GameProfileDto> profiles) {
     
     public UserDto(User user) {
-        this(user.getId(), user.getPassword(),
-                user.getProfileMap().entrySet()
-                .stream()
-                .collect(Collectors.toMap(Entry::getKey, entry -> new GameProfileDto(entry.getValue()))));
+        this(user.getId(), user.getPassword(), copyProfiles(user));
+    }
+    
+    /**
+     * Copies the profiles of the specified user while holding its monitor, so that they can't be modified halfway through.
+     */
+    private static Map<String, GameProfileDto> copyProfiles(User user) {
+        synchronized(user) {
+            return user.getProfileMap().entrySet()
+                    .stream()
+                    .collect(Collectors.toMap(Entry::getKey, entry -> new GameProfileDto(entry.getValue())));
+        }
     }
     
     public User toUser() {
@@ -2,11 +2,14 @@ package entralinked.model.user;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
@@ -14,41 +17,74 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
+import entralinked.Configuration;
+import entralinked.model.user.UserMutation.SaveProfile;
+import entralinked.model.user.UserMutation.SaveUser;
 import entralinked.utility.CredentialGenerator;
+import entralinked.utility.Journal;
 import entralinked.utility.MD5;
 
 /**
  * Manager class for managing {@link User} information (Wi-Fi Connection users)
- * 
- * TODO session management is a bit scuffed
  */
 public class UserManager {
     
     public static final Pattern USER_ID_PATTERN = Pattern.compile("[0-9]{13}");
+    private static final int MAX_SERVICE_SESSIONS = 65536;
     private static final Logger logger = LogManager.getLogger();
-    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final ObjectMapper mapper = new ObjectMapper();
     private final Map<String, User> users = new ConcurrentHashMap<>();
-    private final Map<String, ServiceSession> serviceSessions = new ConcurrentHashMap<>();
+    private final SessionStore serviceSessions;
     private final File dataDirectory = new File("users");
+    private final UserStore store;
+    private final Journal<UserMutation> journal;
     
-    public UserManager() {      
+    public UserManager(Configuration configuration) {
+        Configuration.Persistence persistence = configuration.persistence();
+        journal = new Journal<>(new File("users.journal"), UserMutation.class, UserMutation::userId,
+                this::writeSnapshots, persistence.journalSyncInterval(), persistence.journalCompactionInterval());
         logger.info("Loading user and profile data ...");
+        long beginTime = System.currentTimeMillis();
         
-        // Check if directory exists
-        if(!dataDirectory.exists()) {
-            return;
-        }
-        
-        // Load user data
-        for(File file : dataDirectory.listFiles()) {
-            if(!file.isDirectory()) {
-                loadUser(file);
+        try {
+            store = new UserStore(new File("users.dat"));
+            
+            // Migrate user data if necessary
+            migrateLegacyData();
+            
+            // Load user data in parallel, then index it in store order
+            List<User> loadedUsers = store.readAll().entrySet()
+                    .parallelStream()
+                    .map(entry -> loadUser(entry.getKey(), entry.getValue()))
+                    .toList();
+            
+            for(User user : loadedUsers) {
+                if(user != null) {
+                    indexUser(user);
+                }
             }
+        } catch(IOException e) {
+            throw new UncheckedIOException("Could not load user store", e);
         }
         
-        logger.info("Loaded {} user(s)", users.size());
+        // Apply changes that were not compacted before the last shutdown and write them to the user store
+        journal.replay(mutation -> mutation.apply(users));
+        journal.compact();
+        logger.info("Loaded {} user(s) in {} milliseconds", users.size(), System.currentTimeMillis() - beginTime);
+        serviceSessions = createSessionStore();
+    }
+    
+    /**
+     * Opens the persistent session store, or falls back to an in-memory session store if it can't be opened.
+     */
+    private SessionStore createSessionStore() {
+        try {
+            return new PersistentSessionStore(new File("sessions.dat"), MAX_SERVICE_SESSIONS, users::get);
+        } catch(IOException e) {
+            logger.error("Could not open session store -- sessions will not be kept across restarts", e);
+            return new MemorySessionStore(MAX_SERVICE_SESSIONS);
+        }
     }
     
     /**
@@ -60,27 +96,91 @@ public class UserManager {
     }
     
     /**
-     * Loads a {@link User} from the specified input file.
-     * The user is indexed automatically, unless it has a duplicate ID or any duplicate profile ID.
+     * Moves the user data from the old storage format, one file per user, into the user store.
+     * The old data directory is renamed afterwards so that it can be kept as a backup.
+     */
+    private void migrateLegacyData() throws IOException {
+        if(!dataDirectory.isDirectory()) {
+            return;
+        }
+        
+        logger.info("Migrating user data to user store ...");
+        File[] files = dataDirectory.listFiles(File::isFile);
+        Arrays.sort(files);
+        List<UserDto> loadedUsers = Arrays.stream(files).parallel().map(this::loadLegacyUser).toList();
+        int count = 0;
+        
+        for(UserDto user : loadedUsers) {
+            if(user != null) {
+                store.write(user.id(), mapper.writeValueAsBytes(user));
+                count++;
+            }
+        }
+        
+        store.sync();
+        File backupDirectory = new File("users.migrated");
+        
+        if(!dataDirectory.renameTo(backupDirectory)) {
+            logger.warn("Could not rename {} to {} -- please move it elsewhere to prevent it from being migrated again",
+                    dataDirectory.getAbsolutePath(), backupDirectory.getName());
+        }
+        
+        logger.info("Migrated {} user(s)", count);
+    }
+    
+    /**
+     * Loads user data from the specified input file in the old storage format.
+     * Safe to call from multiple threads at once.
+     * 
+     * @return The loaded user data, or {@code null} if it could not be loaded.
      */
-    private void loadUser(File inputFile) {
+    private UserDto loadLegacyUser(File inputFile) {
         try {
-            // Deserialize user data
-            User user = mapper.readValue(inputFile, UserDto.class).toUser();
-            String id = user.getId();
+            UserDto user = mapper.readValue(inputFile, UserDto.class);
             
-            // Check for duplicate user ID
-            if(users.containsKey(id)) {
-                throw new IOException("Duplicate user ID %s".formatted(id));
+            // Check if user ID is valid
+            if(!isValidUserId(user.id())) {
+                throw new IOException("Invalid user ID");
             }
             
-            // Index user
-            users.put(id, user);
+            return user;
         } catch(IOException e) {
             logger.error("Could not load user data at {}", inputFile.getAbsolutePath(), e);
+            return null;
         }
     }
     
+    /**
+     * Loads a {@link User} from the specified record data.
+     * Safe to call from multiple threads at once.
+     * 
+     * @return The loaded user, or {@code null} if it could not be loaded.
+     */
+    private User loadUser(String id, byte[] data) {
+        try {
+            // Deserialize user data
+            return mapper.readValue(data, UserDto.class).toUser();
+        } catch(IOException e) {
+            logger.error("Could not load user data for {}", id, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Indexes a loaded {@link User}, unless it has a duplicate ID.
+     */
+    private void indexUser(User user) {
+        String id = user.getId();
+        
+        // Check for duplicate user ID
+        if(users.containsKey(id)) {
+            logger.error("Could not load user data for {}: Duplicate user ID", user.getRedactedId());
+            return;
+        }
+        
+        users.put(id, user);
+    }
+    
     /**
      * Saves the data of all users.
      */
@@ -89,41 +189,87 @@ public class UserManager {
     }
     
     /**
-     * Saves the data of the specified user to disk, and returns {@code true} if it succeeds.
-     * The output file is generated as follows:
-     * 
-     * {@code new File(dataDirectory, "WFC-%s".formatted(formattedId))}
-     * where {@code formattedId} is the user ID formatted to {@code ####-####-####-#000}
+     * Appends the data of the specified user to the user journal, and returns {@code true} if it succeeds.
+     * The user store is updated during the next journal compaction.
      */
     public boolean saveUser(User user) {
-        return saveUser(user, new File(dataDirectory, "WFC-%s.json".formatted(user.getFormattedId())));
+        return journal.append(new SaveUser(new UserDto(user)));
     }
     
     /**
-     * Saves the data of the specified user to the specified output file.
-     * 
-     * @return {@code true} if the data was saved successfully, {@code false} otherwise.
+     * Appends the data of a single profile of the specified user to the user journal, and returns {@code true} if it succeeds.
+     * Cheaper than {@link #saveUser(User)} when only one profile was changed.
+     */
+    public boolean saveProfile(User user, String branchCode, GameProfile profile) {
+        GameProfileDto snapshot;
+        
+        synchronized(user) {
+            snapshot = new GameProfileDto(profile);
+        }
+        
+        return saveProfile(user, branchCode, snapshot);
+    }
+    
+    /**
+     * Appends a snapshot of a single profile of the specified user to the user journal, and returns {@code true} if it succeeds.
+     * Useful for saving a profile from another thread than the one that modified it.
+     */
+    public boolean saveProfile(User user, String branchCode, GameProfileDto profile) {
+        return journal.append(new SaveProfile(user.getId(), branchCode, profile));
+    }
+    
+    /**
+     * Blocks until all journaled user data is synced to disk.
      */
-    private boolean saveUser(User user, File outputFile) {
+    public void flush() {
+        journal.sync();
+    }
+    
+    /**
+     * Syncs and closes the user journal and the user store, and closes the session log.
+     */
+    public void shutdown() {
+        journal.close();
+        serviceSessions.close();
+        
         try {
-            // Create parent directories
-            File parentFile = outputFile.getParentFile();
+            store.close();
+        } catch(IOException e) {
+            logger.error("Could not close user store", e);
+        }
+    }
+    
+    /**
+     * Writes the current data of the specified users to the user store.
+     * 
+     * @return {@code true} if all data was written successfully, {@code false} otherwise.
+     */
+    private boolean writeSnapshots(Set<String> userIds) {
+        boolean success = true;
+        
+        for(String userId : userIds) {
+            User user = users.get(userId);
             
-            if(parentFile != null) {
-                parentFile.mkdirs();
+            if(user == null) {
+                continue;
             }
             
-            // Serialize the entire user object first to minimize risk of corrupted files
-            byte[] bytes = mapper.writeValueAsBytes(new UserDto(user));
-            
-            // Finally, write the data.
-            Files.write(outputFile.toPath(), bytes);
+            try {
+                store.write(userId, mapper.writeValueAsBytes(new UserDto(user)));
+            } catch(IOException e) {
+                logger.error("Could not save user data for user {}", user.getRedactedId(), e);
+                success = false;
+            }
+        }
+        
+        try {
+            store.sync();
         } catch(IOException e) {
-            logger.error("Could not save user data for user {}", user.getId(), e);
+            logger.error("Could not sync user store", e);
             return false;
         }
         
-        return true;
+        return success;
     }
     
     /**
@@ -140,16 +286,16 @@ public class UserManager {
         // Create token
         String authToken = "NDS%s".formatted(CredentialGenerator.generateAuthToken(96));
         
-        if(serviceSessions.containsKey(authToken)) {
-            return createServiceSession(user, service, branchCode); // Top 5 things that never happen
-        }
-        
         // Create challenge
         String challenge = CredentialGenerator.generateChallenge(8);
         
         // Create session object
         ServiceSession session = new ServiceSession(user, service, branchCode, MD5.digest(challenge), 30, ChronoUnit.MINUTES);
-        serviceSessions.put(authToken, session);
+        
+        if(!serviceSessions.put(authToken, session)) {
+            return createServiceSession(user, service, branchCode); // Top 5 things that never happen
+        }
+        
         return new ServiceCredentials(authToken, challenge);
     }
     
@@ -159,19 +305,7 @@ public class UserManager {
      */
     public ServiceSession getServiceSession(String authToken, String service) {
         ServiceSession session = serviceSessions.get(authToken);
-        
-        // Check if session exists
-        if(session == null) {
-            return null;
-        }
-        
-        // Check if session has expired
-        if(session.hasExpired()) {
-            serviceSessions.remove(authToken);
-            return null;
-        }
-        
-        return session.service().equals(service) ? session : null;
+        return session == null || !session.service().equals(service) ? null : session;
     }
     
     /**
@@ -224,8 +358,8 @@ public class UserManager {
         GameProfile profile = new GameProfile(profileId);
         user.addProfile(branchCode, profile);
         
-        // Try to save user data and return null if it fails
-        if(!saveUser(user)) {
+        // Try to save profile data and return null if it fails
+        if(!saveProfile(user, branchCode, profile)) {
             user.removeProfile(branchCode);
             return null;
         }
@@ -247,6 +381,13 @@ public class UserManager {
         return users.get(id);
     }
     
+    /**
+     * @return The store containing all active service sessions.
+     */
+    public SessionStore getServiceSessions() {
+        return serviceSessions;
+    }
+    
     /**
      * @return An immutable {@link Collection} containing all users.
      */
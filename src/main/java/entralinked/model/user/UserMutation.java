@@ -0,0 +1,60 @@
+package entralinked.model.user;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonSubTypes.Type;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
+
+/**
+ * Journal record describing a change to a {@link User}.
+ */
+@JsonTypeInfo(use = Id.NAME, property = "type")
+@JsonSubTypes({
+    @Type(name = "user", value = UserMutation.SaveUser.class),
+    @Type(name = "profile", value = UserMutation.SaveProfile.class)
+})
+public interface UserMutation {
+    
+    /**
+     * @return The ID of the user that this mutation applies to.
+     */
+    public String userId();
+    
+    /**
+     * Applies this mutation to the specified user map.
+     */
+    public void apply(Map<String, User> users);
+    
+    /**
+     * Sets the entire state of a user.
+     */
+    public record SaveUser(UserDto user) implements UserMutation {
+        
+        @Override
+        public String userId() {
+            return user.id();
+        }
+        
+        @Override
+        public void apply(Map<String, User> users) {
+            users.put(user.id(), user.toUser());
+        }
+    }
+    
+    /**
+     * Sets a single profile of a user.
+     */
+    public record SaveProfile(String userId, String branchCode, GameProfileDto profile) implements UserMutation {
+        
+        @Override
+        public void apply(Map<String, User> users) {
+            User user = users.get(userId);
+            
+            if(user != null) {
+                user.addProfile(branchCode, profile.toProfile());
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package entralinked.model.user;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single-file storage for user records, keyed by user ID.
+ * 
+ * The file starts with a small header, followed by a chain of index segments and the record data.
+ * Each index segment holds a fixed number of fixed-width entries that store the user ID and the offset, length and capacity
+ * of the record slot. Everything in the file is aligned to {@link #SLOT_ALIGNMENT} bytes, so an index entry never crosses
+ * a sector boundary and is always written as a whole.
+ * 
+ * Records are never overwritten in place. Every write goes to a free slot, and the index entries are only updated during
+ * {@link #sync()}, after the record data has been forced to the storage device. The slots that were replaced stay untouched
+ * until the updated index entries have been forced as well, so after a crash every entry points to either the old or the new
+ * record, both intact. Unused space is collected when the store is opened and reused by later writes.
+ */
+public class UserStore {
+    
+    private static final int MAGIC = 0x454C5553; // ELUS
+    private static final int VERSION = 2;
+    private static final int SLOT_ALIGNMENT = 64;
+    private static final int HEADER_SIZE = SLOT_ALIGNMENT;
+    private static final int ENTRIES_PER_SEGMENT = 256;
+    private static final int ENTRY_SIZE = 32;
+    private static final int ID_LENGTH = 13;
+    private static final int SEGMENT_SIZE = SLOT_ALIGNMENT + ENTRIES_PER_SEGMENT * ENTRY_SIZE;
+    private final Map<String, Slot> slots = new LinkedHashMap<>();
+    private final Map<String, Slot> unsyncedEntries = new LinkedHashMap<>();
+    private final List<Slot> releasedSlots = new ArrayList<>();
+    private final TreeMap<Long, Long> freeSpace = new TreeMap<>();
+    private final Deque<Long> freeEntries = new ArrayDeque<>();
+    private final FileChannel channel;
+    private long lastSegmentPosition;
+    private long fileSize;
+    
+    private record Slot(long entryPosition, long offset, int length, int capacity) {}
+    
+    /**
+     * Opens the user store at the specified location, or creates it if it doesn't exist.
+     * 
+     * @throws IOException If the file could not be opened or is not a valid user store.
+     */
+    public UserStore(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        // Initialize new store
+        if(channel.size() == 0) {
+            fileSize = HEADER_SIZE;
+            appendSegment();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(HEADER_SIZE).rewind();
+            write(header, 0);
+            channel.force(false);
+            return;
+        }
+        
+        fileSize = (channel.size() + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+        readIndex();
+    }
+    
+    /**
+     * Reads all index segments and collects the space that is not used by any of them or by any record.
+     */
+    private void readIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        
+        // Check header
+        if(fileSize < HEADER_SIZE || !read(header, 0) || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a user store");
+        }
+        
+        if(header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported user store version %s".formatted(header.getInt(4)));
+        }
+        
+        List<long[]> usedSpace = new ArrayList<>();
+        usedSpace.add(new long[] { 0, HEADER_SIZE });
+        ByteBuffer buffer = ByteBuffer.allocate(SEGMENT_SIZE);
+        long segmentPosition = header.getLong(8);
+        byte[] idBytes = new byte[ID_LENGTH];
+        
+        while(segmentPosition != 0) {
+            if(segmentPosition + SEGMENT_SIZE > fileSize || !read(buffer.clear(), segmentPosition)) {
+                throw new IOException("Index segment at %s is out of bounds".formatted(segmentPosition));
+            }
+            
+            lastSegmentPosition = segmentPosition;
+            usedSpace.add(new long[] { segmentPosition, SEGMENT_SIZE });
+            
+            for(int i = 0; i < ENTRIES_PER_SEGMENT; i++) {
+                int entryOffset = SLOT_ALIGNMENT + i * ENTRY_SIZE;
+                long entryPosition = segmentPosition + entryOffset;
+                
+                // Check if entry is in use
+                if(buffer.get(entryOffset) == 0) {
+                    freeEntries.add(entryPosition);
+                    continue;
+                }
+                
+                buffer.get(entryOffset, idBytes);
+                String id = new String(idBytes, StandardCharsets.US_ASCII);
+                long offset = buffer.getLong(entryOffset + 16);
+                int length = buffer.getInt(entryOffset + 24);
+                int capacity = buffer.getInt(entryOffset + 28);
+                
+                if(offset + capacity > fileSize || length > capacity) {
+                    throw new IOException("Record of user %s is out of bounds".formatted(id));
+                }
+                
+                slots.put(id, new Slot(entryPosition, offset, length, capacity));
+                usedSpace.add(new long[] { offset, capacity });
+            }
+            
+            segmentPosition = buffer.getLong(0);
+        }
+        
+        // Everything in between is left over from records that were moved
+        usedSpace.sort(Comparator.comparingLong(range -> range[0]));
+        long position = 0;
+        
+        for(long[] range : usedSpace) {
+            if(range[0] > position) {
+                freeSpace.put(position, range[0] - position);
+            }
+            
+            position = Math.max(position, range[0] + range[1]);
+        }
+        
+        if(fileSize > position) {
+            freeSpace.put(position, fileSize - position);
+        }
+    }
+    
+    /**
+     * @return A map containing the record data of all users, in index order.
+     */
+    public synchronized Map<String, byte[]> readAll() throws IOException {
+        Map<String, byte[]> records = new LinkedHashMap<>();
+        
+        for(Map.Entry<String, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            byte[] data = new byte[slot.length()];
+            
+            if(!read(ByteBuffer.wrap(data), slot.offset())) {
+                throw new EOFException("Record of user %s is out of bounds".formatted(entry.getKey()));
+            }
+            
+            records.put(entry.getKey(), data);
+        }
+        
+        return records;
+    }
+    
+    /**
+     * Writes the record data of the specified user to a free slot.
+     * The index entry of the user is updated during the next {@link #sync()}, until then the previous record is kept.
+     */
+    public synchronized void write(String userId, byte[] data) throws IOException {
+        if(!UserManager.isValidUserId(userId)) {
+            throw new IllegalArgumentException("Invalid user ID: %s".formatted(userId));
+        }
+        
+        // Allocate a new slot with some room to grow
+        int capacity = (data.length + data.length / 2 + SLOT_ALIGNMENT - 1) / SLOT_ALIGNMENT * SLOT_ALIGNMENT;
+        long offset = allocate(capacity);
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        buffer.put(data).rewind();
+        write(buffer, offset);
+        
+        // Keep the previous slot until the new index entry is on disk
+        Slot previous = slots.get(userId);
+        long entryPosition = previous != null ? previous.entryPosition() : allocateEntry();
+        Slot slot = new Slot(entryPosition, offset, data.length, capacity);
+        
+        if(previous != null) {
+            releasedSlots.add(previous);
+        }
+        
+        slots.put(userId, slot);
+        unsyncedEntries.put(userId, slot);
+    }
+    
+    /**
+     * Forces all record data to be written to the storage device, then updates and forces the index entries of the records
+     * that were written since the last sync. Replaced slots may be reused after this.
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+        
+        if(unsyncedEntries.isEmpty()) {
+            return;
+        }
+        
+        for(Map.Entry<String, Slot> entry : unsyncedEntries.entrySet()) {
+            writeEntry(entry.getKey(), entry.getValue());
+        }
+        
+        channel.force(false);
+        unsyncedEntries.clear();
+        
+        for(Slot slot : releasedSlots) {
+            release(slot.offset(), slot.capacity());
+        }
+        
+        releasedSlots.clear();
+    }
+    
+    /**
+     * Syncs and closes the user store.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    /**
+     * @return The number of users in this store.
+     */
+    public synchronized int size() {
+        return slots.size();
+    }
+    
+    /**
+     * @return The number of bytes in the file that are not in use and may be reused.
+     */
+    public synchronized long getFreeSpace() {
+        return freeSpace.values().stream().mapToLong(Long::longValue).sum();
+    }
+    
+    private void writeEntry(String userId, Slot slot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        buffer.put(userId.getBytes(StandardCharsets.US_ASCII));
+        buffer.position(16);
+        buffer.putLong(slot.offset()).putInt(slot.length()).putInt(slot.capacity()).flip();
+        write(buffer, slot.entryPosition());
+    }
+    
+    private long allocateEntry() throws IOException {
+        if(freeEntries.isEmpty()) {
+            appendSegment();
+        }
+        
+        return freeEntries.poll();
+    }
+    
+    /**
+     * Finds the first free range that can fit the specified amount of bytes, or appends it to the end of the file.
+     * 
+     * @return The offset of the allocated range.
+     */
+    private long allocate(int size) {
+        Iterator<Map.Entry<Long, Long>> iterator = freeSpace.entrySet().iterator();
+        
+        while(iterator.hasNext()) {
+            Map.Entry<Long, Long> range = iterator.next();
+            long offset = range.getKey();
+            long rangeSize = range.getValue();
+            
+            if(rangeSize >= size) {
+                iterator.remove();
+                
+                if(rangeSize > size) {
+                    freeSpace.put(offset + size, rangeSize - size);
+                }
+                
+                return offset;
+            }
+        }
+        
+        long offset = fileSize;
+        fileSize += size;
+        return offset;
+    }
+    
+    /**
+     * Returns a range to the free space and merges it with its neighbours.
+     */
+    private void release(long offset, long size) {
+        Map.Entry<Long, Long> previous = freeSpace.floorEntry(offset);
+        
+        if(previous != null && previous.getKey() + previous.getValue() == offset) {
+            freeSpace.remove(previous.getKey());
+            offset = previous.getKey();
+            size += previous.getValue();
+        }
+        
+        Long nextSize = freeSpace.remove(offset + size);
+        
+        if(nextSize != null) {
+            size += nextSize;
+        }
+        
+        freeSpace.put(offset, size);
+    }
+    
+    /**
+     * Appends an empty index segment to the end of the file and links it to the previous segment.
+     * The segment is forced to the storage device before it is linked, so the index never points to an unwritten segment.
+     */
+    private void appendSegment() throws IOException {
+        long segmentPosition = fileSize;
+        write(ByteBuffer.allocate(SEGMENT_SIZE), segmentPosition);
+        fileSize += SEGMENT_SIZE;
+        channel.force(false);
+        
+        // Link the new segment; the first segment is linked from the header
+        if(lastSegmentPosition != 0) {
+            write(ByteBuffer.allocate(8).putLong(0, segmentPosition), lastSegmentPosition);
+        }
+        
+        lastSegmentPosition = segmentPosition;
+        
+        for(int i = 0; i < ENTRIES_PER_SEGMENT; i++) {
+            freeEntries.add(segmentPosition + SLOT_ALIGNMENT + i * ENTRY_SIZE);
+        }
+    }
+    
+    /**
+     * Reads bytes from the specified position until the buffer is full.
+     * 
+     * @return {@code false} if the end of the file was reached first, otherwise {@code true}.
+     */
+    private boolean read(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            
+            if(count < 0) {
+                return false;
+            }
+            
+            position += count;
+        }
+        
+        buffer.flip();
+        return true;
+    }
+    
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
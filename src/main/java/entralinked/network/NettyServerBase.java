@@ -5,7 +5,13 @@ import java.util.concurrent.ThreadFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import entralinked.Configuration;
+import io.netty.bootstrap.AbstractBootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
@@ -16,28 +22,72 @@ import io.netty.util.concurrent.Future;
 public abstract class NettyServerBase {
     
     private static final Logger logger = LogManager.getLogger();
+    private static final ByteBufAllocator heapAllocator = new PooledByteBufAllocator(false); // Shared so that servers don't each create their own arenas
     protected final ThreadFactory threadFactory;
     protected final EventLoopGroup eventLoopGroup;
+    protected final Configuration.Transport transport;
+    protected final ByteBufAllocator allocator;
     protected final String name;
     protected final int port;
     protected boolean usingEpoll;
     protected boolean started;
     
     public NettyServerBase(String name, int port) {
+        this(name, port, Configuration.Transport.DEFAULT);
+    }
+    
+    public NettyServerBase(String name, int port, Configuration.Transport transport) {
         this.threadFactory = new DefaultThreadFactory(name);
         this.name = name;
         this.port = port;
+        this.transport = transport;
+        this.allocator = transport.directBuffers() ? PooledByteBufAllocator.DEFAULT : heapAllocator;
+        int threads = transport.eventLoopThreads(); // 0 lets Netty decide
         
         if(Epoll.isAvailable()) {
-            eventLoopGroup = new EpollEventLoopGroup(threadFactory);
+            eventLoopGroup = new EpollEventLoopGroup(threads, threadFactory);
             usingEpoll = true;
         } else {
-            eventLoopGroup = new NioEventLoopGroup(threadFactory);
+            eventLoopGroup = new NioEventLoopGroup(threads, threadFactory);
         }
     }
     
     protected abstract ChannelFuture bootstrap(int port);
     
+    /**
+     * Applies the allocator and socket buffer sizes of the transport settings to the channels created by the bootstrap.
+     */
+    protected <B extends AbstractBootstrap<B, ?>> B applyOptions(B bootstrap) {
+        bootstrap.option(ChannelOption.ALLOCATOR, allocator);
+        
+        if(transport.receiveBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, transport.receiveBufferSize());
+        }
+        
+        if(transport.sendBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, transport.sendBufferSize());
+        }
+        
+        return bootstrap;
+    }
+    
+    /**
+     * Applies the allocator and socket buffer sizes of the transport settings to the channels accepted by the server.
+     */
+    protected ServerBootstrap applyChildOptions(ServerBootstrap bootstrap) {
+        bootstrap.childOption(ChannelOption.ALLOCATOR, allocator);
+        
+        if(transport.receiveBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, transport.receiveBufferSize());
+        }
+        
+        if(transport.sendBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, transport.sendBufferSize());
+        }
+        
+        return bootstrap;
+    }
+    
     public boolean start() {
         if(started) {
             return true;
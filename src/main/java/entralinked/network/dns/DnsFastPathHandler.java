@@ -0,0 +1,171 @@
+package entralinked.network.dns;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * Answers plain A queries for names in the DNS zones without going through the DNS codec.
+ * 
+ * Responses are built by copying the question of the query after the header and appending a pre-encoded
+ * answer record that points back to the question name, followed by the address of the zone.
+ * Any packet that isn't a single, uncompressed A/IN question for a name in the zones is passed on to the full codec instead.
+ */
+@Sharable
+public class DnsFastPathHandler extends ChannelInboundHandlerAdapter {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private static final int HEADER_LENGTH = 12;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int TYPE_A = 1;
+    private static final int CLASS_IN = 1;
+    private static final int FLAG_RESPONSE = 0x8000;
+    private static final int FLAG_RECURSION_DESIRED = 0x0100;
+    private static final byte[] ANSWER_PREFIX = {
+        (byte)0xC0, HEADER_LENGTH, // Pointer to the question name
+        0, TYPE_A, 0, CLASS_IN,
+        0, 0, 0, 0, // TTL
+        0, 4 // Address length
+    };
+    private final DnsZones zones;
+    private final AtomicLong fastPathCount = new AtomicLong();
+    private final AtomicLong slowPathCount = new AtomicLong();
+    
+    public DnsFastPathHandler(DnsZones zones) {
+        this.zones = zones;
+    }
+    
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if(msg instanceof DatagramPacket packet) {
+            ByteBuf query = packet.content();
+            int questionLength = getQuestionLength(query);
+            byte[] address = questionLength == -1 ? null : zones.resolve(readName(query));
+            
+            if(address != null) {
+                fastPathCount.incrementAndGet();
+                
+                try {
+                    ctx.writeAndFlush(new DatagramPacket(createResponse(ctx, query, questionLength, address), packet.sender(), packet.recipient()));
+                } finally {
+                    packet.release();
+                }
+                
+                return;
+            }
+            
+            slowPathCount.incrementAndGet();
+            logger.debug("Passing DNS packet from {} to the codec", packet.sender());
+        }
+        
+        ctx.fireChannelRead(msg);
+    }
+    
+    private ByteBuf createResponse(ChannelHandlerContext ctx, ByteBuf query, int questionLength, byte[] address) {
+        int index = query.readerIndex();
+        ByteBuf response = ctx.alloc().buffer(HEADER_LENGTH + questionLength + ANSWER_PREFIX.length + address.length);
+        response.writeShort(query.getUnsignedShort(index)); // ID
+        response.writeShort(FLAG_RESPONSE | query.getUnsignedShort(index + 2) & FLAG_RECURSION_DESIRED);
+        response.writeShort(1); // Questions
+        response.writeShort(1); // Answers
+        response.writeInt(0); // Authority and additional records
+        response.writeBytes(query, index + HEADER_LENGTH, questionLength);
+        response.writeBytes(ANSWER_PREFIX);
+        response.writeBytes(address);
+        return response;
+    }
+    
+    /**
+     * @return The question name of a query that passed {@link #getQuestionLength(ByteBuf)}, in lower case and with dots.
+     */
+    private static String readName(ByteBuf query) {
+        int position = query.readerIndex() + HEADER_LENGTH;
+        StringBuilder builder = new StringBuilder(MAX_NAME_LENGTH);
+        int labelLength;
+        
+        while((labelLength = query.getUnsignedByte(position++)) != 0) {
+            if(builder.length() > 0) {
+                builder.append('.');
+            }
+            
+            for(int i = 0; i < labelLength; i++) {
+                builder.append(Character.toLowerCase((char)query.getUnsignedByte(position++)));
+            }
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * @return The length of the question section if the packet is a standard query for a single A record, otherwise {@code -1}.
+     */
+    private static int getQuestionLength(ByteBuf query) {
+        int index = query.readerIndex();
+        int end = query.writerIndex();
+        
+        if(end - index < HEADER_LENGTH) {
+            return -1;
+        }
+        
+        // Not a standard query (QR = 1 or opcode != 0), or not exactly one question and no answers
+        if((query.getUnsignedShort(index + 2) & 0xF800) != 0 || query.getUnsignedShort(index + 4) != 1
+                || query.getUnsignedShort(index + 6) != 0 || query.getUnsignedShort(index + 8) != 0) {
+            return -1;
+        }
+        
+        // Walk the name labels; compression pointers are left to the codec
+        int nameIndex = index + HEADER_LENGTH;
+        int position = nameIndex;
+        int labelLength;
+        
+        do {
+            if(position >= end) {
+                return -1;
+            }
+            
+            labelLength = query.getUnsignedByte(position);
+            
+            if(labelLength > 63) {
+                return -1;
+            }
+            
+            position += labelLength + 1;
+            
+            if(position - nameIndex > MAX_NAME_LENGTH) {
+                return -1;
+            }
+        } while(labelLength != 0);
+        
+        // Additional records (such as EDNS options) may follow, but are not answered
+        if(position + 4 > end || query.getUnsignedShort(position) != TYPE_A || query.getUnsignedShort(position + 2) != CLASS_IN) {
+            return -1;
+        }
+        
+        return position + 4 - nameIndex;
+    }
+    
+    public DnsZones getZones() {
+        return zones;
+    }
+    
+    /**
+     * @return The number of queries that were answered without the DNS codec.
+     */
+    public long getFastPathCount() {
+        return fastPathCount.get();
+    }
+    
+    /**
+     * @return The number of packets that were passed on to the DNS codec.
+     */
+    public long getSlowPathCount() {
+        return slowPathCount.get();
+    }
+}
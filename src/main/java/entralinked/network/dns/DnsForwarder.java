@@ -0,0 +1,427 @@
+package entralinked.network.dns;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+
+/**
+ * Forwards DNS queries for names outside of the configured zones to an upstream resolver.
+ * 
+ * Answers are cached until the lowest TTL of their records runs out, and the TTLs in cached answers are counted down when they are served.
+ * Queries for a question that is already being forwarded wait for the same upstream answer instead of being sent again.
+ * Upstream answers are only accepted if their question matches the query, and new queries fail right away while too many
+ * are pending.
+ * All state is confined to the event loop of the forwarding channel.
+ */
+public class DnsForwarder {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private static final int HEADER_LENGTH = 12;
+    private static final int FLAG_TRUNCATED = 0x0200;
+    private static final int RCODE_NOERROR = 0;
+    private static final int RCODE_NXDOMAIN = 3;
+    private static final int TYPE_OPT = 41;
+    private static final long NEGATIVE_TTL = 60; // For answers without any records, in seconds
+    private static final int MAX_PENDING_QUERIES = 4096; // Leaves plenty of unused IDs to pick from
+    private final InetSocketAddress upstream;
+    private final long timeout;
+    private final int maxPendingQueries;
+    private final LongSupplier clock;
+    private final Map<Question, CachedAnswer> cache;
+    private final Map<Question, PendingQuery> pendingQueries = new HashMap<>();
+    private final Map<Integer, PendingQuery> pendingIds = new HashMap<>();
+    private final AtomicLong forwardCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private Channel channel;
+    
+    private record Question(String name, int type, int dnsClass) {}
+    
+    /**
+     * @param packet The upstream response.
+     * @param ttlOffsets The offsets of the TTL of each record in the response.
+     * @param ttls The original TTL of each record in the response.
+     * @param storedAt The time at which the response was received, in nanoseconds.
+     * @param expiresAt The time at which the response must no longer be served, in nanoseconds.
+     */
+    private record CachedAnswer(byte[] packet, int[] ttlOffsets, long[] ttls, long storedAt, long expiresAt) {}
+    
+    private static class PendingQuery {
+        
+        private final Question question;
+        private final int id;
+        private final List<Consumer<ByteBuf>> callbacks = new ArrayList<>(1);
+        private ScheduledFuture<?> timeoutFuture;
+        
+        private PendingQuery(Question question, int id) {
+            this.question = question;
+            this.id = id;
+        }
+    }
+    
+    /**
+     * @param upstream The address of the upstream resolver.
+     * @param timeout The amount of milliseconds to wait for an upstream answer.
+     * @param cacheSize The maximum number of answers to cache, which also limits the number of pending queries.
+     */
+    public DnsForwarder(InetSocketAddress upstream, int timeout, int cacheSize) {
+        this(upstream, timeout, cacheSize, System::nanoTime);
+    }
+    
+    DnsForwarder(InetSocketAddress upstream, int timeout, int cacheSize, LongSupplier clock) {
+        this.upstream = upstream;
+        this.timeout = timeout;
+        this.maxPendingQueries = Math.min(cacheSize, MAX_PENDING_QUERIES);
+        this.clock = clock;
+        this.cache = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Question, CachedAnswer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    /**
+     * Binds the channel that queries are forwarded through.
+     */
+    public ChannelFuture start(EventLoopGroup group, Class<? extends DatagramChannel> channelType) {
+        ChannelFuture future = new Bootstrap()
+                .group(group)
+                .channel(channelType)
+                .handler(new SimpleChannelInboundHandler<DatagramPacket>() {
+            @Override
+            protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) throws Exception {
+                handleResponse(packet);
+            }
+        }).bind(0).awaitUninterruptibly();
+        channel = future.channel();
+        return future;
+    }
+    
+    public void close() {
+        if(channel != null) {
+            channel.close().awaitUninterruptibly();
+        }
+    }
+    
+    /**
+     * Resolves a question through the cache or the upstream resolver.
+     * The callback receives a new buffer with the complete response, in which only the ID still has to be replaced,
+     * or {@code null} if the upstream resolver didn't answer or too many queries are pending. It is called on the event loop of the forwarding channel.
+     */
+    public void resolve(String name, int type, int dnsClass, Consumer<ByteBuf> callback) {
+        Question question = new Question(name.toLowerCase(Locale.ROOT), type, dnsClass);
+        
+        if(channel.eventLoop().inEventLoop()) {
+            resolve(question, callback);
+        } else {
+            channel.eventLoop().execute(() -> resolve(question, callback));
+        }
+    }
+    
+    private void resolve(Question question, Consumer<ByteBuf> callback) {
+        long now = clock.getAsLong();
+        CachedAnswer answer = cache.get(question);
+        
+        if(answer != null) {
+            if(now - answer.expiresAt() < 0) {
+                cacheHitCount.incrementAndGet();
+                callback.accept(createResponse(answer, now));
+                return;
+            }
+            
+            cache.remove(question);
+        }
+        
+        // Wait for the answer to the query that is already being forwarded
+        PendingQuery pending = pendingQueries.get(question);
+        
+        if(pending != null) {
+            coalescedCount.incrementAndGet();
+            pending.callbacks.add(callback);
+            return;
+        }
+        
+        if(pendingQueries.size() >= maxPendingQueries) {
+            failureCount.incrementAndGet();
+            logger.debug("Too many pending queries, not forwarding {}", question.name());
+            callback.accept(null);
+            return;
+        }
+        
+        // Random IDs make it harder to spoof answers
+        int id;
+        
+        do {
+            id = ThreadLocalRandom.current().nextInt(0x10000);
+        } while(pendingIds.containsKey(id));
+        
+        PendingQuery query = new PendingQuery(question, id);
+        query.callbacks.add(callback);
+        query.timeoutFuture = channel.eventLoop().schedule(() -> fail(query, "timed out"), timeout, TimeUnit.MILLISECONDS);
+        pendingQueries.put(question, query);
+        pendingIds.put(id, query);
+        forwardCount.incrementAndGet();
+        channel.writeAndFlush(new DatagramPacket(createQuery(id, question), upstream)).addListener(future -> {
+            if(!future.isSuccess()) {
+                fail(query, future.cause().getMessage());
+            }
+        });
+    }
+    
+    private void handleResponse(DatagramPacket packet) {
+        ByteBuf content = packet.content();
+        
+        if(!upstream.equals(packet.sender()) || content.readableBytes() < HEADER_LENGTH) {
+            return;
+        }
+        
+        PendingQuery query = pendingIds.get(content.getUnsignedShort(content.readerIndex()));
+        
+        if(query == null) {
+            return; // Late or unsolicited answer
+        }
+        
+        byte[] bytes = ByteBufUtil.getBytes(content);
+        
+        // Ignore answers to a different question, so a spoofed answer with a guessed ID can't end up in the cache
+        if(!hasQuestion(Unpooled.wrappedBuffer(bytes), query.question)) {
+            logger.debug("Ignoring answer from {} that doesn't match the question {}", upstream, query.question.name());
+            return;
+        }
+        
+        long now = clock.getAsLong();
+        CachedAnswer answer = parseAnswer(bytes, now);
+        
+        if(answer == null) {
+            fail(query, "sent a malformed answer");
+            return;
+        }
+        
+        remove(query);
+        
+        if(answer.expiresAt() - now > 0) {
+            cache.put(query.question, answer);
+        }
+        
+        for(Consumer<ByteBuf> callback : query.callbacks) {
+            callback.accept(createResponse(answer, now));
+        }
+    }
+    
+    private void fail(PendingQuery query, String reason) {
+        // Check if the query has already been answered
+        if(pendingIds.get(query.id) != query) {
+            return;
+        }
+        
+        remove(query);
+        failureCount.incrementAndGet();
+        logger.debug("Upstream resolver {} {} for {}", upstream, reason, query.question.name());
+        
+        for(Consumer<ByteBuf> callback : query.callbacks) {
+            callback.accept(null);
+        }
+    }
+    
+    private void remove(PendingQuery query) {
+        pendingQueries.remove(query.question);
+        pendingIds.remove(query.id);
+        query.timeoutFuture.cancel(false);
+    }
+    
+    private ByteBuf createResponse(CachedAnswer answer, long now) {
+        long age = TimeUnit.NANOSECONDS.toSeconds(now - answer.storedAt());
+        ByteBuf response = channel.alloc().buffer(answer.packet().length);
+        response.writeBytes(answer.packet());
+        
+        for(int i = 0; i < answer.ttlOffsets().length; i++) {
+            response.setInt(answer.ttlOffsets()[i], (int)Math.max(0, answer.ttls()[i] - age));
+        }
+        
+        return response;
+    }
+    
+    private static ByteBuf createQuery(int id, Question question) {
+        ByteBuf query = Unpooled.buffer();
+        query.writeShort(id);
+        query.writeShort(0x0100); // Recursion desired
+        query.writeShort(1); // Questions
+        query.writeShort(0); // Answers
+        query.writeInt(0); // Authority and additional records
+        
+        for(String label : question.name().split("\\.")) {
+            if(!label.isEmpty()) {
+                query.writeByte(label.length());
+                query.writeCharSequence(label, StandardCharsets.US_ASCII);
+            }
+        }
+        
+        query.writeByte(0);
+        query.writeShort(question.type());
+        query.writeShort(question.dnsClass());
+        return query;
+    }
+    
+    /**
+     * @return {@code true} if the packet holds exactly one question and it is the specified question, ignoring case.
+     */
+    private static boolean hasQuestion(ByteBuf buffer, Question question) {
+        try {
+            if(buffer.getUnsignedShort(4) != 1) {
+                return false;
+            }
+            
+            StringBuilder name = new StringBuilder();
+            int position = HEADER_LENGTH;
+            int length;
+            
+            while((length = buffer.getUnsignedByte(position++)) != 0) {
+                // Compression pointers can't point back to an earlier name here
+                if(length > 63) {
+                    return false;
+                }
+                
+                name.append(buffer.toString(position, length, StandardCharsets.US_ASCII)).append('.');
+                position += length;
+            }
+            
+            String expected = question.name().endsWith(".") ? question.name() : question.name() + ".";
+            return name.toString().equalsIgnoreCase(expected)
+                    && buffer.getUnsignedShort(position) == question.type()
+                    && buffer.getUnsignedShort(position + 2) == question.dnsClass();
+        } catch(IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * @return The answer with the location of each TTL, or {@code null} if the response is malformed.
+     * Answers that must not be cached expire immediately.
+     */
+    private static CachedAnswer parseAnswer(byte[] packet, long now) {
+        ByteBuf buffer = Unpooled.wrappedBuffer(packet);
+        
+        try {
+            int flags = buffer.getUnsignedShort(2);
+            int questionCount = buffer.getUnsignedShort(4);
+            int cachedRecordCount = buffer.getUnsignedShort(6) + buffer.getUnsignedShort(8); // Answers and authority records
+            int recordCount = cachedRecordCount + buffer.getUnsignedShort(10);
+            int position = HEADER_LENGTH;
+            
+            for(int i = 0; i < questionCount; i++) {
+                position = skipName(buffer, position) + 4;
+            }
+            
+            int[] ttlOffsets = new int[recordCount];
+            long[] ttls = new long[recordCount];
+            int count = 0;
+            long minTtl = Long.MAX_VALUE;
+            
+            for(int i = 0; i < recordCount; i++) {
+                position = skipName(buffer, position);
+                int type = buffer.getUnsignedShort(position);
+                int ttlOffset = position + 4;
+                long ttl = buffer.getUnsignedInt(ttlOffset);
+                position += 10 + buffer.getUnsignedShort(position + 8);
+                
+                // The TTL field of OPT records holds flags instead
+                if(type != TYPE_OPT) {
+                    ttlOffsets[count] = ttlOffset;
+                    ttls[count++] = ttl;
+                    
+                    if(i < cachedRecordCount) {
+                        minTtl = Math.min(minTtl, ttl);
+                    }
+                }
+            }
+            
+            if(position > packet.length) {
+                return null;
+            }
+            
+            int responseCode = flags & 0xF;
+            boolean cacheable = (flags & FLAG_TRUNCATED) == 0 && (responseCode == RCODE_NOERROR || responseCode == RCODE_NXDOMAIN);
+            long cacheTime = cacheable ? TimeUnit.SECONDS.toNanos(minTtl == Long.MAX_VALUE ? NEGATIVE_TTL : minTtl) : 0;
+            return new CachedAnswer(packet, Arrays.copyOf(ttlOffsets, count), Arrays.copyOf(ttls, count), now, now + cacheTime);
+        } catch(IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * @return The position after the name at the specified position.
+     */
+    private static int skipName(ByteBuf buffer, int position) {
+        while(true) {
+            int length = buffer.getUnsignedByte(position);
+            
+            if((length & 0xC0) == 0xC0) {
+                return position + 2; // Compression pointer
+            }
+            
+            if(length == 0) {
+                return position + 1;
+            }
+            
+            position += length + 1;
+        }
+    }
+    
+    /**
+     * @return The number of queries that were sent to the upstream resolver.
+     */
+    public long getForwardCount() {
+        return forwardCount.get();
+    }
+    
+    /**
+     * @return The number of queries that were answered from the cache.
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+    
+    /**
+     * @return The number of queries that waited for an identical query that was already being forwarded.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    
+    /**
+     * @return The number of queries that timed out, were answered with a malformed response or were not forwarded
+     * because too many queries were pending.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
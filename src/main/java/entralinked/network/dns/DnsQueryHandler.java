@@ -1,28 +1,35 @@
 package entralinked.network.dns;
 
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
 import io.netty.handler.codec.dns.DatagramDnsQuery;
 import io.netty.handler.codec.dns.DatagramDnsResponse;
 import io.netty.handler.codec.dns.DefaultDnsQuestion;
 import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsOpCode;
 import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
 import io.netty.handler.codec.dns.DnsSection;
 
 public class DnsQueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
     
     private static final Logger logger = LogManager.getLogger();
-    private final InetAddress hostAddress;
+    private final DnsZones zones;
+    private final DnsForwarder forwarder;
     
-    public DnsQueryHandler(InetAddress hostAddress) {
-        this.hostAddress = hostAddress;
+    /**
+     * @param forwarder The forwarder for names outside of the zones, or {@code null} to refuse them.
+     */
+    public DnsQueryHandler(DnsZones zones, DnsForwarder forwarder) {
+        this.zones = zones;
+        this.forwarder = forwarder;
     }
     
     @Override
@@ -30,6 +37,19 @@ public class DnsQueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuer
         DefaultDnsQuestion question = query.recordAt(DnsSection.QUESTION);
         logger.debug("Received {}", question);
         DnsRecordType type = question.type();
+        byte[] address = zones.resolve(question.name());
+        
+        // Forward or refuse names that we don't serve
+        if(address == null) {
+            if(forwarder == null) {
+                logger.debug("Refusing DNS question for {}", question.name());
+                sendError(ctx, query.recipient(), query.sender(), query.id(), question, DnsResponseCode.REFUSED);
+            } else {
+                forward(ctx, query, question);
+            }
+            
+            return;
+        }
         
         // We only need type A (32 bit IPv4) for the DS
         if(type != DnsRecordType.A) {
@@ -37,10 +57,33 @@ public class DnsQueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuer
             return;
         }
         
-        ByteBuf addressBuffer = Unpooled.wrappedBuffer(hostAddress.getAddress());
-        DefaultDnsRawRecord answer = new DefaultDnsRawRecord(question.name(), DnsRecordType.A, 0, addressBuffer);
+        DefaultDnsRawRecord answer = new DefaultDnsRawRecord(question.name(), DnsRecordType.A, 0, Unpooled.wrappedBuffer(address));
         DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
         response.addRecord(DnsSection.ANSWER, answer);
         ctx.writeAndFlush(response);
     }
+    
+    private void forward(ChannelHandlerContext ctx, DatagramDnsQuery query, DefaultDnsQuestion question) {
+        // The query is released before the answer arrives
+        InetSocketAddress sender = query.sender();
+        InetSocketAddress recipient = query.recipient();
+        int id = query.id();
+        
+        forwarder.resolve(question.name(), question.type().intValue(), question.dnsClass(), response -> {
+            if(response == null) {
+                sendError(ctx, recipient, sender, id, question, DnsResponseCode.SERVFAIL);
+                return;
+            }
+            
+            response.setShort(response.readerIndex(), id);
+            ctx.writeAndFlush(new DatagramPacket(response, sender, recipient));
+        });
+    }
+    
+    private void sendError(ChannelHandlerContext ctx, InetSocketAddress recipient, InetSocketAddress sender, int id,
+            DefaultDnsQuestion question, DnsResponseCode code) {
+        DatagramDnsResponse response = new DatagramDnsResponse(recipient, sender, id, DnsOpCode.QUERY, code);
+        response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion(question.name(), question.type(), question.dnsClass()));
+        ctx.writeAndFlush(response);
+    }
 }
@@ -1,38 +1,136 @@
 package entralinked.network.dns;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import entralinked.Configuration;
 import entralinked.network.NettyServerBase;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
 import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
 
 public class DnsServer extends NettyServerBase {
         
-    private InetAddress hostAddress;
+    private static final Logger logger = LogManager.getLogger();
+    private final DnsZones zones;
+    private final DnsFastPathHandler fastPathHandler;
+    private final DnsForwarder forwarder;
     
     public DnsServer(InetAddress hostAddress) {
-        super("DNS", 53);
-        this.hostAddress = hostAddress;
+        this(hostAddress, Configuration.DEFAULT);
+    }
+    
+    public DnsServer(InetAddress hostAddress, Configuration configuration) {
+        this(hostAddress, 53, configuration.transport(), configuration.dns());
     }
     
+    public DnsServer(InetAddress hostAddress, int port, Configuration.Transport transport, Configuration.Dns dns) {
+        super("DNS", port, transport);
+        this.zones = new DnsZones(dns.zones(), hostAddress);
+        this.fastPathHandler = new DnsFastPathHandler(zones);
+        InetSocketAddress upstream = parseUpstreamResolver(dns.upstreamResolver());
+        this.forwarder = upstream == null ? null : new DnsForwarder(upstream, dns.upstreamTimeout(), dns.cacheSize());
+    }
+    
+    /**
+     * Binds the configured number of sockets to the port.
+     * With more than one socket, {@code SO_REUSEPORT} lets the kernel spread queries across them,
+     * and each socket is served by its own event loop if there are enough of them.
+     */
     @Override
     public ChannelFuture bootstrap(int port) {
-        return new Bootstrap()
+        int sockets = transport.dnsSockets();
+        
+        if(sockets > 1 && !usingEpoll) {
+            logger.warn("Binding a single DNS socket because SO_REUSEPORT requires epoll");
+            sockets = 1;
+        }
+        
+        Class<? extends DatagramChannel> channelType = usingEpoll ? EpollDatagramChannel.class : NioDatagramChannel.class;
+        
+        if(forwarder != null) {
+            ChannelFuture future = forwarder.start(eventLoopGroup, channelType);
+            
+            if(!future.isSuccess()) {
+                return future;
+            }
+        }
+        
+        Bootstrap bootstrap = applyOptions(new Bootstrap())
                 .group(eventLoopGroup)
-                .channel(usingEpoll ? EpollDatagramChannel.class : NioDatagramChannel.class)
+                .channel(channelType)
                 .handler(new ChannelInitializer<Channel>() {
             @Override
             protected void initChannel(Channel channel) throws Exception {
+                channel.pipeline().addLast(fastPathHandler);
                 channel.pipeline().addLast(new DatagramDnsQueryDecoder());
                 channel.pipeline().addLast(new DatagramDnsResponseEncoder());
-                channel.pipeline().addLast(new DnsQueryHandler(hostAddress));
+                channel.pipeline().addLast(new DnsQueryHandler(zones, forwarder));
             }
-        }).bind(port).awaitUninterruptibly();
+        });
+        
+        if(sockets > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        
+        ChannelFuture future = null;
+        
+        for(int i = 0; i < sockets; i++) {
+            future = bootstrap.bind(port).awaitUninterruptibly();
+            
+            if(!future.isSuccess()) {
+                break;
+            }
+        }
+        
+        return future;
+    }
+    
+    private static InetSocketAddress parseUpstreamResolver(String value) {
+        if(value == null || value.isEmpty()) {
+            return null;
+        }
+        
+        // Accepts host, host:port and [IPv6]:port
+        int bracket = value.startsWith("[") ? value.indexOf(']') : -1;
+        int separator = bracket != -1 ? value.indexOf(':', bracket) : value.indexOf(':') == value.lastIndexOf(':') ? value.indexOf(':') : -1;
+        String host = bracket != -1 ? value.substring(1, bracket) : separator == -1 ? value : value.substring(0, separator);
+        InetSocketAddress address;
+        
+        try {
+            address = new InetSocketAddress(host, separator == -1 ? 53 : Integer.parseInt(value.substring(separator + 1)));
+        } catch(IllegalArgumentException e) {
+            logger.warn("DNS forwarding is disabled because upstream resolver {} is invalid", value);
+            return null;
+        }
+        
+        if(address.isUnresolved()) {
+            logger.warn("DNS forwarding is disabled because upstream resolver {} could not be resolved", value);
+            return null;
+        }
+        
+        logger.info("Forwarding DNS queries for other names to {}", address);
+        return address;
+    }
+    
+    public DnsFastPathHandler getFastPathHandler() {
+        return fastPathHandler;
+    }
+    
+    /**
+     * @return The forwarder for names outside of the zones, or {@code null} if forwarding is disabled.
+     */
+    public DnsForwarder getForwarder() {
+        return forwarder;
     }
 }
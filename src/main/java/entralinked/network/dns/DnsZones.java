@@ -0,0 +1,117 @@
+package entralinked.network.dns;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Maps host names to the IPv4 addresses that the DNS server answers with.
+ * 
+ * Names can be exact ({@code nas.nintendowifi.net}), match all subdomains of a domain ({@code *.pokemon-gl.com})
+ * or match every name ({@code *}). Exact names take precedence over wildcards, and longer wildcards over shorter ones.
+ * An empty address stands for the host address. If no zones are configured, every name resolves to the host address.
+ */
+public class DnsZones {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private final Map<String, byte[]> names = new HashMap<>();
+    private final Map<String, byte[]> wildcards = new HashMap<>();
+    private byte[] defaultAddress;
+    
+    /**
+     * @param zones The address of each name. Invalid entries are skipped.
+     */
+    public DnsZones(Map<String, String> zones, InetAddress hostAddress) {
+        byte[] hostAddressBytes = hostAddress instanceof Inet4Address ? hostAddress.getAddress() : null;
+        
+        if(hostAddressBytes == null) {
+            logger.warn("Host address {} is not an IPv4 address and can't be used to answer DNS queries", hostAddress);
+        }
+        
+        if(zones.isEmpty()) {
+            defaultAddress = hostAddressBytes;
+            return;
+        }
+        
+        for(Entry<String, String> zone : zones.entrySet()) {
+            String name = normalize(zone.getKey());
+            String value = zone.getValue();
+            byte[] address = value == null || value.isEmpty() ? hostAddressBytes : parseAddress(value);
+            
+            if(address == null) {
+                logger.warn("Skipping DNS zone {} because {} is not a valid IPv4 address", name, value);
+                continue;
+            }
+            
+            if(name.equals("*")) {
+                defaultAddress = address;
+            } else if(name.startsWith("*.")) {
+                wildcards.put(name.substring(2), address);
+            } else {
+                names.put(name, address);
+            }
+        }
+    }
+    
+    /**
+     * @return The address that the name resolves to, or {@code null} if it isn't in any zone.
+     * The returned array is shared and must not be modified.
+     */
+    public byte[] resolve(String name) {
+        name = normalize(name);
+        byte[] address = names.get(name);
+        
+        if(address != null) {
+            return address;
+        }
+        
+        // Check wildcards from the longest parent domain to the shortest
+        if(!wildcards.isEmpty()) {
+            for(int index = name.indexOf('.'); index != -1; index = name.indexOf('.', index + 1)) {
+                address = wildcards.get(name.substring(index + 1));
+                
+                if(address != null) {
+                    return address;
+                }
+            }
+        }
+        
+        return defaultAddress;
+    }
+    
+    /**
+     * @return The name in lower case and without the trailing dot of fully qualified names.
+     */
+    private static String normalize(String name) {
+        name = name.toLowerCase(Locale.ROOT);
+        return name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+    }
+    
+    /**
+     * Parses an address literal without doing any lookups.
+     */
+    private static byte[] parseAddress(String value) {
+        String[] parts = value.split("\\.", -1);
+        byte[] address = new byte[4];
+        
+        if(parts.length != address.length) {
+            return null;
+        }
+        
+        for(int i = 0; i < parts.length; i++) {
+            if(!parts[i].matches("\\d{1,3}") || Integer.parseInt(parts[i]) > 255) {
+                return null;
+            }
+            
+            address[i] = (byte)Integer.parseInt(parts[i]);
+        }
+        
+        return address;
+    }
+}
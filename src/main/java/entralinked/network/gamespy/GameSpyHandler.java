@@ -2,6 +2,11 @@ package entralinked.network.gamespy;
 
 import java.nio.channels.ClosedChannelException;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -10,6 +15,7 @@ import org.apache.logging.log4j.Logger;
 
 import entralinked.Entralinked;
 import entralinked.model.user.GameProfile;
+import entralinked.model.user.GameProfileDto;
 import entralinked.model.user.ServiceSession;
 import entralinked.model.user.User;
 import entralinked.model.user.UserManager;
@@ -32,24 +38,42 @@ import io.netty.handler.timeout.ReadTimeoutException;
 
 /**
  * GameSpy request handler.
+ * 
+ * If an executor for blocking tasks is supplied, profile writes are run there instead of on the thread that handles requests.
+ * Blocking tasks of the same connection still run in order, and requests that depend on the result of one are deferred until it is available.
  */
 public class GameSpyHandler extends SimpleChannelInboundHandler<GameSpyRequest> {
     
     private static final Logger logger = LogManager.getLogger();
     private final SecureRandom secureRandom = new SecureRandom();
     private final UserManager userManager;
+    private final Executor blockingExecutor;
+    private final Queue<GameSpyRequest> deferredRequests = new ArrayDeque<>();
+    private CompletableFuture<?> blockingTasks = CompletableFuture.completedFuture(null);
+    private boolean waiting;
+    private ChannelHandlerContext context;
     private Channel channel;
     private String serverChallenge;
     private int sessionKey = -1; // It's pointless
     private User user;
+    private String branchCode;
     private GameProfile profile;
     
     public GameSpyHandler(Entralinked entralinked) {
+        this(entralinked, null);
+    }
+    
+    /**
+     * @param blockingExecutor The executor to run blocking tasks with, or {@code null} to run them on the handler thread.
+     */
+    public GameSpyHandler(Entralinked entralinked, Executor blockingExecutor) {
         this.userManager = entralinked.getUserManager();
+        this.blockingExecutor = blockingExecutor;
     }
     
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
+        context = ctx;
         channel = ctx.channel();
         logger.debug("Sending GameSpy server challenge");
         
@@ -69,11 +93,19 @@ public class GameSpyHandler extends SimpleChannelInboundHandler<GameSpyRequest>
         sessionKey = -1;
         user = null;
         profile = null;
+        deferredRequests.clear();
     }
     
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, GameSpyRequest request) throws Exception {
         logger.debug("Received {}", request);
+        
+        // Keep requests in order while waiting for a blocking task
+        if(waiting) {
+            deferredRequests.add(request);
+            return;
+        }
+        
         request.process(this);
     }
     
@@ -120,33 +152,53 @@ public class GameSpyHandler extends SimpleChannelInboundHandler<GameSpyRequest>
         }
         
         // Fetch profile or create one if it doesn't exist
-        user = session.user();
-        profile = user.getProfile(session.branchCode());
+        User user = session.user();
+        String branchCode = session.branchCode();
+        GameProfile profile = user.getProfile(branchCode);
+        this.user = user;
+        this.branchCode = branchCode;
         
         if(profile == null) {
-            profile = userManager.createProfileForUser(user, session.branchCode());
+            runBlocking(() -> userManager.createProfileForUser(user, branchCode),
+                    createdProfile -> completeLogin(request, partnerChallengeHash, createdProfile));
+            return;
+        }
             
-            // Check if creation succeeded
-            if(profile == null) {
-                sendErrorMessage(0x203, "Profile creation failed due to an error.", request.sequenceId());
-                return;
-            }
+        completeLogin(request, partnerChallengeHash, profile);
+    }
+    
+    private void completeLogin(GameSpyLoginRequest request, String partnerChallengeHash, GameProfile profile) {
+        // Check if profile creation succeeded
+        if(profile == null) {
+            sendErrorMessage(0x203, "Profile creation failed due to an error.", request.sequenceId());
+            return;
         }
         
+        this.profile = profile;
+        
         // Update profile id if an override is set
         int profileIdOverride = user.getProfileIdOverride();
         
         if(profileIdOverride > 0) {
-            profile.setId(profileIdOverride);
+            User user = this.user;
+            String branchCode = this.branchCode;
+            GameProfileDto snapshot;
+            
+            // Take the snapshot here because the blocking task runs on another thread
+            synchronized(user) {
+                profile.setId(profileIdOverride);
+                snapshot = new GameProfileDto(profile);
+            }
+            
             user.setProfileIdOverride(0);
-            userManager.saveUser(user); // It's not too big of a deal if this fails for some reason
+            runBlocking(() -> userManager.saveProfile(user, branchCode, snapshot)); // It's not too big of a deal if this fails for some reason
         }
         
         logger.info("User {} logged in with profile {}", user.getRedactedId(), profile.getId());
         
         // Prepare and send response
         sessionKey = secureRandom.nextInt(Integer.MAX_VALUE);
-        String proof = createCredentialHash(partnerChallengeHash, authToken, serverChallenge, clientChallenge);
+        String proof = createCredentialHash(partnerChallengeHash, request.partnerToken(), serverChallenge, request.challenge());
         sendMessage(new GameSpyLoginResponse(user.getId(), profile.getId(), proof, sessionKey, request.sequenceId()));
     }
     
@@ -155,16 +207,88 @@ public class GameSpyHandler extends SimpleChannelInboundHandler<GameSpyRequest>
     }
     
     public void handleUpdateProfileRequest(GameSpyProfileUpdateRequest request) {
-        // Update profile info
-        boolean profileChanged = setValue(request::firstName, profile::setFirstName, profile::getFirstName);
-        profileChanged |= setValue(request::lastName, profile::setLastName, profile::getLastName);
-        profileChanged |= setValue(request::aimName, profile::setAimName, profile::getAimName);
-        profileChanged |= setValue(request::zipCode, profile::setZipCode, profile::getZipCode);
-        
-        // Save user data if the profile was changed
-        if(profileChanged) {
-            userManager.saveUser(user);
+        GameProfileDto snapshot = null;
+        
+        // Update profile info while holding the user's monitor so that user snapshots never see a partial update
+        synchronized(user) {
+            boolean profileChanged = setValue(request::firstName, profile::setFirstName, profile::getFirstName);
+            profileChanged |= setValue(request::lastName, profile::setLastName, profile::getLastName);
+            profileChanged |= setValue(request::aimName, profile::setAimName, profile::getAimName);
+            profileChanged |= setValue(request::zipCode, profile::setZipCode, profile::getZipCode);
+            
+            // Take the snapshot here because the blocking task runs on another thread
+            if(profileChanged) {
+                snapshot = new GameProfileDto(profile);
+            }
         }
+        
+        // Save profile data if the profile was changed
+        if(snapshot != null) {
+            User user = this.user;
+            String branchCode = this.branchCode;
+            GameProfileDto savedProfile = snapshot;
+            runBlocking(() -> userManager.saveProfile(user, branchCode, savedProfile));
+        }
+    }
+    
+    /**
+     * Runs a blocking task whose result isn't needed to handle further requests.
+     */
+    private void runBlocking(Runnable task) {
+        if(blockingExecutor == null) {
+            task.run();
+            return;
+        }
+        
+        submitBlocking(() -> {
+            task.run();
+            return null;
+        }).exceptionally(cause -> {
+            logger.error("Exception caught in GameSpy blocking task", cause);
+            return null;
+        });
+    }
+    
+    /**
+     * Runs a blocking task and passes its result to the callback on the handler thread.
+     * Requests received before the callback has run are deferred.
+     */
+    private <T> void runBlocking(Supplier<T> task, Consumer<T> callback) {
+        if(blockingExecutor == null) {
+            callback.accept(task.get());
+            return;
+        }
+        
+        waiting = true;
+        submitBlocking(task).whenCompleteAsync((result, cause) -> {
+            waiting = false;
+            
+            // Discard the result if the connection was closed in the meantime
+            if(!channel.isActive()) {
+                return;
+            }
+            
+            try {
+                if(cause != null) {
+                    throw cause instanceof CompletionException ? cause.getCause() : cause;
+                }
+                
+                callback.accept(result);
+                
+                while(!waiting && !deferredRequests.isEmpty()) {
+                    deferredRequests.poll().process(this);
+                }
+            } catch(Throwable e) {
+                channel.pipeline().fireExceptionCaught(e);
+            }
+        }, context.executor());
+    }
+    
+    private <T> CompletableFuture<T> submitBlocking(Supplier<T> task) {
+        // Run after the previous blocking task of this connection, even if it failed
+        CompletableFuture<T> future = blockingTasks.handleAsync((result, cause) -> task.get(), blockingExecutor);
+        blockingTasks = future;
+        return future;
     }
     
     /**
@@ -0,0 +1,155 @@
+package entralinked.network.gamespy;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.util.VirtualThreads;
+
+import entralinked.Configuration.GameSpy.HandlerMode;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultEventExecutor;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+/**
+ * Provides the executors that run the GameSpy handler of each connection, depending on the handler mode.
+ * Every connection is handled by a single executor at a time, so its requests are always handled in order.
+ */
+public class GameSpyHandlerExecutors {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private final Set<EventExecutor> connectionExecutors = ConcurrentHashMap.newKeySet();
+    private final HandlerMode mode;
+    private final EventExecutorGroup handlerGroup;
+    private final ThreadPoolExecutor blockingExecutor;
+    private final Executor virtualThreadExecutor;
+    
+    /**
+     * @param mode Where requests are handled. Falls back to {@link HandlerMode#EXECUTOR_GROUP} if virtual threads are not supported.
+     * @param threads The number of threads in the executor group or in the blocking task pool. Not used for virtual threads.
+     * @param threadFactory The factory for the threads of the executor group.
+     */
+    public GameSpyHandlerExecutors(HandlerMode mode, int threads, ThreadFactory threadFactory) {
+        if(mode == HandlerMode.VIRTUAL_THREAD && !VirtualThreads.areSupported()) {
+            logger.warn("Virtual threads are not supported by this Java runtime - GameSpy requests will be handled by an executor group");
+            mode = HandlerMode.EXECUTOR_GROUP;
+        }
+        
+        this.mode = mode;
+        
+        switch(mode) {
+            case EVENT_LOOP -> {
+                handlerGroup = null;
+                blockingExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                        new DefaultThreadFactory("GameSpy-blocking", true));
+                blockingExecutor.allowCoreThreadTimeOut(true);
+                virtualThreadExecutor = null;
+            }
+            case VIRTUAL_THREAD -> {
+                handlerGroup = null;
+                blockingExecutor = null;
+                virtualThreadExecutor = VirtualThreads.getDefaultVirtualThreadsExecutor();
+            }
+            default -> {
+                handlerGroup = new DefaultEventExecutorGroup(threads, threadFactory);
+                blockingExecutor = null;
+                virtualThreadExecutor = null;
+            }
+        }
+    }
+    
+    /**
+     * @return The executor to add the handler of the specified connection with, or {@code null} to handle it on the event loop.
+     * In {@link HandlerMode#VIRTUAL_THREAD} mode, each connection gets its own executor that stops once the connection is closed.
+     */
+    public EventExecutorGroup getHandlerExecutor(Channel channel) {
+        if(virtualThreadExecutor == null) {
+            return handlerGroup;
+        }
+        
+        EventExecutor executor = new DefaultEventExecutor(virtualThreadExecutor);
+        connectionExecutors.add(executor);
+        channel.closeFuture().addListener(future -> {
+            // Tasks that are still queued, such as the inactive event of the handler, are run during the quiet period
+            executor.shutdownGracefully();
+            connectionExecutors.remove(executor);
+        });
+        return executor;
+    }
+    
+    /**
+     * @return The executor to run blocking tasks with, or {@code null} if they should be run by the handler itself.
+     */
+    public Executor getBlockingExecutor() {
+        return blockingExecutor;
+    }
+    
+    /**
+     * @return The handler mode that is actually used.
+     */
+    public HandlerMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * @param eventLoopGroup The event loops of the connections, which handle the requests in {@link HandlerMode#EVENT_LOOP} mode.
+     * @return The number of tasks, such as received requests, that are waiting to be run by the threads that handle requests.
+     */
+    public int getPendingHandlerTasks(EventExecutorGroup eventLoopGroup) {
+        Iterable<EventExecutor> executors = switch(mode) {
+            case EVENT_LOOP -> eventLoopGroup;
+            case VIRTUAL_THREAD -> connectionExecutors;
+            default -> handlerGroup;
+        };
+        
+        int pendingTasks = 0;
+        
+        for(EventExecutor executor : executors) {
+            if(executor instanceof SingleThreadEventExecutor singleThreadExecutor) {
+                pendingTasks += singleThreadExecutor.pendingTasks();
+            }
+        }
+        
+        return pendingTasks;
+    }
+    
+    /**
+     * @return The number of blocking tasks that are waiting to be run, or {@code 0} if requests aren't handled on the event loop.
+     */
+    public int getPendingBlockingTasks() {
+        return blockingExecutor == null ? 0 : blockingExecutor.getQueue().size();
+    }
+    
+    /**
+     * Shuts down all executors and waits for them to finish their tasks.
+     */
+    public void shutdown() {
+        if(handlerGroup != null) {
+            handlerGroup.shutdownGracefully().awaitUninterruptibly();
+        }
+        
+        for(EventExecutor executor : connectionExecutors) {
+            executor.shutdownGracefully().awaitUninterruptibly();
+        }
+        
+        if(blockingExecutor != null) {
+            blockingExecutor.shutdown();
+            
+            try {
+                blockingExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package entralinked.network.gamespy;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import entralinked.network.gamespy.message.GameSpyMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Writes {@link GameSpyMessage} records straight into an output buffer.
+ * 
+ * The message header and the {@code \name\} prefix of each field are encoded once per message type,
+ * so that writing a message only has to copy them and encode the field values.
+ */
+public class GameSpyMessageWriter {
+    
+    private static final ByteBuf TRAILER = constant("\\final\\");
+    private static final byte[] MIN_INT = String.valueOf(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+    private final ByteBuf header;
+    private final byte[][] fieldPrefixes;
+    private final MethodHandle[] accessors;
+    private final boolean[] intFields;
+    private final boolean skipNulls;
+    private final int fixedSize;
+    
+    /**
+     * @param type The record class of the message type, which must have the {@link GameSpyMessage} annotation.
+     */
+    public GameSpyMessageWriter(Class<?> type) {
+        GameSpyMessage messageInfo = type.getAnnotation(GameSpyMessage.class);
+        
+        if(messageInfo == null) {
+            throw new IllegalArgumentException("Outbound message type '%s' must have the GameSpyMessage annotation.".formatted(type.getName()));
+        }
+        
+        if(!type.isRecord()) {
+            throw new IllegalArgumentException("Outbound message type %s is not a record".formatted(type.getName()));
+        }
+        
+        RecordComponent[] components = type.getRecordComponents();
+        Parameter[] parameters;
+        
+        try {
+            parameters = type.getDeclaredConstructor(Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new)).getParameters();
+        } catch(NoSuchMethodException e) {
+            throw new IllegalArgumentException(e); // Every record has a canonical constructor
+        }
+        
+        JsonInclude include = type.getAnnotation(JsonInclude.class);
+        this.header = constant("\\%s\\%s".formatted(messageInfo.name(), messageInfo.value()));
+        this.fieldPrefixes = new byte[components.length][];
+        this.accessors = new MethodHandle[components.length];
+        this.intFields = new boolean[components.length];
+        this.skipNulls = include != null && include.value() == Include.NON_NULL;
+        int fixedSize = header.readableBytes() + TRAILER.readableBytes();
+        
+        for(int i = 0; i < components.length; i++) {
+            // JsonProperty can't target record components, so it is propagated to the constructor parameters instead
+            JsonProperty property = parameters[i].getAnnotation(JsonProperty.class);
+            Class<?> fieldType = components[i].getType();
+            
+            if(fieldType != String.class && fieldType != int.class) {
+                throw new IllegalArgumentException("Unsupported type %s of field %s in message type %s"
+                        .formatted(fieldType.getName(), components[i].getName(), type.getName()));
+            }
+            
+            String name = property == null || property.value().isEmpty() ? components[i].getName() : property.value();
+            fieldPrefixes[i] = "\\%s\\".formatted(name).getBytes(StandardCharsets.UTF_8);
+            intFields[i] = fieldType == int.class;
+            fixedSize += fieldPrefixes[i].length;
+            
+            try {
+                accessors[i] = MethodHandles.publicLookup().unreflect(components[i].getAccessor())
+                        .asType(MethodType.methodType(fieldType, Object.class));
+            } catch(IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        
+        this.fixedSize = fixedSize;
+    }
+    
+    /**
+     * @return The maximum number of bytes that {@link #write(Object, ByteBuf)} will write for the specified message.
+     */
+    public int getMaxSize(Object message) throws IOException {
+        int size = fixedSize;
+        
+        for(int i = 0; i < accessors.length; i++) {
+            if(intFields[i]) {
+                size += MIN_INT.length;
+            } else {
+                String value = getString(i, message);
+                size += value == null ? 4 : ByteBufUtil.utf8MaxBytes(value); // "null"
+            }
+        }
+        
+        return size;
+    }
+    
+    /**
+     * Writes the message, including the {@code \final\} trailer, to the output buffer.
+     */
+    public void write(Object message, ByteBuf out) throws IOException {
+        out.writeBytes(header, header.readerIndex(), header.readableBytes());
+        
+        for(int i = 0; i < accessors.length; i++) {
+            if(intFields[i]) {
+                out.writeBytes(fieldPrefixes[i]);
+                writeInt(out, getInt(i, message));
+                continue;
+            }
+            
+            String value = getString(i, message);
+            
+            if(value == null && skipNulls) {
+                continue;
+            }
+            
+            out.writeBytes(fieldPrefixes[i]);
+            ByteBufUtil.writeUtf8(out, value == null ? "null" : value);
+        }
+        
+        out.writeBytes(TRAILER, TRAILER.readerIndex(), TRAILER.readableBytes());
+    }
+    
+    private int getInt(int field, Object message) throws IOException {
+        try {
+            return (int)accessors[field].invokeExact(message);
+        } catch(Throwable e) {
+            throw new IOException("Could not read message field", e);
+        }
+    }
+    
+    private String getString(int field, Object message) throws IOException {
+        try {
+            return (String)accessors[field].invokeExact(message);
+        } catch(Throwable e) {
+            throw new IOException("Could not read message field", e);
+        }
+    }
+    
+    /**
+     * Writes the decimal digits of the value without creating a string.
+     */
+    private static void writeInt(ByteBuf out, int value) {
+        if(value == Integer.MIN_VALUE) {
+            out.writeBytes(MIN_INT);
+            return;
+        }
+        
+        if(value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+        
+        int divisor = 1;
+        
+        while(divisor <= value / 10) {
+            divisor *= 10;
+        }
+        
+        for(; divisor > 0; divisor /= 10) {
+            out.writeByte('0' + value / divisor % 10);
+        }
+    }
+    
+    private static ByteBuf constant(String string) {
+        return Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(string.getBytes(StandardCharsets.UTF_8)).asReadOnly());
+    }
+}
@@ -0,0 +1,176 @@
+package entralinked.network.gamespy;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import entralinked.network.gamespy.request.GameSpyRequest;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Creates {@link GameSpyRequest} records straight from the fields of a received message.
+ * 
+ * The field names, types and requirements of the record are resolved once from the {@link JsonProperty} annotations
+ * of its components, so that binding a message only has to compare and parse bytes.
+ * Fields that the record doesn't have are ignored.
+ */
+public class GameSpyRequestBinder {
+    
+    private final String typeName;
+    private final byte[] typeNameBytes;
+    private final Constructor<? extends GameSpyRequest> constructor;
+    private final byte[][] fieldNames;
+    private final Class<?>[] fieldTypes;
+    private final boolean[] requiredFields;
+    
+    /**
+     * @param typeName The name of the request type, as it appears at the start of a message.
+     * @param type The record class of the request type.
+     */
+    public GameSpyRequestBinder(String typeName, Class<? extends GameSpyRequest> type) {
+        if(!type.isRecord()) {
+            throw new IllegalArgumentException("Request type %s is not a record".formatted(type.getName()));
+        }
+        
+        RecordComponent[] components = type.getRecordComponents();
+        
+        if(components.length > Long.SIZE) {
+            throw new IllegalArgumentException("Request type %s has too many fields".formatted(type.getName()));
+        }
+        
+        try {
+            this.constructor = type.getDeclaredConstructor(Arrays.stream(components).map(RecordComponent::getType).toArray(Class<?>[]::new));
+        } catch(NoSuchMethodException e) {
+            throw new IllegalArgumentException(e); // Every record has a canonical constructor
+        }
+        
+        Parameter[] parameters = constructor.getParameters();
+        this.typeName = typeName;
+        this.typeNameBytes = typeName.getBytes(StandardCharsets.UTF_8);
+        this.fieldNames = new byte[components.length][];
+        this.fieldTypes = new Class<?>[components.length];
+        this.requiredFields = new boolean[components.length];
+        
+        for(int i = 0; i < components.length; i++) {
+            // JsonProperty can't target record components, so it is propagated to the constructor parameters instead
+            JsonProperty property = parameters[i].getAnnotation(JsonProperty.class);
+            Class<?> fieldType = components[i].getType();
+            
+            if(fieldType != String.class && fieldType != int.class) {
+                throw new IllegalArgumentException("Unsupported type %s of field %s in request type %s"
+                        .formatted(fieldType.getName(), components[i].getName(), type.getName()));
+            }
+            
+            String name = property == null || property.value().isEmpty() ? components[i].getName() : property.value();
+            fieldNames[i] = name.getBytes(StandardCharsets.UTF_8);
+            fieldTypes[i] = fieldType;
+            requiredFields[i] = property != null && property.required();
+        }
+    }
+    
+    /**
+     * @return {@code true} if the specified bytes of the buffer are the name of this request type.
+     */
+    public boolean matchesType(ByteBuf buffer, int index, int length) {
+        return matches(typeNameBytes, buffer, index, length);
+    }
+    
+    /**
+     * @return A new array to collect field values in, with the default value of each field.
+     */
+    public Object[] createValues() {
+        Object[] values = new Object[fieldTypes.length];
+        
+        for(int i = 0; i < values.length; i++) {
+            values[i] = fieldTypes[i] == int.class ? 0 : null;
+        }
+        
+        return values;
+    }
+    
+    /**
+     * Parses the value of a field and stores it in the value array if the field belongs to this request type.
+     * 
+     * @return The index of the field, or {@code -1} if it does not belong to this request type.
+     */
+    public int bindField(Object[] values, ByteBuf buffer, int nameIndex, int nameLength, int valueIndex, int valueLength) throws IOException {
+        for(int i = 0; i < fieldNames.length; i++) {
+            if(matches(fieldNames[i], buffer, nameIndex, nameLength)) {
+                values[i] = fieldTypes[i] == int.class ? parseInt(buffer, valueIndex, valueLength, i)
+                        : buffer.toString(valueIndex, valueLength, StandardCharsets.UTF_8);
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * @param present The indices of the fields that were present in the message, as a bit mask.
+     * @return The request created from the bound values.
+     */
+    public GameSpyRequest createRequest(Object[] values, long present) throws IOException {
+        for(int i = 0; i < requiredFields.length; i++) {
+            if(requiredFields[i] && (present & 1L << i) == 0) {
+                throw new IOException("Missing required field '%s' in request type '%s'".formatted(getFieldName(i), typeName));
+            }
+        }
+        
+        try {
+            return constructor.newInstance(values);
+        } catch(InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IOException("Could not create request of type '%s'".formatted(typeName), e);
+        }
+    }
+    
+    private int parseInt(ByteBuf buffer, int index, int length, int field) throws IOException {
+        int end = index + length;
+        boolean negative = length > 1 && buffer.getByte(index) == '-';
+        long value = 0;
+        
+        // Empty values are treated as zero
+        for(int i = negative ? index + 1 : index; i < end; i++) {
+            int digit = buffer.getByte(i) - '0';
+            
+            if(digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE + 1L) {
+                throw new IOException("Invalid value '%s' for field '%s' in request type '%s'"
+                        .formatted(buffer.toString(index, length, StandardCharsets.UTF_8), getFieldName(field), typeName));
+            }
+        }
+        
+        if(!negative && value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid value '%s' for field '%s' in request type '%s'"
+                    .formatted(buffer.toString(index, length, StandardCharsets.UTF_8), getFieldName(field), typeName));
+        }
+        
+        return (int)(negative ? -value : value);
+    }
+    
+    private String getFieldName(int index) {
+        return new String(fieldNames[index], StandardCharsets.UTF_8);
+    }
+    
+    private static boolean matches(byte[] name, ByteBuf buffer, int index, int length) {
+        if(name.length != length) {
+            return false;
+        }
+        
+        for(int i = 0; i < length; i++) {
+            if(buffer.getByte(index + i) != name[i]) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    public String getTypeName() {
+        return typeName;
+    }
+}
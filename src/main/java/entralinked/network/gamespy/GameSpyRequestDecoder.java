@@ -1,80 +1,99 @@
 package entralinked.network.gamespy;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import entralinked.network.gamespy.request.GameSpyRequest;
-import entralinked.serialization.GameSpyMessageFactory;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.util.ByteProcessor;
 
+/**
+ * Decodes GameSpy messages ({@code \type\value\field\value...}) into {@link GameSpyRequest} records.
+ * 
+ * Messages are scanned in place: the request type is looked up by comparing bytes and field values are
+ * parsed straight from the frame by the {@link GameSpyRequestBinder} of the request type.
+ */
 public class GameSpyRequestDecoder extends MessageToMessageDecoder<ByteBuf> {
     
-    protected final ObjectMapper mapper;
-    protected final Map<String, Class<GameSpyRequest>> requestTypes;
+    private static final ByteProcessor FIND_SEPARATOR = new ByteProcessor.IndexOfProcessor((byte)'\\');
+    protected final GameSpyRequestBinder[] binders;
     
-    /**
-     * Supplied {@link ObjectMapper} should be configured to use the {@link GameSpyMessageFactory}
-     */
-    public GameSpyRequestDecoder(ObjectMapper mapper, Map<String, Class<GameSpyRequest>> requestTypes) {
-        this.mapper = mapper;
-        this.requestTypes = requestTypes;
+    public GameSpyRequestDecoder(Collection<GameSpyRequestBinder> binders) {
+        this.binders = binders.toArray(GameSpyRequestBinder[]::new);
     }
     
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         // Sanity check
-        byte b = in.readByte();
+        int index = in.readerIndex();
+        int end = in.writerIndex();
+        byte b = in.getByte(index++);
         
         if(b != '\\') {
             throw new IOException("Was expecting '\\', got '%s'.".formatted((char)b));
         }
         
         // Get request type
-        String typeName = parseString(in, false);
-        Class<GameSpyRequest> requestType = requestTypes.get(typeName);
+        int typeEnd = indexOfSeparator(in, index, end);
+        GameSpyRequestBinder binder = findBinder(in, index, typeEnd - index);
         
-        if(requestType == null) {
-            throw new IOException("Invalid or unimplemented request type '%s'".formatted(typeName));
+        if(binder == null) {
+            throw new IOException("Invalid or unimplemented request type '%s'".formatted(in.toString(index, typeEnd - index, StandardCharsets.UTF_8)));
         }
         
-        // Parse request value (?) if any bytes are remaining
-        if(in.readableBytes() > 0) {
-            parseString(in, true);
-        }
+        // Skip request value (?) if any bytes are remaining
+        index = typeEnd < end ? indexOfSeparator(in, typeEnd + 1, end) + 1 : end;
         
-        // If there are still bytes left, use ObjectMapper to parse and map them.
-        // Otherwise, create empty instance using reflection.
-        GameSpyRequest request = null;
+        // Bind the remaining fields
+        Object[] values = binder.createValues();
+        long present = 0;
         
-        if(in.readableBytes() > 0) {
-            byte[] bytes = new byte[in.readableBytes() + 1];
-            bytes[0] = '\\'; // Cuz it was read as a terminator earlier..
-            in.readBytes(bytes, 1, bytes.length - 1);
-            request = mapper.readValue(bytes, requestType);
-        } else {
-            request = requestType.getConstructor().newInstance();
+        while(index < end) {
+            int nameEnd = in.forEachByte(index, end - index, FIND_SEPARATOR);
+            
+            if(nameEnd == -1 || nameEnd == index) {
+                throw new IOException("Invalid field name '%s' in request type '%s'"
+                        .formatted(in.toString(index, (nameEnd == -1 ? end : nameEnd) - index, StandardCharsets.UTF_8), binder.getTypeName()));
+            }
+            
+            int valueIndex = nameEnd + 1;
+            int valueEnd = indexOfSeparator(in, valueIndex, end);
+            int field = binder.bindField(values, in, index, nameEnd - index, valueIndex, valueEnd - valueIndex);
+            
+            if(field != -1) {
+                present |= 1L << field;
+            }
+            
+            index = valueEnd + 1;
         }
         
-        out.add(request);
+        in.readerIndex(end);
+        out.add(binder.createRequest(values, present));
     }
     
-    private String parseString(ByteBuf in, boolean allowEOI) {
-        StringBuilder builder = new StringBuilder();
-        byte b = 0;
-        
-        while((b = in.readByte()) != '\\') {
-            builder.append((char)b);
-            
-            if(allowEOI && in.readableBytes() == 0) {
-                break;
+    private GameSpyRequestBinder findBinder(ByteBuf in, int index, int length) {
+        for(GameSpyRequestBinder binder : binders) {
+            if(binder.matchesType(in, index, length)) {
+                return binder;
             }
         }
         
-        return builder.toString();
+        return null;
+    }
+    
+    /**
+     * @return The index of the next separator, or {@code end} if there is none.
+     */
+    private static int indexOfSeparator(ByteBuf in, int index, int end) {
+        if(index >= end) {
+            return end;
+        }
+        
+        int separator = in.forEachByte(index, end - index, FIND_SEPARATOR);
+        return separator == -1 ? end : separator;
     }
-}
\ No newline at end of file
+}
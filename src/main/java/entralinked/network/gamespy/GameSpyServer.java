@@ -1,8 +1,8 @@
 package entralinked.network.gamespy;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,6 +13,8 @@ import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
 import com.fasterxml.jackson.databind.introspect.AnnotatedClassResolver;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
 
+import entralinked.Configuration;
+import entralinked.Configuration.GameSpy.HandlerMode;
 import entralinked.Entralinked;
 import entralinked.network.NettyServerBase;
 import entralinked.network.gamespy.request.GameSpyRequest;
@@ -27,15 +29,13 @@ import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.util.concurrent.DefaultEventExecutor;
-import io.netty.util.concurrent.EventExecutorGroup;
 
 public class GameSpyServer extends NettyServerBase {
     
     private static final Logger logger = LogManager.getLogger();
     private static final ObjectMapper mapper = new ObjectMapper(new GameSpyMessageFactory());
-    private static final Map<String, Class<GameSpyRequest>> requestTypes = new HashMap<>();
-    private final EventExecutorGroup handlerGroup = new DefaultEventExecutor(threadFactory);
+    private static final List<GameSpyRequestBinder> requestBinders = new ArrayList<>();
+    private final GameSpyHandlerExecutors handlerExecutors;
     private final Entralinked entralinked;
     
     static {
@@ -46,19 +46,27 @@ public class GameSpyServer extends NettyServerBase {
         
         for(NamedType type : types) {
             if(type.hasName()) {
-                requestTypes.put(type.getName(), (Class<GameSpyRequest>)type.getType());
+                requestBinders.add(new GameSpyRequestBinder(type.getName(), (Class<? extends GameSpyRequest>)type.getType()));
             }
         }
     }
     
     public GameSpyServer(Entralinked entralinked) {
-        super("GameSpy", 29900);
+        super("GameSpy", 29900, entralinked.getConfiguration().transport());
         this.entralinked = entralinked;
+        Configuration.GameSpy configuration = entralinked.getConfiguration().gameSpy();
+        handlerExecutors = new GameSpyHandlerExecutors(configuration.handlerMode(), configuration.handlerThreads(), threadFactory);
+        
+        if(handlerExecutors.getMode() == HandlerMode.VIRTUAL_THREAD) {
+            logger.info("Handling GameSpy requests with {}", handlerExecutors.getMode());
+        } else {
+            logger.info("Handling GameSpy requests with {} using {} threads", handlerExecutors.getMode(), configuration.handlerThreads());
+        }
     }
     
     @Override
     public ChannelFuture bootstrap(int port) {
-        return new ServerBootstrap()
+        return applyChildOptions(new ServerBootstrap())
                 .group(eventLoopGroup)
                 .channel(usingEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
                 .childHandler(new ChannelInitializer<Channel>() {
@@ -67,10 +75,34 @@ public class GameSpyServer extends NettyServerBase {
                 ChannelPipeline pipeline = channel.pipeline();
                 pipeline.addLast(new ReadTimeoutHandler(180));
                 pipeline.addLast(new DelimiterBasedFrameDecoder(512, Unpooled.wrappedBuffer("\\final\\".getBytes())));
-                pipeline.addLast(new GameSpyRequestDecoder(mapper, requestTypes));
-                pipeline.addLast(new GameSpyMessageEncoder(mapper));
-                pipeline.addLast(handlerGroup, new GameSpyHandler(entralinked));
+                pipeline.addLast(new GameSpyRequestDecoder(requestBinders));
+                pipeline.addLast(new GameSpyMessageEncoder());
+                pipeline.addLast(handlerExecutors.getHandlerExecutor(channel), new GameSpyHandler(entralinked, handlerExecutors.getBlockingExecutor()));
             }
         }).bind(port).awaitUninterruptibly();
     }
+    
+    @Override
+    public boolean stop() {
+        if(!super.stop()) {
+            return false;
+        }
+        
+        handlerExecutors.shutdown();
+        return true;
+    }
+    
+    /**
+     * @return The number of tasks, such as received requests, that are waiting to be run by the threads that handle requests.
+     */
+    public int getPendingHandlerTasks() {
+        return handlerExecutors.getPendingHandlerTasks(eventLoopGroup);
+    }
+    
+    /**
+     * @return The number of blocking tasks that are waiting to be run, or {@code 0} if requests aren't handled on the event loop.
+     */
+    public int getPendingBlockingTasks() {
+        return handlerExecutors.getPendingBlockingTasks();
+    }
 }
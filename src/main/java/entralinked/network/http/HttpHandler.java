@@ -1,9 +1,16 @@
 package entralinked.network.http;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.eclipse.jetty.server.HttpOutput;
+
 import io.javalin.Javalin;
 import io.javalin.config.JavalinConfig;
 import io.javalin.http.Context;
 import io.javalin.http.servlet.JavalinServletContext;
+import jakarta.servlet.ServletOutputStream;
 
 public interface HttpHandler {
     
@@ -13,4 +20,18 @@ public interface HttpHandler {
     public default void clearTasks(Context ctx) {
         ((JavalinServletContext)ctx).getTasks().clear();
     }
+    
+    /**
+     * Writes the remaining content of the buffer to the response.
+     * Direct buffers are passed to the connector as-is when possible.
+     */
+    public default void writeBuffer(Context ctx, ByteBuffer buffer) throws IOException {
+        ServletOutputStream outputStream = ctx.res().getOutputStream();
+        
+        if(outputStream instanceof HttpOutput httpOutput) {
+            httpOutput.write(buffer);
+        } else {
+            Channels.newChannel(outputStream).write(buffer);
+        }
+    }
 }
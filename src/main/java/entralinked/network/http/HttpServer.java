@@ -6,6 +6,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,8 +18,13 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
+import entralinked.Configuration;
+import entralinked.Configuration.Http.ThreadMode;
 import entralinked.Entralinked;
 import entralinked.LauncherAgent;
 import entralinked.utility.CertificateGenerator;
@@ -31,10 +38,14 @@ public class HttpServer {
     private static final Logger logger = LogManager.getLogger();
     private static final String keyStorePassword = "password"; // Very secure!
     private final Javalin javalin;
+    private final QueuedThreadPool threadPool;
+    private final AtomicLong rejectedTaskCount = new AtomicLong();
     private boolean started;
     
     public HttpServer(Entralinked entralinked) {
         ConcurrencyUtil.INSTANCE.setUseLoom(false);
+        Configuration.Http configuration = entralinked.getConfiguration().http();
+        threadPool = createThreadPool(configuration);
         
         // Create certificate keystore
         KeyStore keyStore = null;
@@ -55,7 +66,7 @@ public class HttpServer {
         
         // Create Javalin instance
         javalin = Javalin.create(config -> {
-            config.jetty.server(() -> createJettyServer(80, 443, _keyStore));
+            config.jetty.server(() -> createJettyServer(80, 443, _keyStore, configuration));
         });
         
         // Create exception handler
@@ -112,6 +123,41 @@ public class HttpServer {
         return true;
     }
     
+    /**
+     * @return The number of threads in the thread pool.
+     */
+    public int getThreads() {
+        return threadPool.getThreads();
+    }
+    
+    /**
+     * @return The number of pool threads that are running a task.
+     */
+    public int getBusyThreads() {
+        return threadPool.getBusyThreads();
+    }
+    
+    /**
+     * @return The number of tasks that are waiting for a pool thread.
+     */
+    public int getQueueSize() {
+        return threadPool.getQueueSize();
+    }
+    
+    /**
+     * @return The number of tasks that were rejected because the queue was full.
+     */
+    public long getRejectedTaskCount() {
+        return rejectedTaskCount.get();
+    }
+    
+    /**
+     * @return {@code true} if the pool is at its maximum size and has more queued tasks than idle threads.
+     */
+    public boolean isLowOnThreads() {
+        return threadPool.isLowOnThreads();
+    }
+    
     private KeyStore createKeyStore() {
         try {
             KeyStore keyStore = KeyStore.getInstance("PKCS12");
@@ -136,12 +182,49 @@ public class HttpServer {
         return null;
     }
     
-    private Server createJettyServer(int port, int sslPort, KeyStore keyStore) {
-         Server server = new Server();
+    /**
+     * Creates a thread pool with a bounded queue, so that a flood of slow requests is rejected instead of piling up.
+     * If virtual threads are enabled and supported, requests are handled on them and the pool only runs the connectors.
+     */
+    private QueuedThreadPool createThreadPool(Configuration.Http configuration) {
+        int initialQueueCapacity = Math.min(configuration.minThreads(), configuration.queueSize());
+        BlockingArrayQueue<Runnable> queue = new BlockingArrayQueue<>(initialQueueCapacity, initialQueueCapacity, configuration.queueSize());
+        QueuedThreadPool threadPool = new QueuedThreadPool(configuration.maxThreads(), configuration.minThreads(), 60000, queue) {
+            @Override
+            public void execute(Runnable job) {
+                try {
+                    super.execute(job);
+                } catch(RejectedExecutionException e) {
+                    rejectedTaskCount.incrementAndGet();
+                    throw e;
+                }
+            }
+        };
+        
+        threadPool.setName("HTTP");
+        
+        if(configuration.threadMode() == ThreadMode.VIRTUAL) {
+            if(VirtualThreads.areSupported()) {
+                threadPool.setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+            } else {
+                logger.warn("Virtual threads are not supported by this Java runtime - HTTP requests will be handled by platform threads");
+            }
+        }
+        
+        logger.info("HTTP thread pool: {} to {} threads, {} queued tasks, virtual threads {}", configuration.minThreads(),
+                configuration.maxThreads(), configuration.queueSize(), threadPool.getVirtualThreadsExecutor() == null ? "disabled" : "enabled");
+        return threadPool;
+    }
+    
+    private Server createJettyServer(int port, int sslPort, KeyStore keyStore, Configuration.Http configuration) {
+         Server server = new Server(threadPool);
+         int acceptors = configuration.acceptors() == 0 ? -1 : configuration.acceptors(); // -1 lets Jetty decide
+         int selectors = configuration.selectors() == 0 ? -1 : configuration.selectors();
          
          // Regular HTTP connector
-         ServerConnector httpConnector = new ServerConnector(server);
+         ServerConnector httpConnector = new ServerConnector(server, acceptors, selectors);
          httpConnector.setPort(port);
+         httpConnector.setIdleTimeout(configuration.idleTimeout());
          server.addConnector(httpConnector);
          
          if(keyStore != null) {
@@ -160,11 +243,12 @@ public class HttpServer {
              httpsConfiguration.addCustomizer(new SecureRequestCustomizer(false));
              httpsConfiguration.setSendServerVersion(true);
              
-             ServerConnector httpsConnector = new ServerConnector(server,
+             ServerConnector httpsConnector = new ServerConnector(server, acceptors, selectors,
                  new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString()),
                  new HttpConnectionFactory(httpsConfiguration));
              
              httpsConnector.setPort(sslPort);
+             httpsConnector.setIdleTimeout(configuration.idleTimeout());
              server.addConnector(httpsConnector);
          }
          
@@ -8,11 +8,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import entralinked.Entralinked;
 import entralinked.model.avenue.AvenueVisitor;
 import entralinked.model.dlc.Dlc;
+import entralinked.model.dlc.DlcContentCache;
 import entralinked.model.dlc.DlcList;
 import entralinked.model.pkmn.PkmnGender;
 import entralinked.model.pkmn.PkmnInfo;
@@ -36,7 +37,6 @@ import entralinked.model.player.PlayerStatus;
 import entralinked.network.http.HttpHandler;
 import entralinked.utility.Crc16;
 import entralinked.utility.GsidUtility;
-import entralinked.utility.LEOutputStream;
 import entralinked.utility.TiledImageUtility;
 import io.javalin.Javalin;
 import io.javalin.config.JavalinConfig;
@@ -53,12 +53,14 @@ import io.javalin.json.JavalinJackson;
 public class DashboardHandler implements HttpHandler {
     
     private static final Logger logger = LogManager.getLogger();
-    private final Map<Object, BufferedImage> skinPreviewCache = new HashMap<>();
+    private final Map<Object, BufferedImage> skinPreviewCache = new ConcurrentHashMap<>();
     private final DlcList dlcList;
+    private final DlcContentCache dlcContentCache;
     private final PlayerManager playerManager;
     
     public DashboardHandler(Entralinked entralinked) {
         this.dlcList = entralinked.getDlcList();
+        this.dlcContentCache = entralinked.getDlcContentCache();
         this.playerManager = entralinked.getPlayerManager();
         
         // Load & cache skin previews
@@ -77,40 +79,6 @@ public class DashboardHandler implements HttpHandler {
             }
         }
         
-        // Cache custom skins for each player
-        for(Player player : playerManager.getPlayers()) {
-            File cgearSkinFile = player.getCGearSkinFile();
-            File dexSkinFile = player.getDexSkinFile();
-            
-            // Cache custom C-Gear skin preview if it exists
-            if(cgearSkinFile.exists()) {
-                try(FileInputStream inputStream = new FileInputStream(cgearSkinFile)) {
-                    boolean version2 = player.getGameVersion().isVersion2();
-                    
-                    // Read the C-Gear skin image
-                    BufferedImage image = TiledImageUtility.readCGearSkin(inputStream, !version2);
-                    
-                    // Cache the result
-                    skinPreviewCache.put("%s/%s".formatted(player.getGameSyncId(), version2 ? "CGEAR2" : "CGEAR"), image);
-                } catch(IOException | IndexOutOfBoundsException | NullPointerException e) {
-                    logger.error("Could not load custom C-Gear skin preview for player {}", player.getGameSyncId(), e);
-                }
-            }
-            
-            // Cache custom Pokédex skin preview if it exists
-            if(dexSkinFile.exists()) {
-                try(FileInputStream inputStream = new FileInputStream(dexSkinFile)) {
-                    // Read the Pokédex skin image
-                    BufferedImage image = TiledImageUtility.readDexSkin(inputStream, true);
-                    
-                    // Cache the result
-                    skinPreviewCache.put("%s/ZUKAN".formatted(player.getGameSyncId()), image);
-                } catch(IOException | IndexOutOfBoundsException e) {
-                    logger.error("Could not load custom Pokédex skin preview for player {}", player.getGameSyncId(), e);
-                }
-            }
-        }
-        
         logger.info("Cached {} skin previews", skinPreviewCache.size());
     }
     
@@ -168,7 +136,7 @@ public class DashboardHandler implements HttpHandler {
                 return;
             }
             
-            BufferedImage previewImage = skinPreviewCache.get("%s/%s".formatted(player.getGameSyncId(), type));
+            BufferedImage previewImage = getCustomSkinPreview(player, type);
             
             // Check if preview image exists
             if(previewImage == null) {
@@ -193,6 +161,37 @@ public class DashboardHandler implements HttpHandler {
         ImageIO.write(skinPreviewCache.get(dlc), "png", ctx.outputStream());
     }
     
+    /**
+     * Custom skin previews are generated when they are first requested,
+     * so that the skins of every player don't have to be read on startup.
+     * 
+     * @return The preview image of the specified type of custom skin of the player, or {@code null} if it doesn't exist.
+     */
+    private BufferedImage getCustomSkinPreview(Player player, String type) {
+        return skinPreviewCache.computeIfAbsent("%s/%s".formatted(player.getGameSyncId(), type), key -> {
+            boolean version2 = player.getGameVersion() != null && player.getGameVersion().isVersion2();
+            
+            // Check if the player can have this type of skin
+            if(!type.equals("ZUKAN") && !type.equals(version2 ? "CGEAR2" : "CGEAR")) {
+                return null;
+            }
+            
+            File skinFile = type.equals("ZUKAN") ? player.getDexSkinFile() : player.getCGearSkinFile();
+            
+            if(!skinFile.exists()) {
+                return null;
+            }
+            
+            try(FileInputStream inputStream = new FileInputStream(skinFile)) {
+                return type.equals("ZUKAN") ? TiledImageUtility.readDexSkin(inputStream, true)
+                        : TiledImageUtility.readCGearSkin(inputStream, !version2);
+            } catch(IOException | IndexOutOfBoundsException e) {
+                logger.error("Could not load custom skin preview of type {} for player {}", type, player.getGameSyncId(), e);
+                return null;
+            }
+        });
+    }
+    
     /**
      * GET request handler for {@code /dashboard/dlc}
      */
@@ -318,11 +317,13 @@ public class DashboardHandler implements HttpHandler {
             }
             
             // Write custom skin to output file
-            try(LEOutputStream outputStream = new LEOutputStream(new FileOutputStream(outputFile))) {
+            try(FileOutputStream outputStream = new FileOutputStream(outputFile)) {
                 outputStream.write(skinBytes);
-                outputStream.writeShort(Crc16.calc(skinBytes));
+                Crc16.writeChecksum(outputStream, Crc16.calc(skinBytes));
             }
             
+            dlcContentCache.invalidate(outputFile);
+            
             // Cache preview image
             skinPreviewCache.put("%s/%s".formatted(player.getGameSyncId(), type), previewImage);
         } catch(IOException e) {
@@ -1,6 +1,5 @@
 package entralinked.network.http.dls;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -11,6 +10,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import entralinked.Entralinked;
 import entralinked.model.dlc.Dlc;
+import entralinked.model.dlc.DlcContentCache;
 import entralinked.model.dlc.DlcList;
 import entralinked.model.user.ServiceSession;
 import entralinked.model.user.User;
@@ -18,7 +18,6 @@ import entralinked.model.user.UserManager;
 import entralinked.network.http.HttpHandler;
 import entralinked.network.http.HttpRequestHandler;
 import entralinked.serialization.UrlEncodedFormFactory;
-import entralinked.utility.LEOutputStream;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import io.javalin.http.HttpStatus;
@@ -31,10 +30,12 @@ public class DlsHandler implements HttpHandler {
     private static final Logger logger = LogManager.getLogger();
     private final ObjectMapper mapper = new ObjectMapper(new UrlEncodedFormFactory());
     private final DlcList dlcList;
+    private final DlcContentCache dlcContentCache;
     private final UserManager userManager;
     
     public DlsHandler(Entralinked entralinked) {
         this.dlcList = entralinked.getDlcList();
+        this.dlcContentCache = entralinked.getDlcContentCache();
         this.userManager = entralinked.getUserManager();
     }
     
@@ -89,7 +90,7 @@ public class DlsHandler implements HttpHandler {
         }
         
         // TODO NOTE: I assume that in a conventional implementation, certain DLC attributes may be omitted from the request.
-        ctx.result(dlcList.getDlcListString(dlcList.getDlcList(gameCode, type, request.dlcIndex())));
+        ctx.result(dlcList.getDlcListBytes(gameCode, type, request.dlcIndex()));
     }
     
     /**
@@ -107,16 +108,8 @@ public class DlsHandler implements HttpHandler {
             return;
         }
         
-        // Write DLC data
-        try(FileInputStream inputStream = new FileInputStream(dlc.path())) {
-            LEOutputStream outputStream = new LEOutputStream(ctx.outputStream());
-            inputStream.transferTo(outputStream);
-            
-            // If checksum is not part of the file, manually append it
-            if(!dlc.checksumEmbedded()) {
-                outputStream.writeShort(dlc.checksum());
-            }
-        }
+        // Write DLC data, which includes the checksum if it is not part of the file
+        writeBuffer(ctx, dlcContentCache.getContent(dlc));
     }
     
     /**
@@ -0,0 +1,120 @@
+package entralinked.network.http.pgl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import entralinked.model.player.Player;
+import entralinked.model.player.PlayerManager;
+
+/**
+ * Cache for the responses of recent Memory Link requests.
+ * 
+ * Each response consists of the status header followed by the full game save file, and is kept in a direct buffer
+ * so that it can be handed to the connector as-is without copying it through the heap again.
+ * Cached responses are dropped when the game save file of the player changes.
+ */
+public class MemoryLinkCache {
+    
+    private static final int HEADER_SIZE = 128;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong totalResponseTime = new AtomicLong();
+    private final PlayerManager playerManager;
+    private final Map<String, CachedResponse> responses;
+    
+    private record CachedResponse(long revision, ByteBuffer buffer) {}
+    
+    /**
+     * @param capacity The maximum number of responses to keep cached.
+     */
+    public MemoryLinkCache(PlayerManager playerManager, int capacity) {
+        this.playerManager = playerManager;
+        this.responses = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * @return A read-only buffer containing the status header and game save file of the specified player.
+     * The response is assembled and cached if it isn't cached already.
+     */
+    public ByteBuffer getResponse(Player player) throws IOException {
+        String gameSyncId = player.getGameSyncId();
+        long revision = playerManager.getPlayerGameSaveRevision(player);
+        requestCount.incrementAndGet();
+        
+        synchronized(responses) {
+            CachedResponse response = responses.get(gameSyncId);
+            
+            if(response != null && response.revision() == revision) {
+                hitCount.incrementAndGet();
+                return response.buffer().duplicate();
+            }
+        }
+        
+        byte[] bytes = null;
+        
+        try(InputStream inputStream = playerManager.openPlayerGameSaveFile(player)) {
+            bytes = inputStream.readAllBytes();
+        }
+        
+        // Status code 0 followed by zeroes
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + bytes.length);
+        buffer.position(HEADER_SIZE);
+        buffer.put(bytes);
+        buffer.flip();
+        buffer = buffer.asReadOnlyBuffer();
+        bytesCopied.addAndGet(bytes.length);
+        
+        synchronized(responses) {
+            responses.put(gameSyncId, new CachedResponse(revision, buffer));
+        }
+        
+        return buffer.duplicate();
+    }
+    
+    /**
+     * Records the time it took to send a response.
+     */
+    public void recordResponseTime(long nanoTime) {
+        totalResponseTime.addAndGet(nanoTime);
+    }
+    
+    /**
+     * @return The number of responses that were requested.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+    
+    /**
+     * @return The number of responses that were served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    
+    /**
+     * @return The average number of save file bytes that had to be copied per request.
+     */
+    public long getAverageBytesCopied() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : bytesCopied.get() / count;
+    }
+    
+    /**
+     * @return The average time it took to send a response, in microseconds.
+     */
+    public long getAverageResponseTime() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : totalResponseTime.get() / count / 1000;
+    }
+}
@@ -0,0 +1,99 @@
+package entralinked.network.http.pgl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+
+import entralinked.GameVersion;
+import entralinked.model.player.Player;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Cache for the dream data of recent {@code savedata.download} requests.
+ * 
+ * Everything except the wake-up counter is serialized once per dream data revision and DLC revision,
+ * so a download only has to copy the cached dream data into the response buffer and patch in a new counter.
+ * The DLC indices are only looked up when the dream data is serialized.
+ */
+public class SaveDataCache {
+    
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final Map<String, CachedResponse> responses;
+    private final LongSupplier dlcRevision;
+    private final ToIntBiFunction<String, String> dlcIndexLookup;
+    
+    private record CachedResponse(long revision, long dlcRevision, byte[] bytes) {}
+    
+    /**
+     * @param capacity The maximum number of responses to keep cached.
+     * @param dlcRevision Supplies a number that changes whenever the DLC indices may have changed.
+     * @param dlcIndexLookup Function that returns the index of the DLC with the specified type and name, or 0 if there is none.
+     */
+    public SaveDataCache(int capacity, LongSupplier dlcRevision, ToIntBiFunction<String, String> dlcIndexLookup) {
+        this.dlcRevision = dlcRevision;
+        this.dlcIndexLookup = dlcIndexLookup;
+        this.responses = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * Writes the dream data of the specified player to the buffer, with a new random wake-up counter.
+     * The dream data is serialized and cached if it isn't cached already.
+     */
+    public void writeDreamData(ByteBuf buffer, Player player) {
+        String gameSyncId = player.getGameSyncId();
+        
+        // Read first so that concurrent changes are never cached under a newer revision
+        long revision = player.getDreamDataRevision();
+        long dlcRevision = this.dlcRevision.getAsLong();
+        requestCount.incrementAndGet();
+        int start = buffer.writerIndex();
+        CachedResponse response = null;
+        
+        synchronized(responses) {
+            response = responses.get(gameSyncId);
+        }
+        
+        if(response != null && response.revision() == revision && response.dlcRevision() == dlcRevision) {
+            hitCount.incrementAndGet();
+            buffer.writeBytes(response.bytes());
+        } else {
+            GameVersion version = player.getGameVersion();
+            int musicalIndex = dlcIndexLookup.applyAsInt("MUSICAL", player.getMusical());
+            int cgearSkinIndex = dlcIndexLookup.applyAsInt(version.isVersion2() ? "CGEAR2" : "CGEAR", player.getCGearSkin());
+            int dexSkinIndex = dlcIndexLookup.applyAsInt("ZUKAN", player.getDexSkin());
+            SaveDataWriter.writeDreamData(buffer, player, musicalIndex, cgearSkinIndex, dexSkinIndex);
+            response = new CachedResponse(revision, dlcRevision, ByteBufUtil.getBytes(buffer, start, buffer.writerIndex() - start));
+            
+            synchronized(responses) {
+                responses.put(gameSyncId, response);
+            }
+        }
+        
+        // See SaveDataWriter for what the counter is for
+        buffer.setIntLE(start, ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE));
+    }
+    
+    /**
+     * @return The number of responses that were requested.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+    
+    /**
+     * @return The number of responses that were served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+}
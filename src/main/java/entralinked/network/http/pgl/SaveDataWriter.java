@@ -0,0 +1,128 @@
+package entralinked.network.http.pgl;
+
+import java.util.List;
+
+import entralinked.GameVersion;
+import entralinked.model.avenue.AvenueVisitor;
+import entralinked.model.player.DreamDecor;
+import entralinked.model.player.DreamEncounter;
+import entralinked.model.player.DreamItem;
+import entralinked.model.player.Player;
+import entralinked.utility.ByteBufUtility;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Utility class for writing the dream data that is sent in response to {@code savedata.download} requests.
+ */
+public class SaveDataWriter {
+    
+    /**
+     * Writes the dream data of the specified player, which is everything that follows the status code.
+     * 
+     * Black 2 - {@code sub_21B6C9C} (overlay #199)
+     */
+    public static void writeDreamData(ByteBuf buffer, Player player, int musicalIndex, int cgearSkinIndex, int dexSkinIndex) {
+        GameVersion version = player.getGameVersion();
+        List<DreamEncounter> encounters = player.getEncounters();
+        List<DreamItem> items = player.getItems();
+        List<DreamDecor> decorList = player.getDecor();
+        
+        // When waking up a Pokémon, these 4 bytes are written to 0x1D304 in the save file.
+        // If the bytes in the game's save file match the new bytes, they will be set to 0x00000000
+        // and no content will be downloaded.
+        // Looking at some old save files, this was very likely just a total tuck-in/wake-up counter.
+        // Additionally, waking up sets a flag at 0x1D4A3 (seems to be a "Pokémon is tucked in" flag or something) to 0x0.
+        buffer.writeIntLE((int)(Math.random() * Integer.MAX_VALUE));
+        
+        // Write encounter data (max 10)
+        for(DreamEncounter encounter : encounters) {
+            buffer.writeShortLE(encounter.species());
+            buffer.writeShortLE(encounter.move());
+            buffer.writeByte(encounter.form());
+            buffer.writeByte(encounter.gender().ordinal()); // Genderless = 2 = random
+            buffer.writeByte(encounter.animation().ordinal());
+            buffer.writeByte(0); // unknown
+        }
+        
+        // Write encounter padding
+        ByteBufUtility.fill(buffer, 0, (10 - encounters.size()) * 8);
+        
+        // Write misc stuff and DLC information
+        buffer.writeShortLE(player.getLevelsGained());
+        buffer.writeByte(0); // Unknown
+        buffer.writeByte(musicalIndex);
+        buffer.writeByte(cgearSkinIndex);
+        buffer.writeByte(dexSkinIndex);
+        buffer.writeByte(decorList.isEmpty() ? 0 : 1); // Decor flag (?) stored at 0x1D4A4
+        buffer.writeByte(0); // Must be zero?
+        
+        // Write item IDs
+        for(DreamItem item : items) {
+            buffer.writeShortLE(item.id());
+        }
+        
+        // Write item ID padding
+        ByteBufUtility.fill(buffer, 0, (20 - items.size()) * 2);
+        
+        // Write item quantities
+        for(DreamItem item : items) {
+            buffer.writeByte(item.quantity()); // Hard caps at 20?
+        }
+        
+        // Write quantity padding
+        ByteBufUtility.fill(buffer, 0, 20 - items.size());
+        
+        // Decor data -- copied to 0x1D420 in the save file
+        // Need to send 5 entries or nothing will happen
+        // After decor is selected in Nacrene City, the *index* of it (default: 0x7F) will be saved to 0x1D4A6 in the save file.
+        for(DreamDecor decor : decorList) {
+            // If any ID is 0x7E it will not work. It also appears as the default in the save file.
+            buffer.writeShortLE(decor.id());
+            
+            // Name can't have more than 12 characters
+            ByteBufUtility.writeUTF16(buffer, decor.name(), 12, 12);
+        }
+        
+        // Write decor padding
+        for(int i = 0; i < (5 - decorList.size()); i++) {
+            buffer.writeShortLE(0x7E); // Just reset to default state
+            buffer.writeZero(24);
+        }
+        
+        buffer.writeShortLE(0); // ?
+        
+        // Join Avenue visitor data -- copied in parts to 0x2422C in the save file.
+        // Black Version 2 and White Version 2 only.
+        if(version.isVersion2()) {
+            List<AvenueVisitor> avenueVisitors = player.getAvenueVisitors();
+            
+            for(AvenueVisitor visitor : avenueVisitors) {
+                // Write visitor name + padding. Names cannot be duplicate.
+                ByteBufUtility.writeUTF16(buffer, visitor.name(), 7, 8);
+                
+                // Full visitor type consists of a trainer class and what I call a 'personality' index
+                // that, along with the trainer class, determines which phrases the visitor uses.
+                // The shop type is calculated in such an odd manner because for some reason,
+                // the 'starting' index of the shop type used increases by 2 for each visitor type.
+                // For example, if the visitor type is '0', then shop type '0' would be a raffle.
+                // However, if the visitor type is '2', then shop type '0' results in a dojo instead.
+                int visitorType = visitor.type().getClientId() + visitor.personality() * 8;
+                buffer.writeByte(visitorType);
+                buffer.writeByte(visitor.shopType().ordinal() + (7 - visitorType * 2 % 7));
+                buffer.writeShortLE(0); // Does nothing
+                buffer.writeIntLE(1); // [20] Ignores if 0
+                buffer.writeByte(visitor.countryCode());
+                buffer.writeByte(visitor.stateProvinceCode());
+                buffer.writeByte(visitor.gameVersion().getLanguageCode()); // 99% sure this is the lang code because 1 seems to be ignored ONLY if country code isn't Japan (plus it's right above the rom code)
+                buffer.writeByte(visitor.gameVersion().getRomCode()); // Affects shop stock
+                buffer.writeByte(visitor.type().isFemale() ? 1 : 0);
+                buffer.writeByte(0); // [29] Does.. something
+                buffer.writeShortLE(visitor.dreamerSpecies());
+            }
+            
+            // Write visitor padding
+            ByteBufUtility.fill(buffer, 0, (12 - avenueVisitors.size()) * 32);
+            buffer.writeIntLE(0); // 672 is the total -- there shouldn't be anything left after this. Hooray!
+        }
+    }
+}
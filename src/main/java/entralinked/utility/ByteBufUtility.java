@@ -0,0 +1,107 @@
+package entralinked.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Utility class for reading and writing little-endian binary data with Netty {@link ByteBuf} objects.
+ * 
+ * Buffers created by {@link #allocate(int)} come from a pool and must be released once they are no longer needed.
+ * Reads are bounds-checked by the buffer itself and throw an {@link IndexOutOfBoundsException} if there is not enough data left.
+ */
+public class ByteBufUtility {
+    
+    private static final int UTF16_TERMINATOR = 0xFFFF;
+    
+    /**
+     * @return A pooled heap buffer with the specified initial capacity. It grows as needed and must be released after use.
+     */
+    public static ByteBuf allocate(int initialCapacity) {
+        return PooledByteBufAllocator.DEFAULT.heapBuffer(initialCapacity);
+    }
+    
+    /**
+     * @return An unpooled buffer containing all remaining bytes of the input stream.
+     */
+    public static ByteBuf readAll(InputStream inputStream) throws IOException {
+        return Unpooled.wrappedBuffer(inputStream.readAllBytes());
+    }
+    
+    /**
+     * Writes the readable bytes of the buffer to the output stream in a single write.
+     */
+    public static void writeTo(ByteBuf buffer, OutputStream outputStream) throws IOException {
+        buffer.readBytes(outputStream, buffer.readableBytes());
+    }
+    
+    /**
+     * Writes the specified byte value {@code amount} times.
+     */
+    public static void fill(ByteBuf buffer, int value, int amount) {
+        if(amount <= 0) {
+            return;
+        }
+        
+        if(value == 0) {
+            buffer.writeZero(amount);
+            return;
+        }
+        
+        buffer.ensureWritable(amount);
+        int index = buffer.writerIndex();
+        
+        if(buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + index;
+            Arrays.fill(buffer.array(), offset, offset + amount, (byte)value);
+        } else {
+            for(int i = 0; i < amount; i++) {
+                buffer.setByte(index + i, value);
+            }
+        }
+        
+        buffer.writerIndex(index + amount);
+    }
+    
+    /**
+     * Writes a fixed-width UTF-16LE string of {@code length} characters.
+     * Strings longer than {@code maxLength} characters are cut off, and the rest of the field is filled with {@code 0xFFFF}.
+     */
+    public static void writeUTF16(ByteBuf buffer, String string, int maxLength, int length) {
+        int count = Math.min(string.length(), Math.min(maxLength, length));
+        
+        for(int i = 0; i < count; i++) {
+            buffer.writeShortLE(string.charAt(i));
+        }
+        
+        fill(buffer, 0xFF, (length - count) * 2);
+    }
+    
+    /**
+     * Reads a fixed-width UTF-16LE string of {@code length} characters that ends at the first {@code 0xFFFF} character.
+     * The full width of the field is always consumed.
+     */
+    public static String readUTF16(ByteBuf buffer, int length) {
+        char[] chars = new char[length];
+        int end = buffer.readerIndex() + length * 2;
+        int count = 0;
+        
+        for(; count < length; count++) {
+            int c = buffer.readUnsignedShortLE();
+            
+            if(c == UTF16_TERMINATOR) {
+                break;
+            }
+            
+            chars[count] = (char)c;
+        }
+        
+        buffer.readerIndex(end);
+        return new String(chars, 0, count);
+    }
+}
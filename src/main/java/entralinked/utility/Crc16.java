@@ -1,38 +1,127 @@
 package entralinked.utility;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * Utility class for calculating CRC-16 checksums.
+ * 
+ * Checksums are CRC-16/CCITT (polynomial {@code 0x1021}, initial value {@code 0xFFFF}) and are calculated using lookup tables.
+ * Inputs are processed eight bytes at a time ("slicing-by-8") using one table per byte position.
  */
 public class Crc16 {
     
-    public static int calc(byte[] input, int offset, int length) {
-        int crc = 0xFFFF;
-        
-        for(int i = offset; i < offset + length; i++) {
-            crc ^= (input[i] << 8);
+    /**
+     * The value to pass to {@link #update(int, byte[], int, int)} when calculating a new checksum.
+     */
+    public static final int INITIAL_VALUE = 0xFFFF;
+    private static final int POLYNOMIAL = 0x1021;
+    private static final int SLICE_LENGTH = 8;
+    private static final int[][] TABLES = new int[SLICE_LENGTH][256]; // TABLES[k][i] is the checksum of byte i followed by k zero bytes
+    
+    static {
+        for(int i = 0; i < 256; i++) {
+            int crc = i << 8;
             
             for(int j = 0; j < 8; j++) {
-                if((crc & 0x8000) != 0) {
-                    crc = crc << 1 ^ 0x1021;
-                } else {
-                    crc <<= 1;
-                }
+                crc = (crc & 0x8000) != 0 ? crc << 1 ^ POLYNOMIAL : crc << 1;
+            }
+            
+            TABLES[0][i] = crc & 0xFFFF;
+        }
+        
+        for(int k = 1; k < SLICE_LENGTH; k++) {
+            for(int i = 0; i < 256; i++) {
+                int crc = TABLES[k - 1][i];
+                TABLES[k][i] = (crc << 8 ^ TABLES[0][crc >> 8]) & 0xFFFF;
             }
         }
+    }
+    
+    /**
+     * Continues calculating a checksum over the specified bytes.
+     * This allows checksums to be calculated over data that is read in parts.
+     * 
+     * @return The checksum of all bytes that have been passed so far.
+     */
+    public static int update(int crc, byte[] input, int offset, int length) {
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int end = offset + length;
+        int i = offset;
+        crc &= 0xFFFF;
+            
+        // The current checksum only affects the first two bytes of each slice
+        for(; i <= end - SLICE_LENGTH; i += SLICE_LENGTH) {
+            crc = t7[(input[i] ^ crc >> 8) & 0xFF] ^ t6[(input[i + 1] ^ crc) & 0xFF]
+                    ^ t5[input[i + 2] & 0xFF] ^ t4[input[i + 3] & 0xFF]
+                    ^ t3[input[i + 4] & 0xFF] ^ t2[input[i + 5] & 0xFF]
+                    ^ t1[input[i + 6] & 0xFF] ^ t0[input[i + 7] & 0xFF];
+        }
+        
+        for(; i < end; i++) {
+            crc = (crc << 8 ^ t0[(crc >> 8 ^ input[i]) & 0xFF]) & 0xFFFF;
+        }
+        
+        return crc;
+    }
+    
+    /**
+     * Continues calculating a checksum over the remaining bytes of the specified buffer.
+     * The position of the buffer is not changed, so shared direct and mapped buffers can be passed as-is.
+     * 
+     * @return The checksum of all bytes that have been passed so far.
+     */
+    public static int update(int crc, ByteBuffer input) {
+        if(input.hasArray()) {
+            return update(crc, input.array(), input.arrayOffset() + input.position(), input.remaining());
+        }
+        
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int end = input.limit();
+        int i = input.position();
+        crc &= 0xFFFF;
+        
+        for(; i <= end - SLICE_LENGTH; i += SLICE_LENGTH) {
+            crc = t7[(input.get(i) ^ crc >> 8) & 0xFF] ^ t6[(input.get(i + 1) ^ crc) & 0xFF]
+                    ^ t5[input.get(i + 2) & 0xFF] ^ t4[input.get(i + 3) & 0xFF]
+                    ^ t3[input.get(i + 4) & 0xFF] ^ t2[input.get(i + 5) & 0xFF]
+                    ^ t1[input.get(i + 6) & 0xFF] ^ t0[input.get(i + 7) & 0xFF];
+        }
+        
+        for(; i < end; i++) {
+            crc = (crc << 8 ^ t0[(crc >> 8 ^ input.get(i)) & 0xFF]) & 0xFFFF;
+        }
         
-        return crc & 0xFFFF;
+        return crc;
+    }
+    
+    public static int calc(byte[] input, int offset, int length) {
+        return update(INITIAL_VALUE, input, offset, length);
     }
     
     public static int calc(byte[] input) {
         return calc(input, 0, input.length);
     }
     
+    public static int calc(ByteBuffer input) {
+        return update(INITIAL_VALUE, input);
+    }
+    
+    /**
+     * Writes a checksum to the output stream in little-endian order, which is how it is appended to DLC files.
+     */
+    public static void writeChecksum(OutputStream outputStream, int checksum) throws IOException {
+        outputStream.write(new byte[] {(byte)checksum, (byte)(checksum >> 8)});
+    }
+    
+    /**
+     * @return The checksum of the four bytes of the input in little-endian order.
+     */
     public static int calc(int input) {
-        return calc(new byte[] {
-            (byte)(input & 0xFF),
-            (byte)((input >> 8) & 0xFF),
-            (byte)((input >> 16) & 0xFF),
-            (byte)((input >> 24) & 0xFF)
-        });
+        return TABLES[3][(input ^ INITIAL_VALUE >> 8) & 0xFF] ^ TABLES[2][(input >> 8 ^ INITIAL_VALUE) & 0xFF]
+                ^ TABLES[1][input >> 16 & 0xFF] ^ TABLES[0][input >>> 24];
     }
 }
@@ -0,0 +1,285 @@
+package entralinked.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Append-only journal of mutation records, stored as one JSON document per line.
+ * 
+ * Appended records are buffered and synced to disk periodically, so that many small writes result in a single fsync.
+ * Every so often, the journal is compacted: the journal file is rotated, the entities that were modified since the last
+ * compaction are written to their snapshot files by the supplied snapshot writer, and the rotated file is deleted.
+ * If the process stops before a compaction finishes, the rotated file is kept around and replayed on the next startup.
+ * 
+ * Mutation records should be idempotent (i.e. set a value rather than increment it) because records that were
+ * already snapshotted may be replayed again.
+ */
+public class Journal<T> {
+    
+    private static final Logger logger = LogManager.getLogger();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ScheduledExecutorService executor;
+    private final File file;
+    private final File rotatedFile;
+    private final Class<T> type;
+    private final Function<T, String> keyFunction;
+    private final Predicate<Set<String>> snapshotWriter;
+    private Set<String> dirtyKeys = new HashSet<>();
+    private FileOutputStream fileOutputStream;
+    private OutputStream outputStream;
+    private boolean unsynced;
+    private long appendCount;
+    private long syncCount;
+    
+    /**
+     * @param file The journal file.
+     * @param type The base type of the records in this journal.
+     * @param keyFunction Function that returns the key of the entity that a record modifies.
+     * @param snapshotWriter Function that writes the current state of the entities with the given keys to their
+     * snapshot files. Should return {@code true} if all snapshots were written successfully.
+     * @param syncInterval The amount of milliseconds between syncs.
+     * @param compactionInterval The amount of seconds between compactions.
+     */
+    public Journal(File file, Class<T> type, Function<T, String> keyFunction, Predicate<Set<String>> snapshotWriter,
+            long syncInterval, long compactionInterval) {
+        this.file = file;
+        this.rotatedFile = new File(file.getPath() + ".old");
+        this.type = type;
+        this.keyFunction = keyFunction;
+        this.snapshotWriter = snapshotWriter;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory(file.getName(), true));
+        executor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compact, compactionInterval, compactionInterval, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Reads all records that have not been compacted yet and passes them to the specified consumer in order.
+     * The entities that were modified by these records will be written to their snapshot files during the next compaction.
+     * Should only be called once, before anything is appended.
+     */
+    public synchronized void replay(Consumer<T> consumer) {
+        int count = replay(rotatedFile, consumer) + replay(file, consumer);
+        
+        if(count > 0) {
+            logger.info("Replayed {} record(s) from {}", count, file.getName());
+        }
+    }
+    
+    private int replay(File inputFile, Consumer<T> consumer) {
+        if(!inputFile.exists()) {
+            return 0;
+        }
+        
+        int count = 0;
+        
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+            String line = null;
+            int lineNumber = 0;
+            
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                
+                if(line.isBlank()) {
+                    continue;
+                }
+                
+                T record = null;
+                
+                try {
+                    record = mapper.readValue(line, type);
+                } catch(IOException e) {
+                    // This is most likely the last line having been cut off by a crash
+                    logger.warn("Skipping unreadable record on line {} of {}", lineNumber, inputFile.getName());
+                    continue;
+                }
+                
+                consumer.accept(record);
+                dirtyKeys.add(keyFunction.apply(record));
+                count++;
+            }
+        } catch(IOException e) {
+            logger.error("Could not replay journal {}", inputFile.getAbsolutePath(), e);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Appends a record to the journal.
+     * The record is not guaranteed to be on disk until the next sync.
+     * 
+     * @return {@code true} if the record was appended successfully, otherwise {@code false}.
+     */
+    public synchronized boolean append(T record) {
+        try {
+            byte[] bytes = mapper.writeValueAsBytes(record);
+            
+            if(outputStream == null) {
+                openFile();
+            }
+            
+            outputStream.write(bytes);
+            outputStream.write('\n');
+            dirtyKeys.add(keyFunction.apply(record));
+            unsynced = true;
+            appendCount++;
+        } catch(IOException e) {
+            logger.error("Could not append record to {}", file.getName(), e);
+            return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Flushes all buffered records and forces them to be written to the storage device.
+     */
+    public synchronized void sync() {
+        if(!unsynced || outputStream == null) {
+            return;
+        }
+        
+        try {
+            outputStream.flush();
+            fileOutputStream.getChannel().force(false);
+            unsynced = false;
+            syncCount++;
+        } catch(IOException e) {
+            logger.error("Could not sync {}", file.getName(), e);
+        }
+    }
+    
+    /**
+     * Writes the snapshots of all entities that were modified since the last compaction and clears the journal.
+     * Records appended during compaction are kept for the next one.
+     */
+    public void compact() {
+        Set<String> keys = null;
+        
+        synchronized(this) {
+            if(dirtyKeys.isEmpty()) {
+                return;
+            }
+            
+            try {
+                rotateFile();
+            } catch(IOException e) {
+                logger.error("Could not rotate {}", file.getName(), e);
+                return;
+            }
+            
+            keys = dirtyKeys;
+            dirtyKeys = new HashSet<>();
+        }
+        
+        long beginTime = System.currentTimeMillis();
+        
+        // Keep the rotated file if something went wrong so nothing is lost
+        if(!snapshotWriter.test(keys)) {
+            logger.warn("Compaction of {} failed -- it will be retried later", file.getName());
+            
+            synchronized(this) {
+                dirtyKeys.addAll(keys);
+            }
+            
+            return;
+        }
+        
+        rotatedFile.delete();
+        logger.debug("Compacted {} entities from {} in {} milliseconds", keys.size(), file.getName(), System.currentTimeMillis() - beginTime);
+    }
+    
+    /**
+     * Closes the current journal file and moves its contents to the rotated file.
+     * If the rotated file already exists, i.e. the last compaction failed, the contents are appended to it instead.
+     */
+    private void rotateFile() throws IOException {
+        closeFile();
+        
+        if(!file.exists()) {
+            return;
+        }
+        
+        if(rotatedFile.exists()) {
+            Files.write(rotatedFile.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+            file.delete();
+        } else {
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private void openFile() throws IOException {
+        File parentFile = file.getAbsoluteFile().getParentFile();
+        
+        if(parentFile != null) {
+            parentFile.mkdirs();
+        }
+        
+        fileOutputStream = new FileOutputStream(file, true);
+        outputStream = new BufferedOutputStream(fileOutputStream);
+    }
+    
+    private void closeFile() throws IOException {
+        if(outputStream == null) {
+            return;
+        }
+        
+        sync();
+        outputStream.close();
+        outputStream = null;
+        fileOutputStream = null;
+    }
+    
+    /**
+     * Syncs the journal and stops the journal thread.
+     * Uncompacted records will be replayed on the next startup.
+     */
+    public synchronized void close() {
+        executor.shutdown();
+        
+        try {
+            closeFile();
+        } catch(IOException e) {
+            logger.error("Could not close {}", file.getName(), e);
+        }
+    }
+    
+    /**
+     * @return The number of records that have been appended.
+     */
+    public synchronized long getAppendCount() {
+        return appendCount;
+    }
+    
+    /**
+     * @return The number of times the journal has been synced to disk.
+     */
+    public synchronized long getSyncCount() {
+        return syncCount;
+    }
+}
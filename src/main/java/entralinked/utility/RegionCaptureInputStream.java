@@ -0,0 +1,125 @@
+package entralinked.utility;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Input stream that copies fixed-offset regions of the data that is read through it, so that parts of a stream
+ * can be inspected while it is being written somewhere else without having to read it twice.
+ * Regions must be registered using {@link #capture(long, int)} before the stream reaches them.
+ */
+public class RegionCaptureInputStream extends FilterInputStream {
+    
+    private final List<Region> regions = new ArrayList<>();
+    private long position;
+    
+    /**
+     * Region of the stream that is captured while the stream is read.
+     */
+    public static class Region {
+        
+        private final long offset;
+        private final byte[] bytes;
+        private int bytesCaptured;
+        
+        private Region(long offset, int length) {
+            this.offset = offset;
+            this.bytes = new byte[length];
+        }
+        
+        private void capture(long position, byte[] buffer, int bufferOffset, int length) {
+            long start = Math.max(position, offset);
+            long end = Math.min(position + length, offset + bytes.length);
+            
+            if(start < end) {
+                System.arraycopy(buffer, (int)(bufferOffset + start - position), bytes, (int)(start - offset), (int)(end - start));
+                bytesCaptured += (int)(end - start);
+            }
+        }
+        
+        /**
+         * @return {@code true} if the entire region has been read.
+         */
+        public boolean isComplete() {
+            return bytesCaptured == bytes.length;
+        }
+        
+        /**
+         * @return The captured bytes. Bytes that haven't been read yet are zero.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+    
+    public RegionCaptureInputStream(InputStream inputStream) {
+        super(inputStream);
+    }
+    
+    /**
+     * Registers a region to be captured.
+     * 
+     * @throws IllegalStateException If the stream has already been read past the start of the region.
+     */
+    public Region capture(long offset, int length) {
+        if(offset < position) {
+            throw new IllegalStateException("Region offset %s has already been read".formatted(offset));
+        }
+        
+        Region region = new Region(offset, length);
+        regions.add(region);
+        return region;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = in.read(buffer, offset, length);
+        
+        if(bytesRead > 0) {
+            for(Region region : regions) {
+                region.capture(position, buffer, offset, bytesRead);
+            }
+            
+            position += bytesRead;
+        }
+        
+        return bytesRead;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        if(n <= 0) {
+            return 0;
+        }
+        
+        // Read instead of skipping so that no region is missed
+        byte[] buffer = new byte[(int)Math.min(n, 8192)];
+        long remaining = n;
+        
+        while(remaining > 0) {
+            int bytesRead = read(buffer, 0, (int)Math.min(remaining, buffer.length));
+            
+            if(bytesRead == -1) {
+                break;
+            }
+            
+            remaining -= bytesRead;
+        }
+        
+        return n - remaining;
+    }
+    
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
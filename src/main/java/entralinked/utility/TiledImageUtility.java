@@ -9,6 +9,8 @@ import java.util.Arrays;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * Utility class for reading/writing tiled images to/from {@link BufferedImage} objects.
  */
@@ -35,14 +37,15 @@ public class TiledImageUtility {
     
     static {
         // Load Pokédex skin background data
-        try(LEInputStream inputStream = new LEInputStream(TiledImageUtility.class.getResourceAsStream("/zukan.bin"))) {
+        try(InputStream inputStream = TiledImageUtility.class.getResourceAsStream("/zukan.bin")) {
+            ByteBuf buffer = ByteBufUtility.readAll(inputStream);
             int index = 0;
-            int pairs = inputStream.readShort();
+            int pairs = buffer.readShortLE();
             
             // Read background color indices
             for(int i = 0; i < pairs; i++) {
-                int amount = inputStream.read();
-                int value = inputStream.read();
+                int amount = buffer.readUnsignedByte();
+                int value = buffer.readUnsignedByte();
                 
                 for(int j = 0; j < amount; j++) {
                     dexBackgroundColorIndices[index++] = (byte)(value & 63);
@@ -50,12 +53,12 @@ public class TiledImageUtility {
             }
             
             index = 0;
-            pairs = inputStream.readShort();
+            pairs = buffer.readShortLE();
             
             // Read background override bits
             for(int i = 0; i < pairs; i++) {
-                int amount = inputStream.readShort();
-                int value = inputStream.read();
+                int amount = buffer.readShortLE();
+                int value = buffer.readUnsignedByte();
                 
                 for(int j = 0; j < amount; j++) {
                     for(int k = 0; k < 8; k++) {
@@ -63,7 +66,7 @@ public class TiledImageUtility {
                     }
                 }
             }
-        } catch(IOException e) {
+        } catch(IOException | IndexOutOfBoundsException e) {
             logger.error("Could not load Pokédex background data", e);
         }
     }
@@ -76,7 +79,7 @@ public class TiledImageUtility {
      * @return A {@link BufferedImage} representing the read C-Gear skin data.
      */
     public static BufferedImage readCGearSkin(InputStream inputStream, boolean normalizeIndices) throws IOException {
-        return readTiledImage(new LEInputStream(inputStream), 255, 0, null, null, normalizeIndices);
+        return readTiledImage(ByteBufUtility.readAll(inputStream), 255, 0, null, null, normalizeIndices);
     }
     
     /**
@@ -88,14 +91,14 @@ public class TiledImageUtility {
      * @return A {@link BufferedImage} representing the read Pokédex skin data.
      */
     public static BufferedImage readDexSkin(InputStream inputStream, boolean applyBackground) throws IOException {
-        return readTiledImage(new LEInputStream(inputStream), 768, 64,
+        return readTiledImage(ByteBufUtility.readAll(inputStream), 768, 64,
                 applyBackground ? dexBackgroundColorIndices : null, applyBackground ? dexBackgroundOverrides : null, false);
     }
     
     /**
-     * Reads tiled image data from the provided {@link InputStream} and returns a {@link BufferedImage} representing the read image data.
+     * Reads tiled image data from the provided {@link ByteBuf} and returns a {@link BufferedImage} representing the read image data.
      * 
-     * @param inputStream The input stream to read from.
+     * @param buffer The buffer to read from.
      * @param tileCount The number of tiles to be read. This should be equal to the maximum number of tiles for this image.
      * @param backgroundColorCount The number of background colors this image has.
      * @param backgroundColorIndices The background color indices of the background image. If {@code null}, no background will be used.
@@ -103,8 +106,16 @@ public class TiledImageUtility {
      * @param normalizedIndices Indicates that tile indices are not linear (Black & White C-Gear skins) and should be normalized.
      * @return A {@link BufferedImage} representing the read image data.
      */
-    private static BufferedImage readTiledImage(LEInputStream inputStream, int tileCount, int backgroundColorCount,
+    private static BufferedImage readTiledImage(ByteBuf buffer, int tileCount, int backgroundColorCount,
             byte[] backgroundColorIndices, boolean[] backgroundOverrides, boolean normalizeIndices) throws IOException {
+        int length = tileCount * TILE_SIZE / 2 + (COLOR_PALETTE_SIZE + backgroundColorCount) * 2
+                + (tileCount < SCREEN_TILE_COUNT ? SCREEN_TILE_COUNT * 2 : 0);
+        
+        // Check the length up front so that the reads below can't run out of data
+        if(buffer.readableBytes() < length) {
+            throw new IOException("Tiled image data is too short: expected %s bytes, got %s".formatted(length, buffer.readableBytes()));
+        }
+        
         BufferedImage image = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB); // Result image
         int[] tileData = new int[tileCount * TILE_SIZE];
         int[] tileIndices = new int[tileCount]; // Tile index lookup table
@@ -113,10 +124,8 @@ public class TiledImageUtility {
         
         // Read tile data.
         for(int i = 0; i < tileCount; i++) {
-            byte[] rawTileData = inputStream.readNBytes(TILE_SIZE / 2);
-            
-            for(int j = 0; j < rawTileData.length; j++) {
-                int paletteIndices = rawTileData[j]; // Contains color palette indices for 2 adjacent pixels.
+            for(int j = 0; j < TILE_SIZE / 2; j++) {
+                int paletteIndices = buffer.readByte(); // Contains color palette indices for 2 adjacent pixels.
                 tileData[i * TILE_SIZE + j * 2] = paletteIndices & (COLOR_PALETTE_SIZE - 1);
                 tileData[i * TILE_SIZE + j * 2 + 1] = (paletteIndices >> 4) & (COLOR_PALETTE_SIZE - 1);
             }
@@ -129,7 +138,7 @@ public class TiledImageUtility {
         // In cases where background colors are present, pixels that use the *first* foreground color
         // will be replaced by the background color at that pixel's location.
         for(int i = 0; i < COLOR_PALETTE_SIZE; i++) {
-            int color = inputStream.readShort();
+            int color = buffer.readShortLE();
             
             // The game seems to always replace the first color of the foreground with the background,
             // so let's just set it to black so that C-Gear skin previews are more accurate.
@@ -141,7 +150,7 @@ public class TiledImageUtility {
         // Pokédex skins contain room for 240 extra colors, 64 of which are defined and appear to be used as the 
         // 'background' colors in cases where the skin is only an overlay that is displayed on top of the 'true' Pokédex.
         for(int i = 0; i < backgroundColorCount; i++) {
-            backgroundColorPalette[i] = ColorUtility.convertBGR555ToRGB888(inputStream.readShort());
+            backgroundColorPalette[i] = ColorUtility.convertBGR555ToRGB888(buffer.readShortLE());
         }
         
         // Map tiles to the resulting image.
@@ -153,8 +162,8 @@ public class TiledImageUtility {
             for(int i = 0; i < SCREEN_TILE_COUNT; i++) {
                 int x = i * TILE_WIDTH % SCREEN_WIDTH;
                 int y = i * TILE_WIDTH / SCREEN_WIDTH * TILE_HEIGHT;
-                int leftBits = inputStream.read();
-                int rightBits = inputStream.read();
+                int leftBits = buffer.readUnsignedByte();
+                int rightBits = buffer.readUnsignedByte();
                 int memoryIndex = leftBits | (rightBits & ~12) << 8;
                 int flipBits = rightBits & 12;
                 
@@ -228,7 +237,14 @@ public class TiledImageUtility {
      * @param offsetIndices Should be {@code true} if the C-Gear skin is intended for use with the original Black & White games.
      */
     public static void writeCGearSkin(OutputStream outputStream, BufferedImage image, boolean offsetIndices) throws IOException {
-        writeTiledImage(new LEOutputStream(outputStream), image, 255, null, offsetIndices);
+        ByteBuf buffer = ByteBufUtility.allocate(9728);
+        
+        try {
+            writeTiledImage(buffer, image, 255, null, offsetIndices);
+            ByteBufUtility.writeTo(buffer, outputStream);
+        } finally {
+            buffer.release();
+        }
     }
     
     /**
@@ -243,21 +259,28 @@ public class TiledImageUtility {
             throw new IllegalArgumentException("Background color array must contain 64 colors");
         }
         
-        writeTiledImage(new LEOutputStream(outputStream), image, 768, backgroundColors, false);
-        outputStream.write(new byte[352]); // Extra data that writeTiledImage doesn't write
+        ByteBuf buffer = ByteBufUtility.allocate(25088);
+        
+        try {
+            writeTiledImage(buffer, image, 768, backgroundColors, false);
+            buffer.writeZero(352); // Extra data that writeTiledImage doesn't write
+            ByteBufUtility.writeTo(buffer, outputStream);
+        } finally {
+            buffer.release();
+        }
     }
     
     /**
-     * Writes a {@link BufferedImage} to the specified {@link OutputStream} as a tiled image.
+     * Writes a {@link BufferedImage} to the specified {@link ByteBuf} as a tiled image.
      * 
-     * @param outputStream The output stream to write to.
+     * @param buffer The buffer to write to.
      * @param image The image to write.
      * @param tileCount The maximum number of unique tiles that can be used.
      * @param backgroundColors Additional background colors that the game might use. Can be {@code null}.
      * @param offsetIndices Indicates that tile indices are not linear (Black & White C-Gear skins) and should be offset.
      */
-    private static void writeTiledImage(LEOutputStream outputStream, BufferedImage image,
-            int tileCount, int[] backgroundColors, boolean offsetTileIndices) throws IOException {
+    private static void writeTiledImage(ByteBuf buffer, BufferedImage image,
+            int tileCount, int[] backgroundColors, boolean offsetTileIndices) {
         int[] tileData = new int[TILE_SIZE * tileCount]; // Stores colors, NOT indices!
         int[] tileMappingData = new int[SCREEN_TILE_COUNT];
         int[] colorPalette = new int[COLOR_PALETTE_SIZE];
@@ -341,25 +364,25 @@ public class TiledImageUtility {
         // Write tile data.
         for(int i = 0; i < tileData.length; i += 2) {
             int paletteIndices = indexOf(colorPalette, tileData[i]) | (indexOf(colorPalette, tileData[i + 1]) << 4);
-            outputStream.write(paletteIndices);
+            buffer.writeByte(paletteIndices);
         }
         
         // Write foreground color data.
         for(int color : colorPalette) {
-            outputStream.writeShort(ColorUtility.convertRGB888ToBGR555(color));
+            buffer.writeShortLE(ColorUtility.convertRGB888ToBGR555(color));
         }
         
         // Write background color data if it is present.
         if(backgroundColors != null) {
             for(int color : backgroundColors) {
-                outputStream.writeShort(ColorUtility.convertRGB888ToBGR555(color));
+                buffer.writeShortLE(ColorUtility.convertRGB888ToBGR555(color));
             }
         }
         
         // Write tile mapping data.
         if(tileCount < SCREEN_TILE_COUNT) {
             for(int i = 0; i < SCREEN_TILE_COUNT; i++) {
-                outputStream.writeShort(tileMappingData[i]);
+                buffer.writeShortLE(tileMappingData[i]);
             }
         }
     }
@@ -0,0 +1,56 @@
+package entralinked.model.dlc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DlcContentCacheTest {
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    @DisplayName("Test if DLC content is cached with its checksum and evicted when the cache is full")
+    void testContentCache() throws IOException {
+        File firstFile = new File(directory, "first.bin");
+        File secondFile = new File(directory, "second.bin");
+        Files.write(firstFile.toPath(), new byte[] { 1, 2, 3, 4 });
+        Files.write(secondFile.toPath(), new byte[] { 5, 6, 7, 8 });
+        Dlc first = new Dlc(firstFile.getPath(), "first", "IRAO", "CGEAR", 1, 4, 0xBEEF, false);
+        Dlc second = new Dlc(secondFile.getPath(), "second", "IRAO", "CGEAR", 2, 4, 0, true);
+        DlcContentCache cache = new DlcContentCache(8);
+        
+        // Checksum should be appended in little endian if it isn't embedded
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, (byte)0xEF, (byte)0xBE }, toByteArray(cache.getContent(first)));
+        assertArrayEquals(new byte[] { 1, 2, 3, 4, (byte)0xEF, (byte)0xBE }, toByteArray(cache.getContent(first)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(6, cache.getSize());
+        
+        // First DLC should be evicted to make room for the second
+        assertArrayEquals(new byte[] { 5, 6, 7, 8 }, toByteArray(cache.getContent(second)));
+        assertEquals(4, cache.getSize());
+        cache.getContent(first);
+        assertEquals(3, cache.getMissCount());
+        
+        // Replaced content should be read again after invalidation
+        Files.write(firstFile.toPath(), new byte[] { 9, 9, 9, 9 });
+        cache.invalidate(firstFile);
+        assertArrayEquals(new byte[] { 9, 9, 9, 9, (byte)0xEF, (byte)0xBE }, toByteArray(cache.getContent(first)));
+        assertEquals(4, cache.getMissCount());
+    }
+    
+    private static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
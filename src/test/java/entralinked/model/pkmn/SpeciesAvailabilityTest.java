@@ -0,0 +1,62 @@
+package entralinked.model.pkmn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import entralinked.GameVersion;
+
+public class SpeciesAvailabilityTest {
+    
+    @Test
+    @DisplayName("Test if every species is available by default")
+    void testDefaultBitlist() {
+        byte[] bitlist = new SpeciesAvailability(List.of()).getBitlist(GameVersion.BLACK_ENGLISH);
+        assertEquals(SpeciesAvailability.BITLIST_SIZE, bitlist.length);
+        assertEquals(0xFE, bitlist[0] & 0xFF); // There is no species 0
+        assertEquals(0xFF, bitlist[80] & 0xFF); // Species 640-647
+        assertEquals(0x03, bitlist[81] & 0xFF); // Species 648-649
+        assertEquals(0x00, bitlist[82] & 0xFF);
+    }
+    
+    @Test
+    @DisplayName("Test if rules are applied by game version and time")
+    void testRules() {
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        Instant end = Instant.parse("2024-01-08T00:00:00Z");
+        SpeciesAvailability availability = new SpeciesAvailability(List.of(
+                new SpeciesRule("1-7, 9", false, List.of(), null, null),
+                new SpeciesRule("3", true, List.of("IRE", "IRD"), null, null),
+                new SpeciesRule("1", true, List.of(), start, end)));
+        
+        // Species 1 only during the event, species 3 only in Black 2 and White 2
+        assertEquals(0x00, availability.getBitlist(GameVersion.BLACK_ENGLISH, start.minusSeconds(1))[0] & 0xFF);
+        assertEquals(0x08, availability.getBitlist(GameVersion.BLACK_2_ENGLISH, start.minusSeconds(1))[0] & 0xFF);
+        assertEquals(0x02, availability.getBitlist(GameVersion.BLACK_ENGLISH, start)[0] & 0xFF);
+        assertEquals(0x0A, availability.getBitlist(GameVersion.BLACK_2_ENGLISH, start)[0] & 0xFF);
+        assertEquals(0x02, availability.getBitlist(null, start)[0] & 0xFF);
+        assertEquals(0xFD, availability.getBitlist(null, start)[1] & 0xFF); // Species 8-15 except 9
+        assertEquals(0x00, availability.getBitlist(GameVersion.BLACK_ENGLISH, end)[0] & 0xFF);
+        
+        // Bitlists should only be recomputed when a rule starts or stops applying
+        byte[] bitlist = availability.getBitlist(GameVersion.BLACK_ENGLISH, end);
+        assertSame(bitlist, availability.getBitlist(GameVersion.WHITE_ENGLISH, end.plusSeconds(1000)));
+    }
+    
+    @Test
+    @DisplayName("Test if invalid species lists are rejected")
+    void testInvalidSpecies() {
+        assertThrows(IllegalArgumentException.class, () -> new SpeciesRule("0-10", true, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> new SpeciesRule("10-5", true, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> new SpeciesRule("650", true, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> new SpeciesRule("pikachu", true, null, null, null));
+        assertTrue(new SpeciesRule(" 1 - 3 ", null, null, null, null).available());
+    }
+}
@@ -0,0 +1,51 @@
+package entralinked.model.player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PlayerCacheTest {
+    
+    @Test
+    @DisplayName("Test if a slow load only blocks lookups of the same player and is shared by them")
+    void testConcurrentLoads() throws Exception {
+        PlayerCache cache = new PlayerCache(16);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        
+        CompletableFuture<Player> first = CompletableFuture.supplyAsync(() -> cache.get("AAAAAAAAAA", gameSyncId -> {
+            loadCount.incrementAndGet();
+            loadStarted.countDown();
+            
+            try {
+                loadReleased.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            return new Player(gameSyncId);
+        }));
+        
+        loadStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Player> second = CompletableFuture.supplyAsync(() -> cache.get("AAAAAAAAAA", gameSyncId -> {
+            loadCount.incrementAndGet();
+            return new Player(gameSyncId);
+        }));
+        
+        // Other players can be loaded while the first load is in progress
+        assertNotNull(cache.get("BBBBBBBBBB", Player::new));
+        loadReleased.countDown();
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loadCount.get());
+        assertEquals(2, cache.getSize());
+    }
+}
@@ -0,0 +1,59 @@
+package entralinked.model.player;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PlayerSaveQueueTest {
+    
+    @Test
+    @DisplayName("Test if failed writes are reported to the caller once the writer is failing")
+    void testFailedWrites() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        List<PlayerDto> written = new ArrayList<>();
+        PlayerSaveQueue queue = new PlayerSaveQueue(save -> !fail.get() && written.add(save), 60000);
+        Player player = new Player("ABCDEFGHJK");
+        
+        // The first save is queued, so its failure can't be reported yet
+        assertTrue(queue.enqueue(player));
+        queue.flush();
+        assertEquals(1, queue.getFailedWriteCount());
+        assertEquals(1, queue.getQueueSize());
+        
+        // While the writer is failing, the caller waits for its save to be written
+        assertFalse(queue.enqueue(player));
+        assertEquals(2, queue.getFailedWriteCount());
+        
+        fail.set(false);
+        assertTrue(queue.enqueue(player));
+        assertEquals(1, written.size());
+        assertNull(queue.getPendingSave(player.getGameSyncId()));
+        queue.shutdown();
+    }
+    
+    @Test
+    @DisplayName("Test if saves are written on the calling thread after a shutdown")
+    void testSaveAfterShutdown() {
+        AtomicBoolean fail = new AtomicBoolean();
+        List<PlayerDto> written = new ArrayList<>();
+        PlayerSaveQueue queue = new PlayerSaveQueue(save -> !fail.get() && written.add(save), 60000);
+        Player player = new Player("ABCDEFGHJK");
+        queue.shutdown();
+        
+        assertTrue(queue.enqueue(player));
+        assertEquals(1, written.size());
+        assertEquals(0, queue.getQueueSize());
+        
+        fail.set(true);
+        assertFalse(queue.enqueue(player));
+        assertEquals(1, queue.getFailedWriteCount());
+    }
+}
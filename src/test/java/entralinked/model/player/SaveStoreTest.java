@@ -0,0 +1,127 @@
+package entralinked.model.player;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SaveStoreTest {
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    @DisplayName("Test if save files are reassembled correctly and identical chunks are only stored once")
+    void testStoreAndOpen() throws IOException {
+        File playerDirectory = new File(directory, "players");
+        File indexFile = new File(new File(playerDirectory, "player"), "save.idx");
+        SaveStore store = new SaveStore(new File(directory, "saves"), playerDirectory);
+        
+        // Mostly empty save file with some data at the start and an uneven length
+        byte[] save = new byte[SaveStore.CHUNK_SIZE * 8 + 100];
+        new Random(0).nextBytes(save);
+        Arrays.fill(save, SaveStore.CHUNK_SIZE, SaveStore.CHUNK_SIZE * 8, (byte)0);
+        store.store(new ByteArrayInputStream(save), indexFile);
+        assertEquals(3, store.getChunkWriteCount()); // Random chunk, zero chunk and the partial last chunk
+        assertEquals(6, store.getChunkReuseCount());
+        assertEquals(save.length, store.getLength(indexFile));
+        
+        try(InputStream inputStream = store.open(indexFile)) {
+            assertArrayEquals(save, inputStream.readAllBytes());
+        }
+        
+        // Store a save that only differs in the first chunk
+        save[0]++;
+        store.store(new ByteArrayInputStream(save), indexFile);
+        assertEquals(4, store.getChunkWriteCount());
+        
+        try(InputStream inputStream = store.open(indexFile)) {
+            assertArrayEquals(save, inputStream.readAllBytes());
+        }
+        
+        // Age all chunks so that the garbage collector considers them, then check that only the replaced chunk is deleted
+        try(Stream<Path> paths = Files.walk(new File(directory, "saves").toPath())) {
+            paths.forEach(path -> path.toFile().setLastModified(0));
+        }
+        
+        assertEquals(1, store.collectGarbage());
+        
+        try(InputStream inputStream = store.open(indexFile)) {
+            assertArrayEquals(save, inputStream.readAllBytes());
+        }
+    }
+    
+    @Test
+    @DisplayName("Test if garbage collection waits for a save file that is being stored")
+    void testCollectGarbageDuringStore() throws Exception {
+        File playerDirectory = new File(directory, "players");
+        File indexFile = new File(new File(playerDirectory, "player"), "save.idx");
+        SaveStore store = new SaveStore(new File(directory, "saves"), playerDirectory);
+        byte[] save = new byte[SaveStore.CHUNK_SIZE * 2];
+        new Random(0).nextBytes(save);
+        CountDownLatch storeBlocked = new CountDownLatch(1);
+        CountDownLatch storeReleased = new CountDownLatch(1);
+        
+        // Blocks after the first chunk has been stored
+        InputStream inputStream = new ByteArrayInputStream(save) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                if(pos == SaveStore.CHUNK_SIZE && storeBlocked.getCount() > 0) {
+                    storeBlocked.countDown();
+                    
+                    try {
+                        storeReleased.await();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                
+                return super.read(buffer, offset, length);
+            }
+        };
+        
+        CompletableFuture<Void> storeFuture = CompletableFuture.runAsync(() -> {
+            try {
+                store.store(inputStream, indexFile);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        assertTrue(storeBlocked.await(5, TimeUnit.SECONDS));
+        
+        // The first chunk isn't referenced by any index yet and looks old enough to be deleted
+        try(Stream<Path> paths = Files.walk(new File(directory, "saves").toPath())) {
+            paths.forEach(path -> path.toFile().setLastModified(0));
+        }
+        
+        CompletableFuture<Integer> collectFuture = CompletableFuture.supplyAsync(store::collectGarbage);
+        Thread.sleep(200);
+        assertFalse(collectFuture.isDone());
+        storeReleased.countDown();
+        storeFuture.get(5, TimeUnit.SECONDS);
+        assertEquals(0, collectFuture.get(5, TimeUnit.SECONDS));
+        
+        try(InputStream savedInputStream = store.open(indexFile)) {
+            assertArrayEquals(save, savedInputStream.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package entralinked.model.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MemorySessionStoreTest {
+    
+    private final AtomicLong clock = new AtomicLong(Long.MAX_VALUE - TimeUnit.MINUTES.toNanos(1)); // Make sure overflow is handled
+    
+    @Test
+    @DisplayName("Test if sessions are removed when they expire")
+    void testExpiry() {
+        MemorySessionStore store = new MemorySessionStore(16, clock::get);
+        assertTrue(store.put("a", createSession(TimeUnit.MINUTES.toNanos(30))));
+        assertTrue(store.put("b", createSession(TimeUnit.SECONDS.toNanos(90))));
+        assertFalse(store.put("a", createSession(TimeUnit.MINUTES.toNanos(30))));
+        
+        // Neither session has expired yet
+        advance(TimeUnit.SECONDS.toNanos(89));
+        store.expireSessions();
+        assertEquals(2, store.getSize());
+        
+        // Session b expired during the last tick and is removed by the sweep
+        advance(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2, store.getSize());
+        store.expireSessions();
+        assertEquals(1, store.getSize());
+        assertNull(store.get("b"));
+        
+        // Session a is still valid after most of a rotation of the wheel
+        advance(TimeUnit.MINUTES.toNanos(27));
+        store.expireSessions();
+        assertNotNull(store.get("a"));
+        
+        // Session a expires after more than a full rotation of the wheel has passed, which is swept at once
+        advance(TimeUnit.HOURS.toNanos(1));
+        assertEquals(1, store.getSize());
+        store.expireSessions();
+        assertEquals(0, store.getSize());
+        assertEquals(2, store.getCreatedCount());
+        assertEquals(2, store.getExpiredCount());
+    }
+    
+    @Test
+    @DisplayName("Test if expired sessions are not returned before they are swept")
+    void testLazyExpiry() {
+        MemorySessionStore store = new MemorySessionStore(16, clock::get);
+        store.put("a", createSession(TimeUnit.MILLISECONDS.toNanos(100)));
+        advance(TimeUnit.MILLISECONDS.toNanos(100));
+        assertNull(store.get("a"));
+        assertEquals(0, store.getSize());
+        assertEquals(1, store.getExpiredCount());
+    }
+    
+    @Test
+    @DisplayName("Test if the oldest sessions are evicted when the store is full")
+    void testEviction() {
+        MemorySessionStore store = new MemorySessionStore(3, clock::get);
+        
+        for(int i = 0; i < 5; i++) {
+            store.put(String.valueOf(i), createSession(TimeUnit.MINUTES.toNanos(30)));
+        }
+        
+        assertEquals(3, store.getSize());
+        assertEquals(2, store.getEvictedCount());
+        assertNull(store.get("0"));
+        assertNull(store.get("1"));
+        assertNotNull(store.get("2"));
+        assertNotNull(store.get("4"));
+        
+        // Evicted sessions should no longer be swept
+        advance(TimeUnit.HOURS.toNanos(1));
+        store.expireSessions();
+        assertEquals(0, store.getSize());
+        assertEquals(3, store.getExpiredCount());
+    }
+    
+    private void advance(long nanos) {
+        clock.addAndGet(nanos);
+    }
+    
+    private ServiceSession createSession(long duration) {
+        return new ServiceSession(new User("0000000000000", "password"), "test", null, null, clock.get() + duration);
+    }
+}
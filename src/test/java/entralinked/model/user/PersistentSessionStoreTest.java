@@ -0,0 +1,74 @@
+package entralinked.model.user;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PersistentSessionStoreTest {
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    @DisplayName("Test if sessions survive reopening the store")
+    void testReopen() throws IOException {
+        File file = new File(directory, "sessions.dat");
+        User user = new User("0000000000000", "password");
+        User deletedUser = new User("1111111111111", "password");
+        Map<String, User> users = Map.of(user.getId(), user);
+        PersistentSessionStore store = new PersistentSessionStore(file, 16, users::get);
+        store.put("a", new ServiceSession(user, "gamespy", "branch", "hash", 30, ChronoUnit.MINUTES));
+        store.put("b", new ServiceSession(user, "external", null, "hash", 30, ChronoUnit.MINUTES));
+        store.put("c", new ServiceSession(user, "external", null, "hash", -1, ChronoUnit.SECONDS));
+        store.put("d", new ServiceSession(deletedUser, "external", null, "hash", 30, ChronoUnit.MINUTES));
+        store.close();
+        
+        // Cut off the last record to simulate a crash during a write
+        long length = file.length();
+        store = new PersistentSessionStore(file, 16, users::get);
+        store.put("e", new ServiceSession(user, "external", null, "hash", 30, ChronoUnit.MINUTES));
+        store.close();
+        
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 3);
+        }
+        
+        // Expired sessions and sessions of unknown users should not be loaded
+        store = new PersistentSessionStore(file, 16, users::get);
+        assertEquals(2, store.getSize());
+        assertEquals(0, store.getCreatedCount());
+        ServiceSession session = store.get("a");
+        assertSame(user, session.user());
+        assertEquals("gamespy", session.service());
+        assertEquals("branch", session.branchCode());
+        assertEquals("hash", session.challengeHash());
+        assertTrue(session.expiry() - System.nanoTime() > 0);
+        assertNull(store.get("b").branchCode());
+        assertNull(store.get("c"));
+        assertNull(store.get("d"));
+        assertNull(store.get("e"));
+        store.close();
+        
+        // The log should have been compacted
+        assertTrue(file.length() < length);
+        
+        // The log contains session tokens, so it should only be accessible by its owner
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file.toPath()));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package entralinked.model.user;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class UserStoreTest {
+    
+    @TempDir
+    File directory;
+    
+    @Test
+    @DisplayName("Test if records survive updates, relocations and reopening the store")
+    void testReadWrite() throws IOException {
+        File file = new File(directory, "users.dat");
+        UserStore store = new UserStore(file);
+        
+        // Write enough users to require more than one index segment
+        for(int i = 0; i < 300; i++) {
+            store.write(userId(i), "user %s".formatted(i).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        byte[] small = "a".getBytes(StandardCharsets.UTF_8);
+        byte[] large = "b".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        store.write(userId(1), small);
+        store.write(userId(2), large);
+        store.close();
+        
+        // Reopen the store and check the records
+        store = new UserStore(file);
+        Map<String, byte[]> records = store.readAll();
+        assertEquals(300, store.size());
+        assertEquals(300, records.size());
+        assertArrayEquals("user 0".getBytes(StandardCharsets.UTF_8), records.get(userId(0)));
+        assertArrayEquals(small, records.get(userId(1)));
+        assertArrayEquals(large, records.get(userId(2)));
+        assertArrayEquals("user 299".getBytes(StandardCharsets.UTF_8), records.get(userId(299)));
+        store.close();
+    }
+    
+    @Test
+    @DisplayName("Test if writes keep the previous record until the store is synced")
+    void testUnsyncedWrite() throws IOException {
+        File file = new File(directory, "users.dat");
+        UserStore store = new UserStore(file);
+        byte[] before = "before".getBytes(StandardCharsets.UTF_8);
+        byte[] after = "after".getBytes(StandardCharsets.UTF_8);
+        store.write(userId(0), before);
+        store.sync();
+        store.write(userId(0), after);
+        
+        // Open the file again as if the process crashed before the sync
+        UserStore reopenedStore = new UserStore(file);
+        assertArrayEquals(before, reopenedStore.readAll().get(userId(0)));
+        reopenedStore.close();
+        
+        store.sync();
+        reopenedStore = new UserStore(file);
+        assertArrayEquals(after, reopenedStore.readAll().get(userId(0)));
+        reopenedStore.close();
+        store.close();
+    }
+    
+    @Test
+    @DisplayName("Test if replaced slots are reused instead of growing the file")
+    void testSlotReuse() throws IOException {
+        File file = new File(directory, "users.dat");
+        UserStore store = new UserStore(file);
+        byte[] data = "c".repeat(100).getBytes(StandardCharsets.UTF_8);
+        store.write(userId(0), data);
+        store.sync();
+        store.write(userId(0), data);
+        store.sync();
+        long length = file.length();
+        
+        for(int i = 0; i < 100; i++) {
+            store.write(userId(0), data);
+            store.sync();
+        }
+        
+        assertEquals(length, file.length());
+        long freeSpace = store.getFreeSpace();
+        store.close();
+        
+        // Check if the unused slot is found again after reopening the store
+        store = new UserStore(file);
+        assertEquals(freeSpace, store.getFreeSpace());
+        assertArrayEquals(data, store.readAll().get(userId(0)));
+        store.close();
+    }
+    
+    private static String userId(int index) {
+        return "%013d".formatted(index);
+    }
+}
@@ -0,0 +1,149 @@
+package entralinked.network.dns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponseDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRawRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponse;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+
+public class DnsFastPathHandlerTest {
+    
+    private static final InetSocketAddress SENDER = new InetSocketAddress("127.0.0.2", 5353);
+    private static final InetSocketAddress RECIPIENT = new InetSocketAddress("127.0.0.1", 53);
+    private static final byte[] HOST_ADDRESS = {(byte)192, (byte)168, 1, 23};
+    
+    @Test
+    @DisplayName("Test if A queries are answered by the fast path")
+    void testFastPath() throws Exception {
+        DnsFastPathHandler handler = new DnsFastPathHandler(createZones(Map.of()));
+        EmbeddedChannel channel = createChannel(handler);
+        
+        // Plain query with recursion desired
+        DnsResponse response = query(channel, createQuery(0x1234, 0x0100, "conntest.nintendowifi.net", 1, 0));
+        assertEquals(0x1234, response.id());
+        assertEquals(true, response.isRecursionDesired());
+        DnsQuestion question = response.recordAt(DnsSection.QUESTION);
+        assertEquals("conntest.nintendowifi.net.", question.name());
+        assertEquals(DnsRecordType.A, question.type());
+        DnsRawRecord answer = response.recordAt(DnsSection.ANSWER);
+        assertEquals("conntest.nintendowifi.net.", answer.name());
+        assertEquals(DnsRecordType.A, answer.type());
+        assertArrayEquals(HOST_ADDRESS, ByteBufUtil.getBytes(answer.content()));
+        response.release();
+        
+        // Query with an EDNS record
+        response = query(channel, createQuery(0xFFFF, 0, "nas.nintendowifi.net", 1, 1));
+        assertEquals(0xFFFF, response.id());
+        assertEquals(false, response.isRecursionDesired());
+        assertEquals(0, response.count(DnsSection.ADDITIONAL));
+        response.release();
+        
+        assertEquals(2, handler.getFastPathCount());
+        assertEquals(0, handler.getSlowPathCount());
+        channel.finishAndReleaseAll();
+    }
+    
+    @Test
+    @DisplayName("Test if unusual packets are passed on to the codec")
+    void testSlowPath() throws Exception {
+        DnsFastPathHandler handler = new DnsFastPathHandler(createZones(Map.of()));
+        EmbeddedChannel channel = createChannel(handler);
+        
+        // AAAA queries are ignored by the query handler
+        assertNull(query(channel, createQuery(1, 0, "conntest.nintendowifi.net", 28, 0)));
+        
+        // Truncated packets are rejected by the codec
+        assertThrows(DecoderException.class, () -> channel.writeInbound(
+                new DatagramPacket(Unpooled.wrappedBuffer(new byte[] {0, 1, 1, 0}), RECIPIENT, SENDER)));
+        assertNull(channel.readOutbound());
+        
+        // Names outside of the zones are refused through the codec
+        DnsFastPathHandler zonedHandler = new DnsFastPathHandler(createZones(Map.of("*.nintendowifi.net", "")));
+        EmbeddedChannel zonedChannel = createChannel(zonedHandler);
+        DnsResponse response = query(zonedChannel, createQuery(2, 0, "example.com", 1, 0));
+        assertNotNull(response);
+        assertEquals(2, response.id());
+        assertEquals(DnsResponseCode.REFUSED, response.code());
+        response.release();
+        
+        // Names in the zones are still answered by the fast path
+        response = query(zonedChannel, createQuery(3, 0, "NAS.nintendowifi.net", 1, 0));
+        assertEquals(3, response.id());
+        assertEquals(1, response.count(DnsSection.ANSWER));
+        response.release();
+        
+        assertEquals(0, handler.getFastPathCount());
+        assertEquals(2, handler.getSlowPathCount());
+        assertEquals(1, zonedHandler.getFastPathCount());
+        assertEquals(1, zonedHandler.getSlowPathCount());
+        channel.finishAndReleaseAll();
+        zonedChannel.finishAndReleaseAll();
+    }
+    
+    private static DnsZones createZones(Map<String, String> zones) throws Exception {
+        return new DnsZones(zones, InetAddress.getByAddress(HOST_ADDRESS));
+    }
+    
+    private static EmbeddedChannel createChannel(DnsFastPathHandler handler) throws Exception {
+        return new EmbeddedChannel(handler, new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(),
+                new DnsQueryHandler(handler.getZones(), null));
+    }
+    
+    private static DnsResponse query(EmbeddedChannel channel, byte[] query) {
+        channel.writeInbound(new DatagramPacket(Unpooled.wrappedBuffer(query), RECIPIENT, SENDER));
+        DatagramPacket packet = channel.readOutbound();
+        
+        if(packet == null) {
+            return null;
+        }
+        
+        EmbeddedChannel decoder = new EmbeddedChannel(new DatagramDnsResponseDecoder());
+        decoder.writeInbound(new DatagramPacket(packet.content(), SENDER, RECIPIENT));
+        DnsResponse response = decoder.readInbound();
+        decoder.finishAndReleaseAll();
+        return response;
+    }
+    
+    private static byte[] createQuery(int id, int flags, String name, int type, int additionalCount) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        outputStream.writeBytes(new byte[] {(byte)(id >> 8), (byte)id, (byte)(flags >> 8), (byte)flags, 0, 1, 0, 0, 0, 0, 0, (byte)additionalCount});
+        
+        for(String label : name.split("\\.")) {
+            outputStream.write(label.length());
+            outputStream.writeBytes(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        outputStream.writeBytes(new byte[] {0, 0, (byte)type, 0, 1});
+        
+        // Empty OPT record
+        for(int i = 0; i < additionalCount; i++) {
+            outputStream.writeBytes(new byte[] {0, 0, 41, 0x10, 0, 0, 0, 0, 0, 0, 0});
+        }
+        
+        return outputStream.toByteArray();
+    }
+}
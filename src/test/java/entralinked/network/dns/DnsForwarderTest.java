@@ -0,0 +1,215 @@
+package entralinked.network.dns;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+
+public class DnsForwarderTest {
+    
+    private static final int TTL = 30;
+    private final AtomicLong clock = new AtomicLong();
+    private EventLoopGroup eventLoopGroup;
+    private StubResolver resolver;
+    
+    @BeforeEach
+    void setup() throws IOException {
+        eventLoopGroup = new NioEventLoopGroup(1);
+        resolver = new StubResolver();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        resolver.close();
+        eventLoopGroup.shutdownGracefully().awaitUninterruptibly();
+    }
+    
+    @Test
+    @DisplayName("Test if upstream answers are cached until their TTL runs out")
+    void testCache() throws Exception {
+        DnsForwarder forwarder = createForwarder(resolver.getAddress(), 1000);
+        
+        ByteBuf response = resolve(forwarder, "example.com.").get(5, TimeUnit.SECONDS);
+        assertEquals(TTL, getAnswerTtl(response));
+        response.release();
+        
+        // Served from the cache with the remaining TTL, regardless of case
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        response = resolve(forwarder, "EXAMPLE.com.").get(5, TimeUnit.SECONDS);
+        assertEquals(TTL - 10, getAnswerTtl(response));
+        response.release();
+        assertEquals(1, resolver.getQueryCount());
+        
+        // Expired answers are fetched again
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(TTL));
+        response = resolve(forwarder, "example.com.").get(5, TimeUnit.SECONDS);
+        assertEquals(TTL, getAnswerTtl(response));
+        response.release();
+        assertEquals(2, resolver.getQueryCount());
+        assertEquals(2, forwarder.getForwardCount());
+        assertEquals(1, forwarder.getCacheHitCount());
+    }
+    
+    @Test
+    @DisplayName("Test if identical queries are forwarded once")
+    void testCoalescing() throws Exception {
+        DnsForwarder forwarder = createForwarder(resolver.getAddress(), 1000);
+        resolver.delay = 200;
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[5];
+        
+        for(int i = 0; i < futures.length; i++) {
+            futures[i] = resolve(forwarder, "example.com.").thenAccept(ByteBuf::release);
+        }
+        
+        CompletableFuture.allOf(futures).get(5, TimeUnit.SECONDS);
+        assertEquals(1, resolver.getQueryCount());
+        assertEquals(4, forwarder.getCoalescedCount());
+    }
+    
+    @Test
+    @DisplayName("Test if unanswered queries fail after the timeout")
+    void testTimeout() throws Exception {
+        DnsForwarder forwarder = createForwarder(resolver.getAddress(), 100);
+        resolver.delay = -1; // Don't answer
+        assertNull(resolve(forwarder, "example.com.").get(5, TimeUnit.SECONDS));
+        assertEquals(1, forwarder.getFailureCount());
+    }
+    
+    @Test
+    @DisplayName("Test if answers to a different question are ignored")
+    void testMismatchedQuestion() throws Exception {
+        DnsForwarder forwarder = createForwarder(resolver.getAddress(), 200);
+        resolver.spoof = true;
+        assertNull(resolve(forwarder, "example.com.").get(5, TimeUnit.SECONDS));
+        assertEquals(1, forwarder.getFailureCount());
+        
+        // Nothing was cached, so the next query is forwarded again
+        resolver.spoof = false;
+        ByteBuf response = resolve(forwarder, "example.com.").get(5, TimeUnit.SECONDS);
+        assertEquals(TTL, getAnswerTtl(response));
+        response.release();
+        assertEquals(2, resolver.getQueryCount());
+    }
+    
+    @Test
+    @DisplayName("Test if queries fail right away while too many are pending")
+    void testPendingLimit() throws Exception {
+        DnsForwarder forwarder = createForwarder(resolver.getAddress(), 1000, 2);
+        resolver.delay = -1; // Don't answer
+        CompletableFuture<ByteBuf> first = resolve(forwarder, "a.example.com.");
+        CompletableFuture<ByteBuf> second = resolve(forwarder, "b.example.com.");
+        
+        // Fails long before the pending queries time out
+        assertNull(resolve(forwarder, "c.example.com.").get(500, TimeUnit.MILLISECONDS));
+        assertFalse(first.isDone() || second.isDone());
+        assertEquals(2, forwarder.getForwardCount());
+        assertEquals(1, forwarder.getFailureCount());
+    }
+    
+    private DnsForwarder createForwarder(InetSocketAddress upstream, int timeout) {
+        return createForwarder(upstream, timeout, 16);
+    }
+    
+    private DnsForwarder createForwarder(InetSocketAddress upstream, int timeout, int cacheSize) {
+        DnsForwarder forwarder = new DnsForwarder(upstream, timeout, cacheSize, clock::get);
+        forwarder.start(eventLoopGroup, NioDatagramChannel.class).syncUninterruptibly();
+        return forwarder;
+    }
+    
+    private static CompletableFuture<ByteBuf> resolve(DnsForwarder forwarder, String name) {
+        CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+        forwarder.resolve(name, 1, 1, future::complete);
+        return future;
+    }
+    
+    /**
+     * @return The TTL of the single answer that {@link StubResolver} sends, which is stored in the last 10 to 6 bytes.
+     */
+    private static int getAnswerTtl(ByteBuf response) {
+        return response.getInt(response.writerIndex() - 10);
+    }
+    
+    /**
+     * Answers every A query with a single record with a TTL of {@link #TTL}.
+     * If {@link #spoof} is set, the question in the answer is changed to a different name.
+     */
+    private static class StubResolver extends Thread {
+        
+        private final DatagramSocket socket;
+        private final AtomicInteger queryCount = new AtomicInteger();
+        private volatile int delay;
+        private volatile boolean spoof;
+        
+        private StubResolver() throws SocketException {
+            socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            setDaemon(true);
+            start();
+        }
+        
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+            
+            while(!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    queryCount.incrementAndGet();
+                    
+                    if(delay < 0) {
+                        continue;
+                    }
+                    
+                    Thread.sleep(delay);
+                    ByteBuffer response = ByteBuffer.allocate(packet.getLength() + 16);
+                    response.put(Arrays.copyOf(buffer, packet.getLength()));
+                    response.putShort(2, (short)0x8180); // Response, recursion desired and available
+                    response.putShort(6, (short)1); // Answers
+                    
+                    if(spoof) {
+                        response.put(13, (byte)'x'); // First character of the first label
+                    }
+                    
+                    response.putShort((short)0xC00C).putShort((short)1).putShort((short)1).putInt(TTL).putShort((short)4).put(new byte[] {1, 2, 3, 4});
+                    socket.send(new DatagramPacket(response.array(), response.position(), packet.getSocketAddress()));
+                } catch(IOException | InterruptedException e) {
+                    // Closed
+                }
+            }
+        }
+        
+        private void close() {
+            socket.close();
+        }
+        
+        private int getQueryCount() {
+            return queryCount.get();
+        }
+        
+        private InetSocketAddress getAddress() {
+            return (InetSocketAddress)socket.getLocalSocketAddress();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package entralinked.network.dns;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class DnsZonesTest {
+    
+    private static final byte[] HOST_ADDRESS = {10, 0, 0, 1};
+    
+    @Test
+    @DisplayName("Test if names resolve to the address of the most specific zone")
+    void testResolve() throws Exception {
+        Map<String, String> zones = new LinkedHashMap<>();
+        zones.put("nas.nintendowifi.net", "");
+        zones.put("dls1.nintendowifi.net", "10.0.0.2");
+        zones.put("*.pokemon-gl.com", "10.0.0.3");
+        zones.put("*.gs.nintendowifi.net", "10.0.0.4");
+        zones.put("gamestats2.gs.nintendowifi.net", "10.0.0.5");
+        zones.put("invalid.nintendowifi.net", "300.0.0.1");
+        zones.put("hostname.nintendowifi.net", "localhost");
+        DnsZones dnsZones = new DnsZones(zones, InetAddress.getByAddress(HOST_ADDRESS));
+        
+        assertArrayEquals(HOST_ADDRESS, dnsZones.resolve("nas.nintendowifi.net"));
+        assertArrayEquals(HOST_ADDRESS, dnsZones.resolve("NAS.NintendoWiFi.net.")); // Case and trailing dot
+        assertArrayEquals(new byte[] {10, 0, 0, 2}, dnsZones.resolve("dls1.nintendowifi.net"));
+        assertArrayEquals(new byte[] {10, 0, 0, 3}, dnsZones.resolve("en.pokemon-gl.com"));
+        assertArrayEquals(new byte[] {10, 0, 0, 3}, dnsZones.resolve("a.b.pokemon-gl.com"));
+        assertArrayEquals(new byte[] {10, 0, 0, 4}, dnsZones.resolve("pokemondpds.gs.nintendowifi.net"));
+        assertArrayEquals(new byte[] {10, 0, 0, 5}, dnsZones.resolve("gamestats2.gs.nintendowifi.net"));
+        assertNull(dnsZones.resolve("pokemon-gl.com")); // Wildcards only match subdomains
+        assertNull(dnsZones.resolve("conntest.nintendowifi.net"));
+        assertNull(dnsZones.resolve("invalid.nintendowifi.net"));
+        assertNull(dnsZones.resolve("hostname.nintendowifi.net"));
+        
+        // Catch-all zone
+        zones.put("*", "10.0.0.6");
+        dnsZones = new DnsZones(zones, InetAddress.getByAddress(HOST_ADDRESS));
+        assertArrayEquals(new byte[] {10, 0, 0, 6}, dnsZones.resolve("conntest.nintendowifi.net"));
+        assertArrayEquals(new byte[] {10, 0, 0, 2}, dnsZones.resolve("dls1.nintendowifi.net"));
+        
+        // No zones
+        dnsZones = new DnsZones(Map.of(), InetAddress.getByAddress(HOST_ADDRESS));
+        assertArrayEquals(HOST_ADDRESS, dnsZones.resolve("example.com"));
+        dnsZones = new DnsZones(Map.of(), InetAddress.getByName("::1"));
+        assertNull(dnsZones.resolve("example.com"));
+    }
+}
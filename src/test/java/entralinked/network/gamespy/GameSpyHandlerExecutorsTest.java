@@ -0,0 +1,70 @@
+package entralinked.network.gamespy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import entralinked.Configuration.GameSpy.HandlerMode;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+public class GameSpyHandlerExecutorsTest {
+    
+    @Test
+    @DisplayName("Test if two connections are handled at the same time by an executor group with multiple threads")
+    void testExecutorGroup() throws Exception {
+        assertConcurrent(new GameSpyHandlerExecutors(HandlerMode.EXECUTOR_GROUP, 2, new DefaultThreadFactory("GameSpyTest", true)));
+    }
+    
+    @Test
+    @DisplayName("Test if two connections are handled at the same time with virtual threads")
+    void testVirtualThreads() throws Exception {
+        // Falls back to an executor group with the same number of threads if virtual threads are not supported
+        assertConcurrent(new GameSpyHandlerExecutors(HandlerMode.VIRTUAL_THREAD, 2, new DefaultThreadFactory("GameSpyTest", true)));
+    }
+    
+    /**
+     * Sends a request to two connections whose handlers both wait for each other, which only works if they run at the same time.
+     */
+    private void assertConcurrent(GameSpyHandlerExecutors executors) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        CompletableFuture<?>[] handled = new CompletableFuture<?>[2];
+        EmbeddedChannel[] channels = new EmbeddedChannel[2];
+        
+        for(int i = 0; i < channels.length; i++) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            handled[i] = future;
+            channels[i] = new EmbeddedChannel();
+            channels[i].pipeline().addLast(executors.getHandlerExecutor(channels[i]), new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object message) {
+                    try {
+                        barrier.await(5, TimeUnit.SECONDS);
+                        future.complete(null);
+                    } catch(Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        }
+        
+        try {
+            for(EmbeddedChannel channel : channels) {
+                channel.pipeline().fireChannelRead("request");
+            }
+            
+            CompletableFuture.allOf(handled).get(10, TimeUnit.SECONDS);
+        } finally {
+            for(EmbeddedChannel channel : channels) {
+                channel.close();
+            }
+            
+            executors.shutdown();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package entralinked.network.gamespy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import entralinked.network.gamespy.message.GameSpyChallengeMessage;
+import entralinked.network.gamespy.message.GameSpyErrorMessage;
+import entralinked.network.gamespy.message.GameSpyLoginResponse;
+import entralinked.network.gamespy.message.GameSpyProfileResponse;
+import entralinked.serialization.GameSpyMessageFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class GameSpyMessageEncoderTest {
+    
+    private final ObjectMapper mapper = new ObjectMapper(new GameSpyMessageFactory());
+    private final GameSpyMessageEncoder encoder = new GameSpyMessageEncoder();
+    
+    @Test
+    @DisplayName("Test if encoded messages match their serialized form")
+    void testEncodeMessages() throws Exception {
+        assertEquals("\\lc\\1\\challenge\\Rw4bp3Ar\\id\\1\\final\\", encode(new GameSpyChallengeMessage("Rw4bp3Ar", 1)));
+        assertEquals("\\lc\\2\\userid\\1234567890123\\profileid\\123456789\\proof\\8d4b0a25\\sesskey\\-2147483648\\id\\0\\final\\",
+                encode(new GameSpyLoginResponse("1234567890123", 123456789, "8d4b0a25", Integer.MIN_VALUE, 0)));
+        assertEquals("\\pi\\\\profileid\\2147483647\\firstname\\Hilda\\zipcode\\00000\\sig\\signature\\id\\-12\\final\\",
+                encode(new GameSpyProfileResponse(Integer.MAX_VALUE, "Hilda", null, null, "00000", "signature", -12)));
+        
+        // Compare field encoding with the Jackson serializer
+        Object[] messages = {
+            new GameSpyErrorMessage(266, "There was an error validating the pre-authentication.", 1, 1),
+            new GameSpyErrorMessage(0, null, 0, 10),
+            new GameSpyProfileResponse(5, "Hild\u00E4", "", null, null, "signature", 3),
+        };
+        
+        for(Object message : messages) {
+            String encoded = encode(message);
+            assertTrue(encoded.endsWith(mapper.writeValueAsString(message) + "\\final\\"));
+        }
+    }
+    
+    @Test
+    @DisplayName("Test if message types without the GameSpyMessage annotation are rejected")
+    void testEncodeInvalidMessage() {
+        assertThrows(IllegalArgumentException.class, () -> encode("error"));
+    }
+    
+    private String encode(Object message) throws Exception {
+        GameSpyMessageWriter writer = new GameSpyMessageWriter(message.getClass());
+        int size = writer.getMaxSize(message);
+        ByteBuf buffer = Unpooled.buffer(size, size);
+        
+        try {
+            encoder.encode(null, message, buffer);
+            return buffer.toString(StandardCharsets.UTF_8);
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package entralinked.network.gamespy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import entralinked.network.gamespy.request.GameSpyKeepAliveRequest;
+import entralinked.network.gamespy.request.GameSpyLoginRequest;
+import entralinked.network.gamespy.request.GameSpyProfileUpdateRequest;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class GameSpyRequestDecoderTest {
+    
+    private final GameSpyRequestDecoder decoder = new GameSpyRequestDecoder(List.of(
+            new GameSpyRequestBinder("login", GameSpyLoginRequest.class),
+            new GameSpyRequestBinder("updatepro", GameSpyProfileUpdateRequest.class),
+            new GameSpyRequestBinder("ka", GameSpyKeepAliveRequest.class)));
+    
+    @Test
+    @DisplayName("Test if requests are bound to their records")
+    void testDecodeRequests() throws Exception {
+        GameSpyLoginRequest login = (GameSpyLoginRequest)decode("\\login\\\\challenge\\Rw4bp3Ar\\authtoken\\NDSvoxCc3J"
+                + "\\partnerid\\0\\response\\8d4b0a25\\firewall\\1\\port\\\\productid\\11059\\gamename\\pokemondpds"
+                + "\\namespaceid\\-16\\lt\\ignored\\id\\1");
+        assertEquals("Rw4bp3Ar", login.challenge());
+        assertEquals("NDSvoxCc3J", login.partnerToken());
+        assertEquals("8d4b0a25", login.response());
+        assertEquals("pokemondpds", login.gameName());
+        assertEquals(1, login.sequenceId());
+        assertEquals(1, login.firewall());
+        assertEquals(0, login.port()); // Empty value
+        assertEquals(11059, login.productId());
+        assertEquals(-16, login.namespaceId());
+        assertNull(login.userId()); // Absent value
+        
+        GameSpyProfileUpdateRequest update = (GameSpyProfileUpdateRequest)decode("\\updatepro\\\\sesskey\\2147483647\\firstname\\Hilda\\lastname\\\\zipcode\\00000");
+        assertEquals(Integer.MAX_VALUE, update.sessionKey());
+        assertEquals("Hilda", update.firstName());
+        assertEquals("", update.lastName());
+        assertEquals("00000", update.zipCode());
+        
+        assertTrue(decode("\\ka\\") instanceof GameSpyKeepAliveRequest);
+        assertTrue(decode("\\ka") instanceof GameSpyKeepAliveRequest);
+    }
+    
+    @Test
+    @DisplayName("Test if malformed requests are rejected")
+    void testDecodeMalformedRequests() {
+        assertThrows(IOException.class, () -> decode("ka\\"));
+        assertThrows(IOException.class, () -> decode("\\kb\\"));
+        assertThrows(IOException.class, () -> decode("\\updatepro\\\\firstname\\Hilda")); // Missing session key
+        assertThrows(IOException.class, () -> decode("\\updatepro\\\\sesskey\\2147483648"));
+        assertThrows(IOException.class, () -> decode("\\updatepro\\\\sesskey\\12a"));
+        assertThrows(IOException.class, () -> decode("\\updatepro\\\\sesskey\\1\\zipcode"));
+    }
+    
+    private Object decode(String message) throws Exception {
+        ByteBuf buffer = Unpooled.copiedBuffer(message, StandardCharsets.UTF_8);
+        List<Object> out = new ArrayList<>(1);
+        
+        try {
+            decoder.decode(null, buffer, out);
+            assertEquals(0, buffer.readableBytes());
+            return out.get(0);
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package entralinked.network.http.pgl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import entralinked.GameVersion;
+import entralinked.model.player.DreamItem;
+import entralinked.model.player.Player;
+import entralinked.model.player.PlayerStatus;
+import entralinked.utility.ByteBufUtility;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+public class SaveDataCacheTest {
+    
+    @Test
+    @DisplayName("Test if cached responses match freshly written dream data")
+    void testCachedResponses() {
+        Player player = new Player("AAAAAAAAAA");
+        player.resetDreamInfo();
+        player.setStatus(PlayerStatus.SLEEPING);
+        player.setGameVersion(GameVersion.BLACK_2_ENGLISH);
+        player.setItems(List.of(new DreamItem(1, 5)));
+        player.setMusical("musical");
+        player.setCGearSkin("cgear");
+        player.setDexSkin("dex");
+        AtomicLong dlcRevision = new AtomicLong();
+        Map<String, Integer> dlcIndices = new HashMap<>(Map.of("musical", 1, "cgear", 2, "dex", 3, "other", 4));
+        SaveDataCache cache = new SaveDataCache(4, dlcRevision::get, (type, name) -> dlcIndices.getOrDefault(name, 0));
+        assertResponse(player, cache, 1, 2, 3);
+        assertResponse(player, cache, 1, 2, 3);
+        assertEquals(1, cache.getHitCount());
+        
+        // Changing the DLC selection, the dream data or the DLC itself should not return the old response
+        player.setDexSkin("other");
+        assertResponse(player, cache, 1, 2, 4);
+        player.setItems(List.of(new DreamItem(2, 10)));
+        assertResponse(player, cache, 1, 2, 4);
+        dlcIndices.put("other", 5);
+        dlcRevision.incrementAndGet();
+        assertResponse(player, cache, 1, 2, 5);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(5, cache.getRequestCount());
+    }
+    
+    private void assertResponse(Player player, SaveDataCache cache, int musicalIndex, int cgearSkinIndex, int dexSkinIndex) {
+        ByteBuf buffer = ByteBufUtility.allocate(1024);
+        SaveDataWriter.writeDreamData(buffer, player, musicalIndex, cgearSkinIndex, dexSkinIndex);
+        byte[] expected = ByteBufUtil.getBytes(buffer);
+        
+        // Responses are written after the status header
+        buffer.clear().writeZero(128);
+        cache.writeDreamData(buffer, player);
+        byte[] response = ByteBufUtil.getBytes(buffer, 128, buffer.writerIndex() - 128);
+        buffer.release();
+        
+        // Everything except the random counter should match
+        assertEquals(expected.length, response.length);
+        assertArrayEquals(Arrays.copyOfRange(expected, 4, expected.length), Arrays.copyOfRange(response, 4, response.length));
+    }
+}
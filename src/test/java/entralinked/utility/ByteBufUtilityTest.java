@@ -0,0 +1,75 @@
+package entralinked.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+public class ByteBufUtilityTest {
+    
+    @Test
+    @DisplayName("Test if little-endian values survive a round trip through a pooled buffer")
+    void testLittleEndianValues() throws IOException {
+        short shortValue = 0x6A84;
+        int intValue = 0xF827EC80;
+        long longValue = 0x948EC1AB3F2C88L;
+        
+        // Test writing
+        ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream();
+        ByteBuf buffer = ByteBufUtility.allocate(4);
+        
+        try {
+            buffer.writeShortLE(shortValue);
+            buffer.writeIntLE(intValue);
+            buffer.writeLongLE(longValue);
+            ByteBufUtility.writeTo(buffer, byteOutputStream);
+        } finally {
+            buffer.release();
+        }
+        
+        assertArrayEquals(new byte[] {(byte)0x84, 0x6A}, ByteBufUtil.getBytes(ByteBufUtility.readAll(
+                new ByteArrayInputStream(byteOutputStream.toByteArray())), 0, 2));
+        
+        // Test reading
+        buffer = ByteBufUtility.readAll(new ByteArrayInputStream(byteOutputStream.toByteArray()));
+        assertEquals(shortValue, buffer.readShortLE());
+        assertEquals(intValue, buffer.readIntLE());
+        assertEquals(longValue, buffer.readLongLE());
+        assertThrows(IndexOutOfBoundsException.class, buffer::readByte);
+    }
+    
+    @Test
+    @DisplayName("Test if fills and fixed-width UTF-16 strings are written and read correctly")
+    void testFillAndStrings() {
+        ByteBuf buffer = ByteBufUtility.allocate(1);
+        
+        try {
+            ByteBufUtility.fill(buffer, 0x7E, 3);
+            ByteBufUtility.fill(buffer, 0, 2);
+            ByteBufUtility.fill(buffer, 0xFF, -1);
+            ByteBufUtility.writeUTF16(buffer, "Pokémon", 12, 12);
+            ByteBufUtility.writeUTF16(buffer, "Visitors", 7, 8);
+            ByteBufUtility.writeUTF16(buffer, "abc", 2, 2);
+            assertEquals(5 + 24 + 16 + 4, buffer.readableBytes());
+            assertArrayEquals(new byte[] {0x7E, 0x7E, 0x7E, 0, 0}, ByteBufUtil.getBytes(buffer, 0, 5));
+            assertEquals(-1, buffer.getShortLE(5 + 14)); // Padding after the name
+            
+            buffer.skipBytes(5);
+            assertEquals("Pokémon", ByteBufUtility.readUTF16(buffer, 12));
+            assertEquals("Visitor", ByteBufUtility.readUTF16(buffer, 8));
+            assertEquals("ab", ByteBufUtility.readUTF16(buffer, 2));
+            assertEquals(0, buffer.readableBytes());
+        } finally {
+            buffer.release();
+        }
+    }
+}
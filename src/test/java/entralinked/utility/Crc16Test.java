@@ -2,6 +2,9 @@ package entralinked.utility;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.nio.ByteBuffer;
+import java.util.Random;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -23,10 +26,60 @@ public class Crc16Test {
         assertEquals(0xD7C3, Crc16.calc(bytes, 8, 8)); // bytes 8-15
         assertEquals(0xFF5C, Crc16.calc(bytes, 16, 16)); // bytes 16-31
         
+        // Test checksums calculated in parts
+        assertEquals(Crc16.calc(bytes), Crc16.update(Crc16.update(Crc16.INITIAL_VALUE, bytes, 0, 13), bytes, 13, 19));
+        assertEquals(0x6093, Crc16.update(Crc16.update(Crc16.INITIAL_VALUE, bytes, 4, 0), bytes, 4, 8));
+        
         // Test checksums calculated from integers
         assertEquals(0x9EFB, Crc16.calc(12345));
         assertEquals(0x005E, Crc16.calc(847190349));
         assertEquals(0x8C87, Crc16.calc(Integer.MAX_VALUE));
         assertEquals(0x1548, Crc16.calc(Integer.MIN_VALUE));
     }
+    
+    @Test
+    @DisplayName("Test if table-driven checksums match bitwise checksums")
+    void testCrc16Tables() {
+        Random random = new Random(0);
+        byte[] bytes = new byte[1000];
+        random.nextBytes(bytes);
+        
+        // Test lengths around the slice length with different alignments
+        for(int offset = 0; offset < 8; offset++) {
+            for(int length = 0; length < 40; length++) {
+                assertEquals(calcBitwise(bytes, offset, length), Crc16.calc(bytes, offset, length));
+            }
+        }
+        
+        // Test direct buffers
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip().position(3);
+        assertEquals(calcBitwise(bytes, 3, bytes.length - 3), Crc16.calc(buffer));
+        assertEquals(3, buffer.position());
+        
+        // Test integers
+        for(int i = 0; i < 1000; i++) {
+            int value = random.nextInt();
+            byte[] valueBytes = {(byte)value, (byte)(value >> 8), (byte)(value >> 16), (byte)(value >> 24)};
+            assertEquals(calcBitwise(valueBytes, 0, 4), Crc16.calc(value));
+        }
+    }
+    
+    private static int calcBitwise(byte[] input, int offset, int length) {
+        int crc = 0xFFFF;
+        
+        for(int i = offset; i < offset + length; i++) {
+            crc ^= (input[i] << 8);
+            
+            for(int j = 0; j < 8; j++) {
+                if((crc & 0x8000) != 0) {
+                    crc = crc << 1 ^ 0x1021;
+                } else {
+                    crc <<= 1;
+                }
+            }
+        }
+        
+        return crc & 0xFFFF;
+    }
 }
@@ -0,0 +1,52 @@
+package entralinked.utility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import entralinked.utility.RegionCaptureInputStream.Region;
+
+public class RegionCaptureInputStreamTest {
+    
+    @Test
+    @DisplayName("Test if regions are captured while the stream is read")
+    void testRegionCapture() throws IOException {
+        byte[] bytes = new byte[20000];
+        
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)i;
+        }
+        
+        RegionCaptureInputStream inputStream = new RegionCaptureInputStream(new ByteArrayInputStream(bytes));
+        Region first = inputStream.capture(8190, 10); // Crosses the boundary between two reads
+        Region second = inputStream.capture(15000, 236);
+        Region outOfBounds = inputStream.capture(19990, 20);
+        
+        // Read through the stream in the same way it is stored
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        inputStream.transferTo(outputStream);
+        assertArrayEquals(bytes, outputStream.toByteArray());
+        assertTrue(first.isComplete());
+        assertArrayEquals(Arrays.copyOfRange(bytes, 8190, 8200), first.getBytes());
+        assertTrue(second.isComplete());
+        assertArrayEquals(Arrays.copyOfRange(bytes, 15000, 15236), second.getBytes());
+        assertFalse(outOfBounds.isComplete());
+        
+        // Test if skipped data is captured as well
+        RegionCaptureInputStream skippingInputStream = new RegionCaptureInputStream(new ByteArrayInputStream(bytes));
+        Region skipped = skippingInputStream.capture(100, 4);
+        assertEquals(200, skippingInputStream.skip(200));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 100, 104), skipped.getBytes());
+        assertThrows(IllegalStateException.class, () -> skippingInputStream.capture(150, 4));
+    }
+}